@@ -7,9 +7,10 @@ gradle assemble
 PORT=60000
 #LOGFILE=logs/csuServer.log
 LOGFILE=
+WALKERS=${4:-1} # comma separated walker counts to compare, e.g. 1,2,4,8
 
 
 #java -Xdebug -Xrunjdwp:transport=dt_socket,address=12346,server=y,suspend=n -Djava.util.logging.config.class=cs555.chiba.service.LogConfig -Dcsu.log.file=$LOGFILE cs555.chiba.registry.RegistryNode $PORT
 
-java -Djava.util.logging.config.class=cs555.chiba.service.LogConfig -Dcsu.log.file=$LOGFILE cs555.chiba.registry.AutomatedRegistryNode $PORT $1 $2 $3
+java -Djava.util.logging.config.class=cs555.chiba.service.LogConfig -Dcsu.log.file=$LOGFILE -Dcsu.walk.sweep=$WALKERS cs555.chiba.registry.AutomatedRegistryNode $PORT $1 $2 $3
 
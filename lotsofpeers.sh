@@ -11,9 +11,12 @@ REGISTRY=topeka
 #LOGFILE=logs/csu.log
 LOGFILE=
 
+# tcp uses two threads per connection, nio multiplexes every connection over a selector loop
+TRANSPORT=tcp
+
 for i in {$(eval echo {1..$1})
 do
-  java -Xmx20M -Djava.util.logging.config.class=cs555.chiba.service.LogConfig -Dcsu.log.file=$LOGFILE cs555.chiba.node.Peer $REGISTRY $PORT 0 $2 &
+  java -Xmx20M -Dcsu.transport=$TRANSPORT -Djava.util.logging.config.class=cs555.chiba.service.LogConfig -Dcsu.log.file=$LOGFILE cs555.chiba.node.Peer $REGISTRY $PORT 0 $2 &
   sleep 0.1
 done
 
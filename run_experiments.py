@@ -13,6 +13,8 @@ if __name__=="__main__":
 	desired_num_hubs = [10000, 5000, 2500, 1000, 100,]
 	min_max_connections = [(2,4), (5,10), (10,15), (20,25)]
 	cache_sizes = [40, 100, 200, 400]
+	walker_counts = [1, 2, 4, 8] # every run compares random walks with each of these numbers of walkers
+	walker_sweep = ",".join(str(k) for k in walker_counts)
 	experiments = list(itertools.product(*(desired_num_hubs,min_max_connections,cache_sizes)))
 	
 	for num_hubs, connections, cache_size in experiments:
@@ -35,8 +37,8 @@ if __name__=="__main__":
 			if current_num_hubs >= num_hubs:
 				break
 
-		filename = "./results/results_"+str(num_hubs)+"_"+str(connections[1])+"_"+str(cache_size)+".csv"
-		os.system("xterm -e 'ssh topeka \"cd CS555-final; sh automatedRegistry.sh "+str(connections[0])+" "+str(connections[1])+" "+filename+" \"' &")
+		filename = "./results/results_"+str(num_hubs)+"_"+str(connections[1])+"_"+str(cache_size)+"_k"+"-".join(str(k) for k in walker_counts)+".csv"
+		os.system("xterm -e 'ssh topeka \"cd CS555-final; sh automatedRegistry.sh "+str(connections[0])+" "+str(connections[1])+" "+filename+" "+walker_sweep+" \"' &")
 		time.sleep(40)
 		for assignment in assignments:
 			os.system("ssh "+assignment[0]+" 'cd CS555-final; sh lotsofpeers.sh "+str(assignment[1])+" "+str(cache_size)+"' &")
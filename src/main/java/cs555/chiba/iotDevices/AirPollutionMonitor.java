@@ -7,7 +7,7 @@ import java.util.List;
 
 public class AirPollutionMonitor extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.AIR_QUALITY, Utilities.METRIC_TYPES.TEMPERATURE);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.AIR_QUALITY, Utilities.METRIC_TYPES.TEMPERATURE);
 
     public AirPollutionMonitor() {
         super(IotType.AirPollutionMonitor);
@@ -7,7 +7,7 @@ import java.util.List;
 
 public class AirVent extends IotDevice {
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.AIR_QUALITY, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.THROTTLE_STATE);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.AIR_QUALITY, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.THROTTLE_STATE);
 
     public AirVent() {
         super(IotType.AirVent);
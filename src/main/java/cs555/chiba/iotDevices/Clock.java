@@ -7,7 +7,7 @@ import java.util.List;
 
 public class Clock extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.BATTERY_PERCENTAGE, Utilities.METRIC_TYPES.CURRENT_TIME, Utilities.METRIC_TYPES.TIME_SINCE_LAST_SYNC);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.BATTERY_PERCENTAGE, Utilities.METRIC_TYPES.CURRENT_TIME, Utilities.METRIC_TYPES.TIME_SINCE_LAST_SYNC);
 
     public Clock() {
         super(IotType.Clock);
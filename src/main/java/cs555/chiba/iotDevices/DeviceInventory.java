@@ -0,0 +1,147 @@
+package cs555.chiba.iotDevices;
+
+import cs555.chiba.util.Utilities;
+import cs555.chiba.util.Utilities.METRIC_TYPES;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * The devices on a peer, kept as a count per IotType rather than an object per device.  Every device of a type reports
+ * the same metrics, so the counts and the per type metric masks answer every question a query asks.
+ *
+ * Queries ask how many devices report a metric on every hop, so those counts are worked out once here and each lookup is
+ * an array read.
+ *
+ * The device string sent by the registry is the same counts joined with ":".
+ */
+public class DeviceInventory {
+
+   private static final IotType[] TYPES = IotType.values();
+
+   private final int[] counts = new int[TYPES.length];
+   private final int[] metricCounts = new int[METRIC_TYPES.values().length];
+   private final int totalDevices;
+   private final long metricMask;
+
+   private DeviceInventory(int[] counts) {
+      System.arraycopy(counts, 0, this.counts, 0, Math.min(counts.length, this.counts.length));
+      int total = 0;
+      long mask = 0;
+
+      for (IotType type : TYPES) {
+         int count = this.counts[type.ordinal()];
+         Utilities.checkArgument(count >= 0, "Device counts can't be negative [" + count + "]");
+         total += count;
+
+         if (count > 0) {
+            mask |= type.getMetricMask();
+         }
+      }
+
+      this.totalDevices = total;
+      this.metricMask = mask;
+
+      for (IotType type : TYPES) {
+         long typeMask = type.getMetricMask();
+         for (METRIC_TYPES metric : METRIC_TYPES.values()) {
+            if ((typeMask & (1L << metric.ordinal())) != 0) {
+               this.metricCounts[metric.ordinal()] += this.counts[type.ordinal()];
+            }
+         }
+      }
+   }
+
+   public static DeviceInventory fromDeviceString(String deviceString) {
+      if (Utilities.isBlank(deviceString)) {
+         return new DeviceInventory(new int[0]);
+      }
+
+      return new DeviceInventory(Arrays.stream(deviceString.split(":")).mapToInt(Integer::parseInt).toArray());
+   }
+
+   public static DeviceInventory fromDevices(Collection<IotDevice> devices) {
+      int[] counts = new int[TYPES.length];
+      devices.forEach(device -> counts[device.getType().ordinal()]++);
+      return new DeviceInventory(counts);
+   }
+
+   /**
+    * Between min and max devices, each of a random type
+    */
+   public static DeviceInventory random(int min, int max, Random random) {
+      int[] counts = new int[TYPES.length];
+      int deviceCount = min + random.nextInt(max - min + 1);
+
+      for (int i = 0; i < deviceCount; i++) {
+         counts[random.nextInt(TYPES.length)]++;
+      }
+
+      return new DeviceInventory(counts);
+   }
+
+   /**
+    * The number of devices that report the metric
+    */
+   public int countWithMetric(METRIC_TYPES metric) {
+      return this.metricCounts[metric.ordinal()];
+   }
+
+   /**
+    * @return The number of devices that report the metric, 0 for unknown metrics
+    */
+   public int countWithMetric(String metricName) {
+      METRIC_TYPES metric = Utilities.getEnum(metricName);
+      return metric == null ? 0 : countWithMetric(metric);
+   }
+
+   /**
+    * Every metric reported by at least one device, bit n is METRIC_TYPES ordinal n
+    */
+   public long getMetricMask() {
+      return this.metricMask;
+   }
+
+   public List<String> getMetricNames() {
+      return Arrays.stream(METRIC_TYPES.values()).filter(metric -> (this.metricMask & (1L << metric.ordinal())) != 0).map(METRIC_TYPES::name).collect(Collectors.toList());
+   }
+
+   public int getTotalDevices() {
+      return this.totalDevices;
+   }
+
+   public String getDeviceString() {
+      return Arrays.stream(this.counts).mapToObj(Integer::toString).collect(Collectors.joining(":"));
+   }
+
+   /**
+    * Build the device objects.  Only needed when something wants to look at individual devices.
+    */
+   public List<IotDevice> toDevices() {
+      List<IotDevice> devices = new ArrayList<>(this.totalDevices);
+
+      for (IotType type : TYPES) {
+         for (int i = 0; i < this.counts[type.ordinal()]; i++) {
+            devices.add(type.getInstance());
+         }
+      }
+
+      return devices;
+   }
+
+   @Override public String toString() {
+      StringBuilder out = new StringBuilder();
+
+      for (IotType type : TYPES) {
+         if (this.counts[type.ordinal()] > 0) {
+            out.append(type).append(" : ").append(this.counts[type.ordinal()]).append("\n");
+         }
+      }
+
+      return out.toString();
+   }
+}
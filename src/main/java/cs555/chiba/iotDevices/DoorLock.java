@@ -7,7 +7,7 @@ import java.util.List;
 
 public class DoorLock extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.LOCK_STATE);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.LOCK_STATE);
 
     public DoorLock() {
         super(IotType.DoorLock);
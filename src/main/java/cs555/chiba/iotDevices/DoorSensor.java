@@ -7,7 +7,7 @@ import java.util.List;
 
 public class DoorSensor extends IotDevice {
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.INSIDE_TEMPERATURE, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.OPEN_STATE);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.INSIDE_TEMPERATURE, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.OPEN_STATE);
 
     public DoorSensor() {
         super(IotType.DoorSensor);
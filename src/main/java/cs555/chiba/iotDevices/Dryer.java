@@ -7,7 +7,7 @@ import java.util.List;
 
 public class Dryer extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.CURRENT_CYCLE_STEP);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.CURRENT_CYCLE_STEP);
 
     public Dryer() {
         super(IotType.Dryer);
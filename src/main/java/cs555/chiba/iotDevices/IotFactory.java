@@ -2,6 +2,7 @@ package cs555.chiba.iotDevices;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 public enum IotFactory {
@@ -18,6 +19,20 @@ public enum IotFactory {
       return devices;
    }
 
+   /**
+    * The same thing as generateRandomDevices, without building the devices
+    */
+   public static DeviceInventory generateRandomInventory(int min, int max) {
+      return generateRandomInventory(min, max, ThreadLocalRandom.current());
+   }
+
+   /**
+    * The same devices for the same random numbers, so a seeded overlay gets the same devices every time
+    */
+   public static DeviceInventory generateRandomInventory(int min, int max, Random random) {
+      return DeviceInventory.random(min, max, random);
+   }
+
    private static IotDevice generateRandomDevice() {
       IotType[] types = IotType.values();
       IotType type = types[ThreadLocalRandom.current().nextInt(types.length)];
@@ -1,16 +1,12 @@
 package cs555.chiba.iotDevices;
 
-import cs555.chiba.util.Utilities;
-
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class IotTransformer {
 
    private String deviceString;
    private List<IotDevice> connectedIotDevices;
+   private DeviceInventory inventory;
 
    public IotTransformer(List<IotDevice> connectedIotDevices) {
       this.connectedIotDevices = connectedIotDevices;
@@ -20,46 +16,34 @@ public class IotTransformer {
       this.deviceString = deviceString;
    }
 
-   private String generateDeviceString() {
-      int[] counts = new int[IotType.values().length];
-      this.connectedIotDevices.forEach(iotDevice -> {
-         counts[iotDevice.getType().ordinal()]++;
-      });
-
-      return Arrays.stream(counts).mapToObj(Integer::toString).collect(Collectors.joining(":"));
+   public IotTransformer(DeviceInventory inventory) {
+      this.inventory = inventory;
    }
 
    public String getDeviceString() {
       if (this.deviceString == null) {
-         this.deviceString = generateDeviceString();
+         this.deviceString = getInventory().getDeviceString();
       }
 
       return this.deviceString;
    }
 
-   public List<IotDevice> getConnectedIotDevices() {
-      if (this.connectedIotDevices == null) {
-         this.connectedIotDevices = generateDevices();
+   /**
+    * The counts per device type.  Peers only need this, the device objects are never built.
+    */
+   public DeviceInventory getInventory() {
+      if (this.inventory == null) {
+         this.inventory = this.connectedIotDevices != null ? DeviceInventory.fromDevices(this.connectedIotDevices) : DeviceInventory.fromDeviceString(this.deviceString);
       }
 
-      return this.connectedIotDevices;
+      return this.inventory;
    }
 
-   private List<IotDevice> generateDevices() {
-      List<IotDevice> devices = new ArrayList<>();
-
-      if (!Utilities.isBlank(this.deviceString)) {
-         List<Integer> pieces = Arrays.stream(this.deviceString.split(":")).map(Integer::parseInt).collect(Collectors.toList());
-
-         int size = Math.min(pieces.size(), IotType.values().length);
-         for (int i = 0; i < size; i++) {
-            IotType type = IotType.values()[i];
-            int count = pieces.get(i);
-            for (int j = 0; j < count; j++) {
-               devices.add(type.getInstance());
-            }
-         }
+   public List<IotDevice> getConnectedIotDevices() {
+      if (this.connectedIotDevices == null) {
+         this.connectedIotDevices = getInventory().toDevices();
       }
-      return devices;
+
+      return this.connectedIotDevices;
    }
 }
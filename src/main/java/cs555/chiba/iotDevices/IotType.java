@@ -9,22 +9,47 @@
 
 package cs555.chiba.iotDevices;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import cs555.chiba.util.Utilities.METRIC_TYPES;
 
+import java.util.function.Supplier;
+
+/**
+ * Each type knows how to build its device and which metrics it reports.  The metrics are kept as a bitmask indexed by
+ * METRIC_TYPES ordinal, taken from the device class once when the enum loads.
+ */
 enum IotType {
-   AirPollutionMonitor, AirVent, Clock, DoorLock, DoorSensor, Dryer, LightSwitch, Microwave, Outlet, PowerMeter, Refrigerator, StreetLight, Thermometer, Thermostat, TV, WashMachine, Watch, WaterLeakSensor, WindowSensor;
+   AirPollutionMonitor(AirPollutionMonitor::new), AirVent(AirVent::new), Clock(Clock::new), DoorLock(DoorLock::new), DoorSensor(DoorSensor::new), Dryer(Dryer::new),
+   LightSwitch(LightSwitch::new), Microwave(Microwave::new), Outlet(Outlet::new), PowerMeter(PowerMeter::new), Refrigerator(Refrigerator::new), StreetLight(StreetLight::new),
+   Thermometer(Thermometer::new), Thermostat(Thermostat::new), TV(TV::new), WashMachine(WashMachine::new), Watch(Watch::new), WaterLeakSensor(WaterLeakSensor::new),
+   WindowSensor(WindowSensor::new);
+
+   static {
+      for (IotType type : values()) {
+         for (String metric : type.getInstance().getMetricNames()) {
+            type.metricMask |= 1L << METRIC_TYPES.valueOf(metric).ordinal();
+         }
+      }
+   }
+
+   private final Supplier<IotDevice> factory;
+   private long metricMask;
 
-   private static final Logger logger = Logger.getLogger(IotType.class.getName());
+   IotType(Supplier<IotDevice> factory) {
+      this.factory = factory;
+   }
 
    public IotDevice getInstance() {
-      try {
-         String path = IotDevice.class.getPackage().getName() + "." + this.name();
-         return (IotDevice) Class.forName(path).getConstructor().newInstance();
-      }
-      catch (Exception e) {
-         logger.log(Level.SEVERE, "This is going to be a fun error: ", e);
-         return new WindowSensor();  // this should never happen
-      }
+      return this.factory.get();
+   }
+
+   /**
+    * The metrics this type reports, bit n is METRIC_TYPES ordinal n
+    */
+   long getMetricMask() {
+      return this.metricMask;
+   }
+
+   boolean hasMetric(METRIC_TYPES metric) {
+      return (this.metricMask & (1L << metric.ordinal())) != 0;
    }
 }
@@ -7,7 +7,7 @@ import java.util.List;
 
 public class Refrigerator extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.FRIDGE_TEMPERATURE, Utilities.METRIC_TYPES.FREEZER_TEMPERATURE, Utilities.METRIC_TYPES.ICE_LEVEL);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.FRIDGE_TEMPERATURE, Utilities.METRIC_TYPES.FREEZER_TEMPERATURE, Utilities.METRIC_TYPES.ICE_LEVEL);
 
     public Refrigerator() {
         super(IotType.Refrigerator);
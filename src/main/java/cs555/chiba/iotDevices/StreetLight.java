@@ -6,7 +6,7 @@ import java.util.Arrays;
 import java.util.List;
 
 public class StreetLight extends IotDevice{
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.LIGHT_STATUS);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.LIGHT_STATUS);
 
     public StreetLight() {
         super(IotType.StreetLight);
@@ -7,7 +7,7 @@ import java.util.List;
 
 public class TV extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.CPU_USAGE, Utilities.METRIC_TYPES.MEMORY_USAGE, Utilities.METRIC_TYPES.NETFLIX, Utilities.METRIC_TYPES.AMAZON_PRIME);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.CPU_USAGE, Utilities.METRIC_TYPES.MEMORY_USAGE, Utilities.METRIC_TYPES.NETFLIX, Utilities.METRIC_TYPES.AMAZON_PRIME);
 
     public TV() {
         super(IotType.TV);
@@ -7,7 +7,7 @@ import java.util.List;
 
 public class Thermometer extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.RECORD_HIGH, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.RECORD_LOW);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.RECORD_HIGH, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.RECORD_LOW);
 
     public Thermometer() {
         super(IotType.Thermometer);
@@ -7,7 +7,7 @@ import java.util.List;
 
 public class Thermostat extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.SET_TEMPERATURE, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.TIME_TO_NEXT_TERMPERATURE_CHANGE);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.SET_TEMPERATURE, Utilities.METRIC_TYPES.TEMPERATURE, Utilities.METRIC_TYPES.TIME_TO_NEXT_TERMPERATURE_CHANGE);
 
     public Thermostat() {
         super(IotType.Thermostat);
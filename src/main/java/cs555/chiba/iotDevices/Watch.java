@@ -7,7 +7,7 @@ import java.util.List;
 
 public class Watch extends IotDevice{
 
-    private List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.CPU_USAGE, Utilities.METRIC_TYPES.MEMORY_USAGE, Utilities.METRIC_TYPES.BATTERY_PERCENTAGE, Utilities.METRIC_TYPES.HEART_RATE);
+    private static final List<Utilities.METRIC_TYPES> listOfValidStates = Arrays.asList(Utilities.METRIC_TYPES.POWER_CONSUMPTION, Utilities.METRIC_TYPES.POWER_STATE, Utilities.METRIC_TYPES.CPU_USAGE, Utilities.METRIC_TYPES.MEMORY_USAGE, Utilities.METRIC_TYPES.BATTERY_PERCENTAGE, Utilities.METRIC_TYPES.HEART_RATE);
 
     public Watch() {
         super(IotType.Watch);
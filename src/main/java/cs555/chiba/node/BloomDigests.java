@@ -0,0 +1,186 @@
+package cs555.chiba.node;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.AttenuatedBloomFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+/**
+ * Gossip type 1 as digests.  Instead of shipping every (location, metric name) entry, each peer tells each neighbor which
+ * names can be reached through it with an attenuated Bloom filter: its own names at level 0, and its other neighbors'
+ * filters one level down.  The filter sent to a neighbor leaves out what that neighbor told us, so names don't echo back.
+ *
+ * A query for a name goes to the neighbors whose filters have it within the hops the query has left, nearest first.
+ * Routing is a lookup in filters already held rather than a scan of cached locations.
+ *
+ * Turned on with -Dcsu.gossip.entries=digest.  -Dcsu.digest.depth sets how many hops a filter covers (3),
+ * -Dcsu.digest.bits the bits per level (512) and -Dcsu.digest.hashes the bits set per name (3).  Every peer needs the same
+ * settings, a digest that doesn't match them is logged and dropped.
+ */
+class BloomDigests {
+
+   private static final Logger logger = Logger.getLogger(BloomDigests.class.getName());
+
+   static final String ENTRIES_PROPERTY = "csu.gossip.entries";
+   static final String DEPTH_PROPERTY = "csu.digest.depth";
+   static final String BITS_PROPERTY = "csu.digest.bits";
+   static final String HASHES_PROPERTY = "csu.digest.hashes";
+
+   private final int depth;
+   private final int bits;
+   private final int hashes;
+   private AttenuatedBloomFilter local; // guarded by this
+   private final Map<Identity, AttenuatedBloomFilter> received = new HashMap<>(); // guarded by this
+   private final Map<Identity, AttenuatedBloomFilter> sent = new HashMap<>(); // guarded by this
+
+   private final LongAdder digestsReceived = new LongAdder();
+   private final LongAdder digestsSent = new LongAdder();
+   private final LongAdder bytesSent = new LongAdder();
+   private final LongAdder upToDate = new LongAdder();
+   private final LongAdder routed = new LongAdder();
+   private final LongAdder rejected = new LongAdder();
+
+   BloomDigests(int depth, int bits, int hashes) {
+      this.depth = depth;
+      this.bits = bits;
+      this.hashes = hashes;
+      this.local = new AttenuatedBloomFilter(depth, bits, hashes);
+   }
+
+   /**
+    * @return The digests, or null when location entries are gossiped in full
+    */
+   static BloomDigests fromProperties() {
+      if (!"digest".equalsIgnoreCase(System.getProperty(ENTRIES_PROPERTY, "locations").trim())) {
+         return null;
+      }
+
+      return new BloomDigests(Integer.getInteger(DEPTH_PROPERTY, 3), Integer.getInteger(BITS_PROPERTY, 512), Integer.getInteger(HASHES_PROPERTY, 3));
+   }
+
+   /**
+    * The names this peer has itself
+    */
+   synchronized void setLocal(Collection<String> names) {
+      AttenuatedBloomFilter filter = new AttenuatedBloomFilter(this.depth, this.bits, this.hashes);
+      names.forEach(name -> filter.add(0, name));
+      this.local = filter;
+   }
+
+   /**
+    * Keep a neighbor's filter
+    * @return true if it told us something new, false if it didn't or the filter doesn't match this peer's settings
+    */
+   synchronized boolean receive(Identity neighbor, AttenuatedBloomFilter filter) {
+      this.digestsReceived.increment();
+
+      if (!this.local.isCompatible(filter)) {
+         this.rejected.increment();
+         logger.warning("Dropping the digest from [" + neighbor.getIdentityKey() + "], it doesn't match the configured depth [" + this.depth + "], bits [" + this.bits + "] and hashes ["
+               + this.hashes + "]");
+         return false;
+      }
+
+      AttenuatedBloomFilter old = this.received.put(neighbor, filter);
+      return !filter.equals(old);
+   }
+
+   /**
+    * Send each neighbor the filter for it if it changed since it was last sent.  Neighbors that would go over the budget
+    * are left for a later round.
+    * @param build Turns a filter into the message for a neighbor
+    * @return The bytes sent
+    */
+   synchronized int broadcast(List<Identity> neighbors, BiFunction<Identity, AttenuatedBloomFilter, byte[]> build, BiConsumer<Identity, byte[]> send, int budget) {
+      int used = 0;
+
+      for (Identity neighbor : neighbors) {
+         AttenuatedBloomFilter filter = filterFor(neighbor);
+
+         if (filter.equals(this.sent.get(neighbor))) {
+            this.upToDate.increment();
+            continue;
+         }
+
+         byte[] message = build.apply(neighbor, filter);
+         if (used + message.length > budget) {
+            continue;
+         }
+
+         this.sent.put(neighbor, filter);
+         send.accept(neighbor, message);
+         used += message.length;
+         this.digestsSent.increment();
+         this.bytesSent.add(message.length);
+      }
+
+      return used;
+   }
+
+   /**
+    * What a neighbor can reach through this peer: our own names, then everyone else's one hop further
+    */
+   AttenuatedBloomFilter filterFor(Identity neighbor) {
+      AttenuatedBloomFilter filter = this.local.copy();
+
+      this.received.forEach((from, theirs) -> {
+         if (!from.equals(neighbor)) {
+            filter.mergeShifted(theirs);
+         }
+      });
+
+      return filter;
+   }
+
+   /**
+    * @param hopsLeft How many more hops the query can take
+    * @return The neighbors that can reach the name in time, nearest first
+    */
+   synchronized List<Identity> route(String name, int hopsLeft, Identity exclude) {
+      List<Identity> matches = new ArrayList<>();
+      Map<Identity, Integer> levels = new HashMap<>();
+
+      this.received.forEach((neighbor, filter) -> {
+         int level = filter.firstLevel(name);
+
+         // the neighbor is one hop, its level 0 names are on it
+         if (level >= 0 && level < hopsLeft && !neighbor.equals(exclude)) {
+            matches.add(neighbor);
+            levels.put(neighbor, level);
+         }
+      });
+
+      matches.sort(Comparator.comparing(levels::get));
+      this.routed.add(matches.size());
+      return matches;
+   }
+
+   /**
+    * Start the neighbor over, the next round sends it the whole filter
+    */
+   synchronized void forget(Identity neighbor) {
+      this.sent.remove(neighbor);
+   }
+
+   /**
+    * Drop everything held for a neighbor that is no longer connected, so no query is routed to it
+    */
+   synchronized void remove(Identity neighbor) {
+      this.received.remove(neighbor);
+      this.sent.remove(neighbor);
+   }
+
+   String getMetrics() {
+      return "Gossip Digests: depth: " + this.depth + "  bits: " + this.bits + "  hashes: " + this.hashes + "\n" + "received: " + this.digestsReceived.sum() + "  sent: " + this.digestsSent.sum()
+            + "  bytes: " + this.bytesSent.sum() + "  neighbors up to date: " + this.upToDate.sum() + "  queries routed: " + this.routed.sum() + "  digests dropped: " + this.rejected.sum();
+   }
+}
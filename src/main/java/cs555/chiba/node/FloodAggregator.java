@@ -0,0 +1,196 @@
+package cs555.chiba.node;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.wireformats.Flood;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Combines the replies of a convergecast flood.  When a peer forwards the query it waits for a reply from each peer it
+ * forwarded to, adds their totals to its own, and sends one reply to the peer it heard the query from.  The originator ends
+ * up with a single answer instead of a report from every peer.
+ *
+ * A peer that never answers can't hold the query forever.  Each wait is given -Dcsu.flood.hop.timeout.ms for every hop
+ * the query can still travel, after which whatever has arrived is sent up.  Each peer waits a hop less than its parent, so
+ * a parent never gives up before its children have had their turn.  A flood with no hop limit is treated as if it could
+ * travel UNLIMITED_HOPS_WAIT hops.  Replies that arrive after that are too late to combine and are passed along on their
+ * own.
+ */
+class FloodAggregator implements AutoCloseable {
+
+   static final String HOP_TIMEOUT_PROPERTY = "csu.flood.hop.timeout.ms";
+
+   private static final int UNLIMITED_HOPS_WAIT = 16; // hops to wait for when the flood has no hop limit
+
+   private final ConcurrentHashMap<UUID, Pending> pending = new ConcurrentHashMap<>();
+   private final ScheduledThreadPoolExecutor timer;
+   private final long hopTimeoutMillis;
+   private final Supplier<Identity> self;
+   private final BiConsumer<Identity, Flood> upstream;
+
+   private final LongAdder started = new LongAdder();
+   private final LongAdder merged = new LongAdder();
+   private final LongAdder sent = new LongAdder();
+   private final LongAdder timedOut = new LongAdder();
+
+   /**
+    * @param self Who the replies are from
+    * @param upstream Sends a reply to the peer the query came from
+    */
+   FloodAggregator(long hopTimeoutMillis, Supplier<Identity> self, BiConsumer<Identity, Flood> upstream) {
+      this.hopTimeoutMillis = hopTimeoutMillis;
+      this.self = self;
+      this.upstream = upstream;
+      this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+         Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+         thread.setName("FloodAggregatorTimer");
+         thread.setDaemon(true);
+         return thread;
+      });
+      this.timer.setRemoveOnCancelPolicy(true);
+   }
+
+   static FloodAggregator fromProperties(Supplier<Identity> self, BiConsumer<Identity, Flood> upstream) {
+      return new FloodAggregator(Long.getLong(HOP_TIMEOUT_PROPERTY, 500L), self, upstream);
+   }
+
+   /**
+    * Start waiting on the children of a query.  With no children the reply goes straight up.
+    * @param query The query as this peer received it
+    * @param parent Who to reply to
+    * @param checked This peer's device count
+    * @param withMetric This peer's devices with the metric
+    * @param children How many peers the query was forwarded to
+    */
+   void begin(Flood query, Identity parent, int checked, int withMetric, int children) {
+      Pending wait = new Pending(query, parent, checked, withMetric, children);
+      this.started.increment();
+
+      if (children < 1) {
+         complete(wait);
+         return;
+      }
+
+      this.pending.put(query.getRingID(), wait);
+      wait.timeout = this.timer.schedule(() -> expire(wait), this.hopTimeoutMillis * hopsToWait(query), TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * @return The hops the query can still travel, never less than one
+    */
+   static int hopsToWait(Flood query) {
+      int hopLimit = query.getHopLimit() == -1 ? UNLIMITED_HOPS_WAIT : query.getHopLimit();
+      return Math.max(1, hopLimit - query.getCurrentHop());
+   }
+
+   /**
+    * Add a child's reply to the query it belongs to
+    * @return false when nothing is waiting on the reply any more
+    */
+   boolean merge(Flood reply) {
+      Pending wait = this.pending.get(reply.getRingID());
+
+      if (wait == null) {
+         return false;
+      }
+
+      boolean done;
+      synchronized (wait) {
+         if (wait.finished) {
+            return false;
+         }
+
+         wait.checked += reply.getTotalDevicesChecked();
+         wait.withMetric += reply.getTotalDevicesWithMetric();
+         wait.deepestHop = Math.max(wait.deepestHop, reply.getCurrentHop());
+         done = --wait.outstanding == 0;
+      }
+
+      this.merged.increment();
+
+      if (done) {
+         finish(wait);
+      }
+      return true;
+   }
+
+   private void expire(Pending wait) {
+      this.timedOut.increment();
+      finish(wait);
+   }
+
+   private void finish(Pending wait) {
+      synchronized (wait) {
+         if (wait.finished) {
+            return;
+         }
+         wait.finished = true;
+      }
+
+      this.pending.remove(wait.query.getRingID(), wait);
+
+      if (wait.timeout != null) {
+         wait.timeout.cancel(false);
+      }
+
+      complete(wait);
+   }
+
+   private void complete(Pending wait) {
+      Flood reply = new Flood(wait.query.getID(), this.self.get(), wait.query.getOriginatorId(), wait.query.getTarget(), wait.deepestHop, wait.query.getHopLimit());
+      reply.setMode(Flood.MODE_REPLY);
+      reply.setRing(wait.query.getRing());
+
+      synchronized (wait) {
+         reply.setTotalDevicesChecked(wait.checked);
+         reply.setTotalDevicesWithMetric(wait.withMetric);
+      }
+
+      this.sent.increment();
+      this.upstream.accept(wait.parent, reply);
+   }
+
+   int size() {
+      return this.pending.size();
+   }
+
+   String getMetrics() {
+      StringBuilder out = new StringBuilder("Convergecast: \n");
+      out.append("waiting: ").append(size()).append("  hop timeout ms: ").append(this.hopTimeoutMillis).append("\n");
+      out.append("queries: ").append(this.started.sum()).append("  replies merged: ").append(this.merged.sum()).append("  replies sent: ").append(this.sent.sum()).append("  timed out: ").append(this.timedOut.sum());
+      return out.toString();
+   }
+
+   @Override public void close() {
+      this.timer.shutdownNow();
+   }
+
+   private static class Pending {
+
+      private final Flood query;
+      private final Identity parent;
+      private int checked;
+      private int withMetric;
+      private int deepestHop;
+      private int outstanding;
+      private boolean finished = false;
+      private ScheduledFuture<?> timeout;
+
+      Pending(Flood query, Identity parent, int checked, int withMetric, int children) {
+         this.query = query;
+         this.parent = parent;
+         this.checked = checked;
+         this.withMetric = withMetric;
+         this.deepestHop = query.getCurrentHop();
+         this.outstanding = children;
+      }
+   }
+}
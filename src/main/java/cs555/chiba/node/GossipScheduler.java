@@ -0,0 +1,276 @@
+package cs555.chiba.node;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.Utilities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs gossip in rounds instead of on every change.  Each round picks -Dcsu.gossip.fanout random neighbors and, depending
+ * on -Dcsu.gossip.mode, pushes them what they haven't seen, asks them for what this peer hasn't seen, or both.  Rounds are
+ * -Dcsu.gossip.period.ms apart, moved by up to -Dcsu.gossip.jitter.ms either way so peers don't fall into step.  A round
+ * pushes at most -Dcsu.gossip.budget.bytes.
+ *
+ * The default mode is reactive, which doesn't run rounds at all and leaves peers passing changes on as they arrive.
+ *
+ * To see how quickly gossip spreads, the first time a metric name is learned at a distance is recorded against the round
+ * and the time since the scheduler started.
+ */
+class GossipScheduler implements AutoCloseable {
+
+   private static final Logger logger = Logger.getLogger(GossipScheduler.class.getName());
+
+   static final String MODE_PROPERTY = "csu.gossip.mode";
+   static final String PERIOD_PROPERTY = "csu.gossip.period.ms";
+   static final String FANOUT_PROPERTY = "csu.gossip.fanout";
+   static final String JITTER_PROPERTY = "csu.gossip.jitter.ms";
+   static final String BUDGET_PROPERTY = "csu.gossip.budget.bytes";
+
+   enum Mode {
+      REACTIVE, PUSH, PULL, PUSHPULL;
+
+      boolean pushes() {
+         return this == PUSH || this == PUSHPULL;
+      }
+
+      boolean pulls() {
+         return this == PULL || this == PUSHPULL;
+      }
+   }
+
+   /**
+    * Sends neighbors the changes they haven't seen
+    */
+   interface Push {
+
+      /**
+       * @param budget The most bytes to send
+       * @return The bytes sent
+       */
+      int push(List<Identity> neighbors, int budget);
+   }
+
+   private final Mode mode;
+   private final long periodMillis;
+   private final int fanout;
+   private final long jitterMillis;
+   private final int budgetBytes;
+   private final Random random;
+   private final Supplier<List<Identity>> neighbors;
+   private final Push push;
+   private final Consumer<List<Identity>> pull;
+   private final ScheduledThreadPoolExecutor timer;
+
+   private final AtomicLong round = new AtomicLong();
+   private final LongAdder pushed = new LongAdder();
+   private final LongAdder pulled = new LongAdder();
+   private volatile long startedAt = System.currentTimeMillis();
+   private volatile boolean running = false;
+
+   private final Map<Integer, Convergence> convergence = new TreeMap<>(); // guarded by itself, by distance
+
+   /**
+    * @param neighbors The neighbors to choose from each round
+    * @param push Sends the chosen neighbors what they haven't seen
+    * @param pull Asks the chosen neighbors for what this peer hasn't seen
+    */
+   GossipScheduler(Mode mode, long periodMillis, int fanout, long jitterMillis, int budgetBytes, Random random, Supplier<List<Identity>> neighbors, Push push, Consumer<List<Identity>> pull) {
+      Utilities.checkArgument(periodMillis > 0, "The gossip period must be positive [" + periodMillis + "]");
+      Utilities.checkArgument(fanout > 0, "The gossip fan out must be positive [" + fanout + "]");
+      Utilities.checkArgument(jitterMillis >= 0 && jitterMillis < periodMillis, "The gossip jitter must be at least 0 and less than the period [" + jitterMillis + "]");
+      Utilities.checkArgument(budgetBytes > 0, "The gossip budget must be positive [" + budgetBytes + "]");
+      this.mode = mode;
+      this.periodMillis = periodMillis;
+      this.fanout = fanout;
+      this.jitterMillis = jitterMillis;
+      this.budgetBytes = budgetBytes;
+      this.random = random;
+      this.neighbors = neighbors;
+      this.push = push;
+      this.pull = pull;
+      this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+         Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+         thread.setName("GossipScheduler");
+         thread.setDaemon(true);
+         return thread;
+      });
+   }
+
+   static GossipScheduler fromProperties(Supplier<List<Identity>> neighbors, Push push, Consumer<List<Identity>> pull) {
+      Mode mode = Mode.valueOf(System.getProperty(MODE_PROPERTY, "reactive").trim().toUpperCase(Locale.ROOT).replace("-", ""));
+      return new GossipScheduler(mode, Long.getLong(PERIOD_PROPERTY, 1000L), Integer.getInteger(FANOUT_PROPERTY, 3), Long.getLong(JITTER_PROPERTY, 250L), Integer.getInteger(BUDGET_PROPERTY, 65536), new Random(), neighbors, push, pull);
+   }
+
+   /**
+    * @return true when changes should be passed on as they arrive rather than in rounds
+    */
+   boolean isReactive() {
+      return this.mode == Mode.REACTIVE;
+   }
+
+   void start() {
+      this.startedAt = System.currentTimeMillis();
+
+      if (isReactive()) {
+         return;
+      }
+
+      this.running = true;
+      scheduleNext();
+   }
+
+   private void scheduleNext() {
+      if (!this.running) {
+         return;
+      }
+
+      long delay = this.periodMillis;
+      if (this.jitterMillis > 0) {
+         delay += (long) ((this.random.nextDouble() * 2 - 1) * this.jitterMillis);
+      }
+
+      this.timer.schedule(() -> {
+         try {
+            runRound();
+         }
+         catch (Exception e) {
+            logger.log(Level.WARNING, "Gossip round failed", e);
+         }
+         finally {
+            scheduleNext();
+         }
+      }, delay, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Gossip with a random few neighbors
+    */
+   void runRound() {
+      this.round.incrementAndGet();
+      List<Identity> chosen = choose(this.neighbors.get());
+
+      if (chosen.isEmpty()) {
+         return;
+      }
+
+      if (this.mode.pushes()) {
+         this.pushed.add(this.push.push(chosen, this.budgetBytes));
+      }
+
+      if (this.mode.pulls()) {
+         this.pull.accept(chosen);
+         this.pulled.add(chosen.size());
+      }
+   }
+
+   List<Identity> choose(List<Identity> candidates) {
+      if (candidates.size() <= this.fanout) {
+         return candidates;
+      }
+
+      List<Identity> shuffled = new ArrayList<>(candidates);
+      Collections.shuffle(shuffled, this.random);
+      return shuffled.subList(0, this.fanout);
+   }
+
+   /**
+    * Note a metric name this peer now knows of at a distance.  Only the first time counts.
+    */
+   void learned(String name, int distance) {
+      long elapsed = System.currentTimeMillis() - this.startedAt;
+
+      synchronized (this.convergence) {
+         this.convergence.computeIfAbsent(distance, key -> new Convergence()).learned(name, this.round.get(), elapsed);
+      }
+   }
+
+   long getRound() {
+      return this.round.get();
+   }
+
+   /**
+    * @return The round the first name was learned at a distance, or -1 if none has been
+    */
+   long getFirstRound(int distance) {
+      synchronized (this.convergence) {
+         Convergence known = this.convergence.get(distance);
+         return known == null ? -1 : known.firstRound;
+      }
+   }
+
+   /**
+    * @return How many names are known at a distance
+    */
+   int getNamesKnown(int distance) {
+      synchronized (this.convergence) {
+         Convergence known = this.convergence.get(distance);
+         return known == null ? 0 : known.names.size();
+      }
+   }
+
+   String getMetrics() {
+      StringBuilder out = new StringBuilder("Gossip Scheduler: \n");
+      out.append("mode: ").append(this.mode.name().toLowerCase(Locale.ROOT));
+
+      if (!isReactive()) {
+         out.append("  period ms: ").append(this.periodMillis).append("  fan out: ").append(this.fanout).append("  jitter ms: ").append(this.jitterMillis).append("  budget bytes: ").append(this.budgetBytes);
+      }
+
+      out.append("\n").append("rounds: ").append(this.round.get()).append("  bytes pushed: ").append(this.pushed.sum()).append("  pulls sent: ").append(this.pulled.sum());
+
+      synchronized (this.convergence) {
+         this.convergence.forEach((distance, known) -> {
+            out.append("\n").append("distance ").append(distance).append(": names: ").append(known.names.size());
+            out.append("  first at round ").append(known.firstRound).append(" (").append(known.firstMillis).append(" ms)");
+            out.append("  last at round ").append(known.lastRound).append(" (").append(known.lastMillis).append(" ms)");
+         });
+      }
+
+      return out.toString();
+   }
+
+   @Override public void close() {
+      this.running = false;
+      this.timer.shutdownNow();
+   }
+
+   private static class Convergence {
+
+      private final Set<String> names = new HashSet<>();
+      private long firstRound = -1;
+      private long firstMillis;
+      private long lastRound;
+      private long lastMillis;
+
+      void learned(String name, long round, long elapsed) {
+         if (!this.names.add(name)) {
+            return;
+         }
+
+         if (this.firstRound < 0) {
+            this.firstRound = round;
+            this.firstMillis = elapsed;
+         }
+
+         this.lastRound = round;
+         this.lastMillis = elapsed;
+      }
+   }
+}
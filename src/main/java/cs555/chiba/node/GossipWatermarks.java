@@ -0,0 +1,99 @@
+package cs555.chiba.node;
+
+import cs555.chiba.service.Identity;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+
+/**
+ * The cache version each neighbor has been sent, so gossip only sends what changed since.  A neighbor nothing has been sent
+ * to starts at 0 and gets the whole cache.
+ *
+ * Neighbors that were last sent the same version get the same message, so each round serializes once per distinct version
+ * rather than once per neighbor.
+ */
+class GossipWatermarks {
+
+   private static final byte[] NO_CHANGES = new byte[0];
+
+   private final String name;
+   private final Map<Identity, Long> sent = new HashMap<>(); // guarded by this
+
+   private final LongAdder rounds = new LongAdder();
+   private final LongAdder messages = new LongAdder();
+   private final LongAdder bytes = new LongAdder();
+   private final LongAdder upToDate = new LongAdder();
+   private final LongAdder overBudget = new LongAdder();
+
+   GossipWatermarks(String name) {
+      this.name = name;
+   }
+
+   /**
+    * Send every neighbor the changes it hasn't seen
+    * @param version The cache version, read before the changes are collected
+    * @param changesSince Serializes the changes after a version, or null if there are none
+    * @param send Sends a message to a neighbor
+    */
+   void broadcast(List<Identity> neighbors, long version, LongFunction<byte[]> changesSince, BiConsumer<Identity, byte[]> send) {
+      broadcast(neighbors, version, changesSince, send, Integer.MAX_VALUE);
+   }
+
+   /**
+    * Send neighbors the changes they haven't seen until the budget runs out.  Nothing goes over the budget.  Neighbors
+    * that are skipped keep their old version and are caught up by a later round, or by a pull if their changes are bigger
+    * than a whole round's budget.
+    * @param budget The most bytes to send
+    * @return The bytes sent
+    */
+   synchronized int broadcast(List<Identity> neighbors, long version, LongFunction<byte[]> changesSince, BiConsumer<Identity, byte[]> send, int budget) {
+      Map<Long, byte[]> built = new HashMap<>();
+      int used = 0;
+      this.rounds.increment();
+
+      for (Identity neighbor : neighbors) {
+         long since = this.sent.getOrDefault(neighbor, 0L);
+
+         if (since >= version) {
+            this.upToDate.increment();
+            continue;
+         }
+
+         byte[] message = built.computeIfAbsent(since, key -> {
+            byte[] changes = changesSince.apply(key);
+            return changes == null ? NO_CHANGES : changes;
+         });
+
+         if (message != NO_CHANGES && used + message.length > budget) {
+            this.overBudget.increment();
+            continue;
+         }
+
+         this.sent.put(neighbor, version);
+
+         if (message != NO_CHANGES) {
+            send.accept(neighbor, message);
+            used += message.length;
+            this.messages.increment();
+            this.bytes.add(message.length);
+         }
+      }
+
+      return used;
+   }
+
+   /**
+    * Start the neighbor over, the next round sends it everything
+    */
+   synchronized void forget(Identity neighbor) {
+      this.sent.remove(neighbor);
+   }
+
+   String getMetrics() {
+      return this.name + ": rounds: " + this.rounds.sum() + "  messages: " + this.messages.sum() + "  bytes: " + this.bytes.sum() + "  neighbors up to date: " + this.upToDate.sum() + "  skipped over budget: " + this.overBudget.sum();
+   }
+}
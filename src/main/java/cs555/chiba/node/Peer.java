@@ -14,12 +14,15 @@ import cs555.chiba.service.Identity;
 import cs555.chiba.service.ServiceNode;
 import cs555.chiba.util.LRUCache;
 import cs555.chiba.util.LRUCache.Entry;
-import cs555.chiba.util.Metric;
+import cs555.chiba.util.QueryMetricStore;
+import cs555.chiba.util.SeenFilter;
 import cs555.chiba.util.Utilities;
 import cs555.chiba.wireformats.Event;
 import cs555.chiba.wireformats.Flood;
 import cs555.chiba.wireformats.GossipData;
+import cs555.chiba.wireformats.GossipDigest;
 import cs555.chiba.wireformats.GossipEntries;
+import cs555.chiba.wireformats.GossipPull;
 import cs555.chiba.wireformats.GossipQuery;
 import cs555.chiba.wireformats.InitiateConnectionsMessage;
 import cs555.chiba.wireformats.IntroductionMessage;
@@ -40,32 +43,49 @@ public class Peer extends ServiceNode {
    private static final Logger logger = Logger.getLogger(Peer.class.getName());
 
    private Identity registryId;
-   private LRUCache queryIDCache;
+   private SeenFilter seenQueries;
    private LRUCache gossipCache;
    private LRUCache gossipEntries;
-   private HashMap<UUID, Metric> metrics;
-   private List<IotDevice> connectedIotDevices;
+   private GossipWatermarks gossipDataSent = new GossipWatermarks("Gossip Data");
+   private GossipWatermarks gossipEntriesSent = new GossipWatermarks("Gossip Entries");
+   private GossipScheduler gossipScheduler;
+   private BloomDigests gossipDigests; // null unless location entries are gossiped as digests
+   private QueryMetricStore metrics;
+   private FloodAggregator floodAggregator;
+   private WalkerCheckIns walkerCheckIns;
+   private DeviceInventory inventory;
 
    public Peer(String registryHost, int registryPort, int numberOfIoTDevices, int cacheSize) throws IOException {
       super();
       this.registryId = Identity.builder().withHost(registryHost).withPort(registryPort).build();
       this.createIotNetwork(numberOfIoTDevices);
 
-      this.queryIDCache = new LRUCache(40);
+      this.seenQueries = SeenFilter.fromProperties();
       this.gossipCache = new LRUCache(cacheSize);
       this.gossipEntries = new LRUCache(cacheSize);
-      this.metrics = new HashMap<>();
+      this.metrics = QueryMetricStore.fromProperties();
+      this.floodAggregator = FloodAggregator.fromProperties(this::getIdentity, this::sendUpstream);
+      this.walkerCheckIns = WalkerCheckIns.fromProperties();
+      this.gossipDigests = BloomDigests.fromProperties();
+      this.gossipScheduler = GossipScheduler.fromProperties(() -> gossipNeighbors(null), this::pushGossip, this::pullGossip);
    }
 
    @Override protected void specialStartUp() {
       register();
+      this.gossipScheduler.start();
+   }
+
+   @Override protected void specialShutdown() {
+      this.gossipScheduler.close();
+      this.floodAggregator.close();
+      this.walkerCheckIns.close();
+      this.metrics.close();
    }
 
    private void register() {
       try {
          logger.info("Registering: [" + this.getIdentity().getIdentityName() + "] \n");
-         IotTransformer trans = new IotTransformer(this.connectedIotDevices);
-         RegisterMessage message = new RegisterMessage(this.getIdentity(), trans.getDeviceString());
+         RegisterMessage message = new RegisterMessage(this.getIdentity(), this.inventory.getDeviceString());
          this.getTcpConnectionsCache().sendSingle(this.registryId, message.getBytes());
       }
       catch (Exception e) {
@@ -79,27 +99,22 @@ public class Peer extends ServiceNode {
       if (numberOfIoTDevices == 0) {
          // if no number of IoT devices defined, then generate a random number between 3 and 30 devices
          // Upper bounds of 27 and then adding 3 to ensure the range above is followed
-         this.connectedIotDevices = IotFactory.generateRandomDevices(3, 30);
+         setInventory(IotFactory.generateRandomInventory(3, 30));
       }
       else {
-         this.connectedIotDevices = IotFactory.generateRandomDevices(1, numberOfIoTDevices);
+         setInventory(IotFactory.generateRandomInventory(1, numberOfIoTDevices));
       }
    }
 
-   private Integer calculateTotalDevicesWithMetric(String metricName) {
-      int devicesWithMetric = 0;
-      for (IotDevice device : this.connectedIotDevices) {
-         devicesWithMetric += device.getMetric(metricName);
-      }
-      return devicesWithMetric;
+   /**
+    * Replace the devices on this peer
+    */
+   private void setInventory(DeviceInventory inventory) {
+      this.inventory = inventory;
    }
-   
-   private ArrayList<String> getAllMetricNames(){
-	   ArrayList<String> metricNames = new ArrayList<>();
-	   for (IotDevice device : this.connectedIotDevices) {
-		   metricNames.addAll(new ArrayList<>(Arrays.asList(device.getMetricNames())));
-	   }
-	   return metricNames;
+
+   private Integer calculateTotalDevicesWithMetric(String metricName) {
+      return this.inventory.countWithMetric(metricName);
    }
 
    /**
@@ -109,25 +124,28 @@ public class Peer extends ServiceNode {
    private void handle(Flood e) {
       logger.info("Received flood message with ID: " + e.getID());
 
+      if (e.getMode() == Flood.MODE_CONVERGECAST) {
+         handleConvergecast(e);
+         return;
+      }
+      else if (e.getMode() == Flood.MODE_REPLY) {
+         handleFloodReply(e);
+         return;
+      }
+
       Flood nextFloodMessage = new Flood(e.getID(), this.getIdentity(), e.getOriginatorId(), e.getTarget(), e.getCurrentHop() + 1, e.getHopLimit());
       nextFloodMessage.setTotalDevicesChecked(e.getTotalDevicesChecked());
       nextFloodMessage.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric());
       byte[] mr = nextFloodMessage.getBytes();
 
-      synchronized(queryIDCache) {
-	      if (queryIDCache.containsEntry(e.getID())) {
-	         //We've already processed this query - ignore it
-	         queryIDCache.putEntry(e.getID(), e.getSenderID());
-	
-	         this.getTcpConnectionsCache().sendSingle(e.getOriginatorId(), mr);
-	
-	         return;
-	      }
-	
-	      queryIDCache.putEntry(e.getID(), e.getSenderID());
+      if (!seenQueries.markIfAbsent(e.getID(), e.getSenderID())) {
+         //We've already processed this query - ignore it
+         this.getTcpConnectionsCache().sendSingle(e.getOriginatorId(), mr);
+
+         return;
       }
       //Check if queried data is here - if so, log appropriately
-      metrics.put(e.getID(), new Metric(this.calculateTotalDevicesWithMetric(e.getTarget()), e.getCurrentHop()));
+      metrics.put(e.getID(), this.calculateTotalDevicesWithMetric(e.getTarget()), e.getCurrentHop());
 
       if (e.getCurrentHop() + 1 < e.getHopLimit() || e.getHopLimit() == -1) {
          //If the message hasn't yet hit its hop limit
@@ -136,7 +154,7 @@ public class Peer extends ServiceNode {
          // This list should be excluded from the initial message
          Identity randomNode = this.getTcpConnectionsCache().getRandomSender().getIdentity();
 
-         nextFloodMessage.setTotalDevicesChecked(e.getTotalDevicesChecked() + connectedIotDevices.size());
+         nextFloodMessage.setTotalDevicesChecked(e.getTotalDevicesChecked() + this.inventory.getTotalDevices());
          nextFloodMessage.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric() + this.calculateTotalDevicesWithMetric(e.getTarget()));
          byte[] m = nextFloodMessage.getBytes();
 
@@ -155,7 +173,7 @@ public class Peer extends ServiceNode {
       } else {
          // No more hops for the flooding to take
 
-         nextFloodMessage.setTotalDevicesChecked(e.getTotalDevicesChecked() + connectedIotDevices.size());
+         nextFloodMessage.setTotalDevicesChecked(e.getTotalDevicesChecked() + this.inventory.getTotalDevices());
          nextFloodMessage.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric() + this.calculateTotalDevicesWithMetric(e.getTarget()));
          mr = nextFloodMessage.getBytes();
 
@@ -164,6 +182,71 @@ public class Peer extends ServiceNode {
       }
    }
 
+   /**
+    * Count this peer, forward the query to every neighbor but the one it came from, and wait for their replies before
+    * replying to the sender.  Duplicates are answered with an empty reply so the sender isn't left waiting.
+    *
+    * A re-issue from an expanding ring search travels through peers an earlier ring already counted.  They pass it on
+    * without counting themselves again.
+    * @param e The Flood message
+    */
+   private void handleConvergecast(Flood e) {
+      if (!seenQueries.markIfAbsent(e.getRingID(), e.getSenderID())) {
+         Flood empty = new Flood(e.getID(), this.getIdentity(), e.getOriginatorId(), e.getTarget(), e.getCurrentHop(), e.getHopLimit());
+         empty.setMode(Flood.MODE_REPLY);
+         empty.setRing(e.getRing());
+         sendUpstream(e.getSenderID(), empty);
+         return;
+      }
+
+      boolean counted = e.getRing() == 0 || seenQueries.markIfAbsent(e.getID(), e.getSenderID());
+      int withMetric = counted ? this.calculateTotalDevicesWithMetric(e.getTarget()) : 0;
+      int checked = counted ? this.inventory.getTotalDevices() : 0;
+
+      if (counted) {
+         metrics.put(e.getID(), withMetric, e.getCurrentHop());
+      }
+
+      List<Identity> children = new ArrayList<>();
+      if (e.getCurrentHop() + 1 < e.getHopLimit() || e.getHopLimit() == -1) {
+         children = new ArrayList<>(this.getTcpConnectionsCache().listPeers());
+         children.remove(e.getSenderID());
+      }
+
+      // start waiting before anything is sent, the replies can come back quickly
+      this.floodAggregator.begin(e, e.getSenderID(), checked, withMetric, children.size());
+
+      if (!children.isEmpty()) {
+         Flood nextFloodMessage = new Flood(e.getID(), this.getIdentity(), e.getOriginatorId(), e.getTarget(), e.getCurrentHop() + 1, e.getHopLimit());
+         nextFloodMessage.setMode(Flood.MODE_CONVERGECAST);
+         nextFloodMessage.setRing(e.getRing());
+         byte[] m = nextFloodMessage.getBytes();
+         children.forEach(child -> this.getTcpConnectionsCache().send(child, m));
+      }
+   }
+
+   /**
+    * A child's combined totals.  If this peer already gave up waiting, they go straight to the originator.
+    * @param e The Flood reply
+    */
+   private void handleFloodReply(Flood e) {
+      if (!this.floodAggregator.merge(e)) {
+         this.getTcpConnectionsCache().sendSingle(e.getOriginatorId(), e.getBytes());
+      }
+   }
+
+   /**
+    * Neighbors get the reply over their connection, anyone else (the registry) as a one off message
+    */
+   private void sendUpstream(Identity parent, Flood reply) {
+      if (this.getTcpConnectionsCache().sendersContains(parent)) {
+         this.getTcpConnectionsCache().send(parent, reply.getBytes());
+      }
+      else {
+         this.getTcpConnectionsCache().sendSingle(parent, reply.getBytes());
+      }
+   }
+
    /**
     * A handler for RandomWalk messages
     * @param e The RandomWalk message
@@ -171,27 +254,34 @@ public class Peer extends ServiceNode {
    private void handle(RandomWalk e) {
       logger.info("Received random walk message with ID: " + e.getID());
 
-      RandomWalk nextRWMesage = new RandomWalk(e.getID(), this.getIdentity(), e.getOriginatorId(), e.getTarget(), e.getCurrentHop() + 1, e.getHopLimit());
+      if (e.getMode() == RandomWalk.MODE_CONTINUE || e.getMode() == RandomWalk.MODE_STOP) {
+         this.walkerCheckIns.answer(e.getID(), e.getWalker(), e.getMode() == RandomWalk.MODE_CONTINUE);
+         return;
+      }
+
+      RandomWalk nextRWMesage = e.copy(this.getIdentity(), e.getCurrentHop() + 1, RandomWalk.MODE_WALK);
+
+      if (seenQueries.markIfAbsent(e.getID(), e.getSenderID())) {
+         //Check if queried data is here - if so, log appropriately
+         metrics.put(e.getID(), this.calculateTotalDevicesWithMetric(e.getTarget()), e.getCurrentHop());
 
-      synchronized(queryIDCache) {
-	      if (!queryIDCache.containsEntry(e.getID())) {
-	         //We've already processed this query - don't process it again (but still forward it)
-	         //Check if queried data is here - if so, log appropriately
-	         metrics.put(e.getID(), new Metric(this.calculateTotalDevicesWithMetric(e.getTarget()), e.getCurrentHop()));
-	
-	         nextRWMesage.setTotalDevicesChecked(e.getTotalDevicesChecked() + connectedIotDevices.size());
-	         nextRWMesage.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric() + this.calculateTotalDevicesWithMetric(e.getTarget()));
-	      } else {
-	         nextRWMesage.setTotalDevicesChecked(e.getTotalDevicesChecked());
-	         nextRWMesage.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric());
-	      }
-	
-	      queryIDCache.putEntry(e.getID(), e.getSenderID());
+         nextRWMesage.setTotalDevicesChecked(e.getTotalDevicesChecked() + this.inventory.getTotalDevices());
+         nextRWMesage.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric() + this.calculateTotalDevicesWithMetric(e.getTarget()));
+      } else {
+         //We've already processed this query - don't process it again (but still forward it)
+         nextRWMesage.setTotalDevicesChecked(e.getTotalDevicesChecked());
+         nextRWMesage.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric());
       }
 
       byte[] m = nextRWMesage.getBytes();
 
-      if (e.getCurrentHop() + 1 < e.getHopLimit()) {
+      if (e.getCurrentHop() + 1 < e.getHopLimit() && isCheckIn(e)) {
+         // report what the walker has found so far, and wait to hear if it should keep going
+         nextRWMesage.setMode(RandomWalk.MODE_CHECK_IN);
+         byte[] onward = e.copy(this.getIdentity(), e.getCurrentHop() + 1, RandomWalk.MODE_WALK).getBytes();
+         this.walkerCheckIns.park(e.getID(), e.getWalker(), () -> this.getTcpConnectionsCache().sendToRandom(onward, e.getSenderID()));
+         this.getTcpConnectionsCache().sendSingle(e.getOriginatorId(), nextRWMesage.getBytes());
+      } else if (e.getCurrentHop() + 1 < e.getHopLimit()) {
          //If the message hasn't yet hit its hop limit
          this.getTcpConnectionsCache().sendToRandom(m, e.getSenderID());
       } else {
@@ -200,16 +290,21 @@ public class Peer extends ServiceNode {
       }
    }
 
+   private boolean isCheckIn(RandomWalk e) {
+      return e.getCheckInHops() > 0 && (e.getCurrentHop() + 1) % e.getCheckInHops() == 0;
+   }
+
    private void handle(GossipData e) {
       boolean updated = false;
       logger.info("Received gossip data from: " + e.getSenderID());
       for (Map.Entry<String, Integer> device : e.getDevices().entrySet()) {
-         if (gossipCache.putEntryAppend(UUID.nameUUIDFromBytes(device.getKey().getBytes()), device.getKey(), device.getValue()+1, e.getSenderID()))
+         if (gossipCache.putEntryAppend(UUID.nameUUIDFromBytes(device.getKey().getBytes()), device.getKey(), device.getValue()+1, e.getSenderID())) {
             updated = true;
+            gossipScheduler.learned(device.getKey(), device.getValue()+1);
+         }
       }
-      if (updated) {
-         byte[] m = new GossipData(this.getIdentity(), gossipCache.getValueLists()).getBytes();
-         this.getTcpConnectionsCache().sendAll(m, e.getSenderID());
+      if (updated && gossipScheduler.isReactive()) {
+         gossipDataChanges(e.getSenderID());
       }
    }
    
@@ -217,39 +312,117 @@ public class Peer extends ServiceNode {
 	   boolean updated = false;
 	   logger.info("Received gossip entries from: " + e.getSenderID());
 	   for (Entry device : e.getDevices()) {
-		   updated = gossipEntries.putEntryWithProbability(UUID.nameUUIDFromBytes((device.value.getIdentityKey()+device.keyName).getBytes()), device.value, device.keyName, 0.1);
+		   updated |= gossipEntries.putEntryWithProbability(UUID.nameUUIDFromBytes((device.value.getIdentityKey()+device.keyName).getBytes()), device.value, device.keyName, 0.1);
 	   }
-	   if (updated) {
-	      byte[] m = new GossipEntries(this.getIdentity(), gossipEntries.getLocations()).getBytes();
-	      this.getTcpConnectionsCache().sendAll(m, e.getSenderID());
+	   if (updated && gossipScheduler.isReactive()) {
+	      gossipEntriesChanges(e.getSenderID());
 	   }
    }
 
+   private void handle(GossipDigest e) {
+      logger.info("Received gossip digest from: " + e.getSenderID());
+
+      if (this.gossipDigests == null) {
+         logger.warning("Ignoring a gossip digest, this peer gossips location entries in full");
+         return;
+      }
+
+      if (this.gossipDigests.receive(e.getSenderID(), e.getFilter()) && gossipScheduler.isReactive()) {
+         gossipEntriesChanges(e.getSenderID());
+      }
+   }
+
+   /**
+    * A neighbor asking for the gossip it hasn't seen
+    */
+   private void handle(GossipPull e) {
+      List<Identity> requester = Collections.singletonList(e.getSenderID());
+      gossipDataChanges(requester, Integer.MAX_VALUE);
+      gossipEntriesChanges(requester, Integer.MAX_VALUE);
+   }
+
+   /**
+    * A scheduled round pushing to the chosen neighbors, data first and entries with whatever budget is left
+    */
+   private int pushGossip(List<Identity> neighbors, int budget) {
+      int used = gossipDataChanges(neighbors, budget);
+
+      if (used >= budget) {
+         return used; // the entries wait for the next round
+      }
+      return used + gossipEntriesChanges(neighbors, budget - used);
+   }
+
+   /**
+    * A scheduled round asking the chosen neighbors for what this peer hasn't seen
+    */
+   private void pullGossip(List<Identity> neighbors) {
+      try {
+         byte[] request = new GossipPull(this.getIdentity()).getBytes();
+         neighbors.forEach(neighbor -> this.getTcpConnectionsCache().send(neighbor, request));
+      }
+      catch (IOException e) {
+         logger.log(Level.SEVERE, "Failed to pull gossip", e);
+      }
+   }
+
+   /**
+    * Send each neighbor, other than the one the change came from, the gossip data it hasn't seen
+    */
+   private void gossipDataChanges(Identity exclude) {
+      gossipDataChanges(gossipNeighbors(exclude), Integer.MAX_VALUE);
+   }
+
+   private int gossipDataChanges(List<Identity> neighbors, int budget) {
+      return this.gossipDataSent.broadcast(neighbors, gossipCache.getVersion(), since -> {
+         HashMap<String, Integer> changes = gossipCache.getValueListsSince(since);
+         return changes.isEmpty() ? null : new GossipData(this.getIdentity(), changes).getBytes();
+      }, this.getTcpConnectionsCache()::send, budget);
+   }
+
+   /**
+    * Send each neighbor, other than the one the change came from, the gossip entries it hasn't seen
+    */
+   private void gossipEntriesChanges(Identity exclude) {
+      gossipEntriesChanges(gossipNeighbors(exclude), Integer.MAX_VALUE);
+   }
+
+   private int gossipEntriesChanges(List<Identity> neighbors, int budget) {
+      if (this.gossipDigests != null) {
+         return this.gossipDigests.broadcast(neighbors, (neighbor, filter) -> new GossipDigest(this.getIdentity(), filter).getBytes(), this.getTcpConnectionsCache()::send, budget);
+      }
+
+      return this.gossipEntriesSent.broadcast(neighbors, gossipEntries.getVersion(), since -> {
+         Entry[] changes = gossipEntries.getLocationsSince(since);
+         return changes.length == 0 ? null : new GossipEntries(this.getIdentity(), changes).getBytes();
+      }, this.getTcpConnectionsCache()::send, budget);
+   }
+
+   private List<Identity> gossipNeighbors(Identity exclude) {
+      List<Identity> neighbors = new ArrayList<>(this.getTcpConnectionsCache().listPeers());
+      neighbors.remove(exclude);
+      return neighbors;
+   }
+
    private void handle(GossipQuery e) {
       GossipQuery nextGossipMessage = new GossipQuery(e.getID(), this.getIdentity(), e.getOriginatorId(), e.getTarget(), e.getCurrentHop() + 1, e.getHopLimit(), e.getGossipType());
       nextGossipMessage.setTotalDevicesChecked(e.getTotalDevicesChecked());
       nextGossipMessage.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric());
       byte[] mr = nextGossipMessage.getBytes();
 
-      synchronized(queryIDCache) {
-	      if (queryIDCache.containsEntry(e.getID())) {
-	         //We've already processed this query - ignore it
-	         queryIDCache.putEntry(e.getID(), e.getSenderID());
-	
-	         this.getTcpConnectionsCache().sendSingle(e.getOriginatorId(), mr);
-	
-	         return;
-	      }
-	
-	      queryIDCache.putEntry(e.getID(), e.getSenderID());
+      if (!seenQueries.markIfAbsent(e.getID(), e.getSenderID())) {
+         //We've already processed this query - ignore it
+         this.getTcpConnectionsCache().sendSingle(e.getOriginatorId(), mr);
+
+         return;
       }
       logger.info("Received gossip query with ID: " + e.getID());
       //Check if queried data is here - if so, log appropriately
-      metrics.put(e.getID(), new Metric(this.calculateTotalDevicesWithMetric(e.getTarget()), e.getCurrentHop()));
+      metrics.put(e.getID(), this.calculateTotalDevicesWithMetric(e.getTarget()), e.getCurrentHop());
 
       // Only need to send a message that includes the current stats to one of my "gossip neighbors"
       GossipQuery nextGossipMessage2 = new GossipQuery(e.getID(), this.getIdentity(), e.getOriginatorId(), e.getTarget(), e.getCurrentHop() + 1, e.getHopLimit(), e.getGossipType());
-      nextGossipMessage2.setTotalDevicesChecked(e.getTotalDevicesChecked() + connectedIotDevices.size());
+      nextGossipMessage2.setTotalDevicesChecked(e.getTotalDevicesChecked() + this.inventory.getTotalDevices());
       nextGossipMessage2.setTotalDevicesWithMetric(e.getTotalDevicesWithMetric() + this.calculateTotalDevicesWithMetric(e.getTarget()));
       byte[] m2 = nextGossipMessage2.getBytes();
       
@@ -275,9 +448,16 @@ public class Peer extends ServiceNode {
 	                  updated = true;
 	            }
 	         }
+         } else if(e.getGossipType() == 1 && this.gossipDigests != null) {
+            for (Identity neighbor : this.gossipDigests.route(e.getTarget(), e.getHopLimit() - e.getCurrentHop() - 1, e.getSenderID())) {
+               this.getTcpConnectionsCache().sendSingle(neighbor, index == 0 ? m2 : m);
+               index++;
+               updated = true;
+            }
          } else if(e.getGossipType() == 1) {
-        	 for(cs555.chiba.util.LRUCache.Entry entry : gossipEntries.getHashmap().values()) {
-        		 if(entry.keyName.contentEquals(e.getTarget()) && entry.value != this.getIdentity()) {
+        	 for(cs555.chiba.util.LRUCache.Entry entry : gossipEntries.getEntriesNamed(e.getTarget())) {
+        		 // a renamed entry can still be in the view for a moment
+        		 if(e.getTarget().equals(entry.keyName) && entry.value != this.getIdentity()) {
                     if(index == 0) {
                        this.getTcpConnectionsCache().sendSingle(entry.value, m2);
                     } else {
@@ -297,18 +477,21 @@ public class Peer extends ServiceNode {
 
    private void handle(InitiateConnectionsMessage message) {
 	   IotTransformer trans = new IotTransformer(message.getDeviceString());
-	   this.connectedIotDevices = trans.getConnectedIotDevices();
-	   for(String d : getAllMetricNames()) {
+	   setInventory(trans.getInventory());
+	   for(String d : this.inventory.getMetricNames()) {
 	    	  gossipCache.putEntryAppend(UUID.nameUUIDFromBytes(d.getBytes()), d, 0, this.getIdentity());
 	    	  gossipEntries.putEntryWithProbability(UUID.nameUUIDFromBytes((this.getIdentity().getIdentityKey()+d).getBytes()), this.getIdentity(), d, 0.01);
 	  }
+      if (this.gossipDigests != null) {
+         this.gossipDigests.setLocal(this.inventory.getMetricNames());
+      }
       message.getNeighbors().forEach(identity -> {
          this.getTcpConnectionsCache().addConnection(identity, this.getEventFactory());
       });
    }
 
-   public List<IotDevice> getConnectedIotDevices() {
-      return this.connectedIotDevices;
+   public DeviceInventory getInventory() {
+      return this.inventory;
    }
    
    public LRUCache getGossipData() {
@@ -319,20 +502,57 @@ public class Peer extends ServiceNode {
 	   return this.gossipEntries;
    }
    
-   public HashMap<UUID,Metric> getMetrics(){
+   public SeenFilter getSeenQueries() {
+      return seenQueries;
+   }
+
+   FloodAggregator getFloodAggregator() {
+      return this.floodAggregator;
+   }
+
+   WalkerCheckIns getWalkerCheckIns() {
+      return this.walkerCheckIns;
+   }
+
+   String getGossipMetrics() {
+      String entries = this.gossipDigests == null ? this.gossipEntriesSent.getMetrics() : this.gossipDigests.getMetrics();
+      return this.gossipDataSent.getMetrics() + "\n" + entries + "\n" + this.gossipScheduler.getMetrics();
+   }
+
+   public QueryMetricStore getMetrics(){
 	   return metrics;
    }
 
+   /**
+    * A dropped neighbor takes its gossip state with it, otherwise its digest would keep type 1 queries going its way
+    */
+   @Override public void removeConnection(Identity identity) {
+      super.removeConnection(identity);
+      this.gossipDataSent.forget(identity);
+      this.gossipEntriesSent.forget(identity);
+      if (this.gossipDigests != null) {
+         this.gossipDigests.remove(identity);
+      }
+   }
+
    private void handle(IntroductionMessage message) {
       Socket generatedSocket = message.getSocket();
       Identity wrongIdentity = Identity.builder().withSocketAddress(generatedSocket.getRemoteSocketAddress()).build();
 
       this.getTcpConnectionsCache().correctIdentity(wrongIdentity, message.getIdentity());
       
-      byte[] m = new GossipData(this.getIdentity(), gossipCache.getValueLists()).getBytes();
-      this.getTcpConnectionsCache().sendAll(m);
-      m = new GossipEntries(this.getIdentity(), gossipEntries.getLocations()).getBytes();
-      this.getTcpConnectionsCache().sendAll(m);
+      // the new neighbor gets everything, the others only what changed since they were last sent anything
+      this.gossipDataSent.forget(message.getIdentity());
+      this.gossipEntriesSent.forget(message.getIdentity());
+      if (this.gossipDigests != null) {
+         this.gossipDigests.forget(message.getIdentity());
+      }
+
+      // scheduled gossip catches the new neighbor up in its own rounds
+      if (this.gossipScheduler.isReactive()) {
+         gossipDataChanges(null);
+         gossipEntriesChanges(null);
+      }
    }
 
    private void handle(ListPeersRequestMessage message) {
@@ -361,6 +581,12 @@ public class Peer extends ServiceNode {
       else if (e instanceof GossipEntries) {
           handle((GossipEntries) e);
        }
+      else if (e instanceof GossipDigest) {
+         handle((GossipDigest) e);
+      }
+      else if (e instanceof GossipPull) {
+         handle((GossipPull) e);
+      }
       else if (e instanceof GossipQuery) {
          handle((GossipQuery) e);
       }
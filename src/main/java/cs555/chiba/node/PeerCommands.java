@@ -1,5 +1,6 @@
 package cs555.chiba.node;
 
+import cs555.chiba.iotDevices.DeviceInventory;
 import cs555.chiba.service.Commands;
 
 import java.util.logging.Logger;
@@ -25,6 +26,26 @@ class PeerCommands {
          return null;
       });
 
+      builder.registerCommand("seenfilter", args -> { // duplicate query filter size and false positive rate
+         logger.info(peer.getSeenQueries().describe());
+         return null;
+      });
+
+      builder.registerCommand("convergecast", args -> { // flood replies waiting to be combined
+         logger.info(peer.getFloodAggregator().getMetrics());
+         return null;
+      });
+
+      builder.registerCommand("gossipstats", args -> { // gossip messages and bytes sent
+         logger.info(peer.getGossipMetrics());
+         return null;
+      });
+
+      builder.registerCommand("walkers", args -> { // random walkers waiting on the originator
+         logger.info(peer.getWalkerCheckIns().getMetrics());
+         return null;
+      });
+
       return builder.build();
    }
 
@@ -44,11 +65,7 @@ class PeerCommands {
     * Who are our neighbors
     */
    private static String listDevices(Peer peer) {
-      StringBuffer out = new StringBuffer("IoT Devices: \n");
-      peer.getConnectedIotDevices().forEach(device -> {
-         out.append(device).append("\n");
-      });
-
-      return out.toString();
+      DeviceInventory inventory = peer.getInventory();
+      return "IoT Devices: " + inventory.getTotalDevices() + "\n" + inventory;
    }
 }
@@ -0,0 +1,123 @@
+package cs555.chiba.node;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Random walkers that have checked in with their originator wait here for the answer.  Continue sends the walker on its
+ * way, stop drops it.  If the originator doesn't answer within -Dcsu.walk.checkin.timeout.ms the walker carries on, so a
+ * lost answer costs a little time rather than the walk.
+ */
+class WalkerCheckIns implements AutoCloseable {
+
+   static final String TIMEOUT_PROPERTY = "csu.walk.checkin.timeout.ms";
+
+   private final ConcurrentHashMap<String, Parked> parked = new ConcurrentHashMap<>();
+   private final ScheduledThreadPoolExecutor timer;
+   private final long timeoutMillis;
+
+   private final LongAdder continued = new LongAdder();
+   private final LongAdder stopped = new LongAdder();
+   private final LongAdder timedOut = new LongAdder();
+
+   WalkerCheckIns(long timeoutMillis) {
+      this.timeoutMillis = timeoutMillis;
+      this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+         Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+         thread.setName("WalkerCheckInTimer");
+         thread.setDaemon(true);
+         return thread;
+      });
+      this.timer.setRemoveOnCancelPolicy(true);
+   }
+
+   static WalkerCheckIns fromProperties() {
+      return new WalkerCheckIns(Long.getLong(TIMEOUT_PROPERTY, 1000L));
+   }
+
+   /**
+    * Hold a walker until the originator answers
+    * @param onward Sends the walker on, run for continue or when the wait times out
+    */
+   void park(UUID id, int walker, Runnable onward) {
+      String key = key(id, walker);
+      Parked waiting = new Parked(onward);
+      Parked old = this.parked.put(key, waiting);
+
+      // the same walker can't be waiting twice, but don't lose it if it somehow is
+      if (old != null) {
+         release(key, old, true);
+      }
+
+      waiting.timeout = this.timer.schedule(() -> {
+         if (release(key, waiting, true)) {
+            this.timedOut.increment();
+         }
+      }, this.timeoutMillis, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * The originator's answer
+    * @return false if the walker wasn't waiting any more
+    */
+   boolean answer(UUID id, int walker, boolean carryOn) {
+      String key = key(id, walker);
+      Parked waiting = this.parked.get(key);
+
+      if (waiting == null || !release(key, waiting, carryOn)) {
+         return false;
+      }
+
+      (carryOn ? this.continued : this.stopped).increment();
+      return true;
+   }
+
+   private boolean release(String key, Parked waiting, boolean carryOn) {
+      if (!this.parked.remove(key, waiting)) {
+         return false;
+      }
+
+      if (waiting.timeout != null) {
+         waiting.timeout.cancel(false);
+      }
+
+      if (carryOn) {
+         waiting.onward.run();
+      }
+      return true;
+   }
+
+   private static String key(UUID id, int walker) {
+      return id + "/" + walker;
+   }
+
+   int size() {
+      return this.parked.size();
+   }
+
+   String getMetrics() {
+      StringBuilder out = new StringBuilder("Walker Check Ins: \n");
+      out.append("waiting: ").append(size()).append("  timeout ms: ").append(this.timeoutMillis).append("\n");
+      out.append("continued: ").append(this.continued.sum()).append("  stopped: ").append(this.stopped.sum()).append("  timed out: ").append(this.timedOut.sum());
+      return out.toString();
+   }
+
+   @Override public void close() {
+      this.timer.shutdownNow();
+   }
+
+   private static class Parked {
+
+      private final Runnable onward;
+      private volatile ScheduledFuture<?> timeout;
+
+      Parked(Runnable onward) {
+         this.onward = onward;
+      }
+   }
+}
@@ -0,0 +1,106 @@
+package cs555.chiba.overlay.network;
+
+import cs555.chiba.util.Utilities;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Builds a random overlay where every vertex has between the min and max connections, in one pass.
+ *
+ * The vertices are first joined in a ring so the overlay can't be partitioned.  Every vertex then draws how many
+ * connections it wants, evenly between the min and max, so the degrees keep the spread the old random fill gave.  One
+ * vertex is moved up or down a connection if the stubs don't pair up evenly.  Each vertex is given stubs for the
+ * connections it still needs, the stubs are shuffled, and neighbors in the shuffle are paired up, which is the
+ * configuration model.  A pair that would connect a vertex to itself or repeat an edge is set aside.  The few
+ * set aside are then placed one at a time: with another set aside stub, with any vertex that has room below the max, or
+ * by rewiring a random non-ring edge onto the vertex.  Nothing is thrown away and rebuilt.
+ *
+ * Everything is held in primitive arrays until the finished graph is laid out as an OverlayGraph.
+ */
+public class ConfigurationModelGenerator implements OverlayGenerator {
+
+   private static final Logger logger = Logger.getLogger(ConfigurationModelGenerator.class.getName());
+
+   private final int minConnections;
+   private final int maxConnections;
+
+   public ConfigurationModelGenerator(int minConnections, int maxConnections) {
+      checkConnections(minConnections, maxConnections);
+      this.minConnections = minConnections;
+      this.maxConnections = maxConnections;
+   }
+
+   /**
+    * The checks every generator makes of its min and max
+    */
+   static void checkConnections(int minConnections, int maxConnections) {
+      Utilities.checkArgument(minConnections > 0, "The number of overlay connections [" + minConnections + "] must be greater than 0.");
+      Utilities.checkArgument(maxConnections >= minConnections, "The minimum number of overlay connections [" + minConnections + "] cannot be greater than the max [" + maxConnections + "]");
+   }
+
+   /**
+    * The checks every generator makes of the number of vertices
+    */
+   static void checkVertices(int vertices, int maxConnections) {
+      Utilities.checkArgument(vertices > maxConnections, "The number of overlay connections [" + maxConnections + "] must be less than the number of vertices [" + vertices + "].");
+      Utilities.checkArgument(vertices > 2 || maxConnections == 1, "The number of connections can only be 1 if there are only two vertices.");
+   }
+
+   @Override public OverlayGraph generate(int vertices, long seed) {
+      return generate(vertices, new Random(seed));
+   }
+
+   public OverlayGraph generate(int vertices, Random random) {
+      checkVertices(vertices, this.maxConnections);
+      long started = System.nanoTime();
+
+      OverlayBuilder graph = new OverlayBuilder(vertices, this.maxConnections, random);
+      graph.ring();
+      int[] target = new int[vertices];
+
+      int stubTotal = 0;
+      for (int v = 0; v < vertices; v++) {
+         int wanted = this.minConnections + random.nextInt(this.maxConnections - this.minConnections + 1);
+         target[v] = Math.max(wanted, graph.degree(v));
+         stubTotal += target[v] - graph.degree(v);
+      }
+
+      if (stubTotal % 2 == 1) {
+         evenOut(graph, target, random);
+      }
+
+      int[] stubs = graph.stubsFor(target);
+      OverlayBuilder.shuffle(stubs, stubs.length, random);
+
+      int placed = graph.pairStubs(stubs, stubs.length, target);
+
+      OverlayGraph overlay = graph.build();
+      logger.info("Generated " + overlay + " in " + (System.nanoTime() - started) / 1000000 + " ms, " + placed + " of " + stubs.length + " stubs placed after the shuffle");
+      return overlay;
+   }
+
+   /**
+    * Move one vertex a connection up, or failing that down, so the stubs pair up.  If no vertex can move the count
+    * stays odd and the last stub is placed on its own.
+    */
+   private void evenOut(OverlayBuilder graph, int[] target, Random random) {
+      int start = random.nextInt(target.length);
+
+      for (int i = 0; i < target.length; i++) {
+         int v = (start + i) % target.length;
+         if (target[v] < this.maxConnections) {
+            target[v]++;
+            return;
+         }
+      }
+
+      for (int i = 0; i < target.length; i++) {
+         int v = (start + i) % target.length;
+         if (target[v] > Math.max(this.minConnections, graph.degree(v))) {
+            target[v]--;
+            return;
+         }
+      }
+   }
+}
@@ -0,0 +1,111 @@
+package cs555.chiba.overlay.network;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * A geographic overlay, like devices spread over city blocks.  The vertices are laid out on a square grid, row by row
+ * with every other row reversed, so each vertex in the ring is next to the one before it on the grid.  Each vertex then
+ * connects to the nearest vertices with room, looking a block further out each time, until it has the min connections.
+ *
+ * An edge costs its length on the grid, from 1 next door up to 10 across town.  Only the edge that closes the ring and the
+ * few random connections needed to finish a crowded neighborhood are long.
+ */
+public class GridGenerator implements OverlayGenerator {
+
+   private static final Logger logger = Logger.getLogger(GridGenerator.class.getName());
+
+   private static final int MAX_COST = 10;
+
+   private final int minConnections;
+   private final int maxConnections;
+
+   public GridGenerator(int minConnections, int maxConnections) {
+      ConfigurationModelGenerator.checkConnections(minConnections, maxConnections);
+      this.minConnections = minConnections;
+      this.maxConnections = maxConnections;
+   }
+
+   @Override public OverlayGraph generate(int vertices, long seed) {
+      ConfigurationModelGenerator.checkVertices(vertices, this.maxConnections);
+      long started = System.nanoTime();
+      Random random = new Random(seed);
+      int width = (int) Math.ceil(Math.sqrt(vertices));
+      int rows = (vertices + width - 1) / width;
+
+      OverlayBuilder graph = new OverlayBuilder(vertices, this.maxConnections, random, (a, b) -> cost(a, b, width));
+      graph.ring();
+
+      // far enough out to find the min connections even when the nearest blocks are full
+      int reach = (int) Math.ceil(Math.sqrt(this.maxConnections)) + 2;
+      int[] order = new int[vertices];
+      for (int v = 0; v < vertices; v++) {
+         order[v] = v;
+      }
+      OverlayBuilder.shuffle(order, vertices, random);
+
+      int[] nearby = new int[8 * reach];
+      for (int v : order) {
+         int row = row(v, width);
+         int column = column(v, width);
+
+         for (int distance = 1; distance <= reach && graph.degree(v) < this.minConnections; distance++) {
+            int found = 0;
+
+            // the square of blocks at this distance
+            for (int r = row - distance; r <= row + distance; r++) {
+               for (int c = column - distance; c <= column + distance; c++) {
+                  boolean edge = Math.abs(r - row) == distance || Math.abs(c - column) == distance;
+                  if (edge && r >= 0 && r < rows && c >= 0 && c < width) {
+                     int w = vertexAt(r, c, width);
+                     if (w < vertices) {
+                        nearby[found++] = w;
+                     }
+                  }
+               }
+            }
+
+            OverlayBuilder.shuffle(nearby, found, random);
+            for (int i = 0; i < found && graph.degree(v) < this.minConnections; i++) {
+               graph.tryConnect(v, nearby[i]);
+            }
+         }
+      }
+
+      int[] target = new int[vertices];
+      for (int v = 0; v < vertices; v++) {
+         target[v] = Math.max(this.minConnections, graph.degree(v));
+      }
+
+      int[] stubs = graph.stubsFor(target);
+      OverlayBuilder.shuffle(stubs, stubs.length, random);
+      graph.pairStubs(stubs, stubs.length, target);
+
+      OverlayGraph overlay = graph.build();
+      logger.info("Generated grid " + overlay + " " + width + " wide in " + (System.nanoTime() - started) / 1000000 + " ms, " + stubs.length + " random stubs");
+      return overlay;
+   }
+
+   static int row(int vertex, int width) {
+      return vertex / width;
+   }
+
+   static int column(int vertex, int width) {
+      int row = vertex / width;
+      return row % 2 == 0 ? vertex % width : width - 1 - vertex % width;
+   }
+
+   private static int vertexAt(int row, int column, int width) {
+      return row * width + (row % 2 == 0 ? column : width - 1 - column);
+   }
+
+   /**
+    * The length of the edge on the grid, rounded and kept between 1 and 10
+    */
+   static byte cost(int a, int b, int width) {
+      double rows = row(a, width) - row(b, width);
+      double columns = column(a, width) - column(b, width);
+      long length = Math.round(Math.sqrt(rows * rows + columns * columns));
+      return (byte) Math.max(1, Math.min(MAX_COST, length));
+   }
+}
@@ -1,18 +1,16 @@
 package cs555.chiba.overlay.network;
 
-import cs555.chiba.iotDevices.IotDevice;
 import cs555.chiba.iotDevices.IotFactory;
-import cs555.chiba.iotDevices.IotTransformer;
 import cs555.chiba.service.Identity;
 import cs555.chiba.util.Utilities;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -20,34 +18,41 @@ import java.util.stream.Collectors;
 /**
  * @author mmuller
  *
- * The Network Map builds a representation of the network for the Registry and the MessagingNodes.  When building for the Registry, it
- * creates a chain of registered nodes to prevent partitions.  It then randomly connects the other nodes together until the correct number
- * of connections is on all nodes.  Note: This approach can fail.  It's possible to create a graph where all but one node has the right number
- * of connections.  When this happens, it discards the created map and tries again.  The graphs are so small it doesn't take very long to 
- * randomly discover a working graph.
+ * The Network Map builds a representation of the network for the Registry and the MessagingNodes.  When building for the Registry, the
+ * ConfigurationModelGenerator lays out the connections, a ring of the registered nodes to prevent partitions plus random connections up
+ * to the right number, in one pass over primitive arrays.  Very large overlays are split over the cores by the
+ * PartitionedOverlayGenerator.  Other shapes of overlay, small world, scale free and grid, can be picked with a Topology.
+ * The vertices are then made from the finished graph.
  *
  */
 public class NetworkMap {
 
    private static final Logger logger = Logger.getLogger(NetworkMap.class.getName());
 
+   private static final long DEVICE_SEED = 0x2545F4914F6CDD1DL; // keeps the device numbers apart from the overlay's
+
    private List<Vertex> vertices = new ArrayList<Vertex>(); // The graph vertex.  Order matters because we only want to connect two vertices once.
+   private Map<Identity, Vertex> byName = new HashMap<>(); // the vertices by the node they represent
+   private Map<Integer, Vertex> byId = new HashMap<>(); // the vertices by id
    private int minConnections; // min number of edges a single vertex needs to have
    private int maxConnections; // max number of edges a single vertex needs to have
 
    public NetworkMap(List<Identity> registeredNodes, int minConnections, int maxConnections) {
+      this(registeredNodes, minConnections, maxConnections, Topology.fromProperties());
+   }
+
+   public NetworkMap(List<Identity> registeredNodes, int minConnections, int maxConnections, Topology topology) {
       this.minConnections = minConnections;
       this.maxConnections = maxConnections;
       verifyNumConnections(registeredNodes); // insure the graph is possible
-      fillConnections(registeredNodes); // randomly create graphs until we get a good one
+      fillConnections(registeredNodes, topology); // randomly create the graph
       verify(); // make sure we did it right
    }
 
    public NetworkMap(int minConnections, int maxConnections, List<Edge> edges) {
       this.minConnections = minConnections;
       this.maxConnections = maxConnections;
-      addVertices(edges);
-      edges.forEach(this::addEdge);
+      loadEdges(edges);
       verify(); // make sure we did it right
    }
 
@@ -56,10 +61,26 @@ public class NetworkMap {
       this.maxConnections = maxConnections;
       List<Identity> registeredNodes = generateNodes(numOfVertices);
       verifyNumConnections(registeredNodes); // insure the graph is possible
-      fillConnections(registeredNodes); // randomly create graphs until we get a good one
+      fillConnections(registeredNodes, Topology.RANDOM); // randomly create the graph
       verify(); // make sure we did it right
    }
 
+   private NetworkMap(int minConnections, int maxConnections) {
+      this.minConnections = minConnections;
+      this.maxConnections = maxConnections;
+   }
+
+   /**
+    * A map of vertices that are already connected, in id order
+    */
+   static NetworkMap fromVertices(int minConnections, int maxConnections, List<Vertex> vertices) {
+      NetworkMap net = new NetworkMap(minConnections, maxConnections);
+      net.vertices = new ArrayList<>(vertices);
+      net.index();
+      net.verify(); // make sure we did it right
+      return net;
+   }
+
    private List<Identity> generateNodes(int numOfVertices) {
       List<Identity> rtn = new ArrayList<>();
       for (int i = 1025; i < 1025 + numOfVertices; i++) {
@@ -102,30 +123,51 @@ public class NetworkMap {
    }
 
    /**
-    * Rebuild a map from a list of edges
+    * Rebuild a map from a list of edges.  Each node is listed many times, possibly as different Vertex objects, so the
+    * first one seen for a node becomes its vertex and the edges are connected through the index.
     */
-   private void addVertices(List<Edge> edges) {
-      // Add all the vertices in the list.  Since everything will be listed multiple times, we'll put it in a set for uniqueness
-      Set<Vertex> allVertices = new HashSet<>();
+   private void loadEdges(List<Edge> edges) {
+      Map<Identity, Vertex> found = new HashMap<>();
       for (Edge edge : edges) {
-         allVertices.add(edge.getFirst());
-         allVertices.add(edge.getSecond());
+         found.putIfAbsent(edge.getFirst().getName(), edge.getFirst());
+         found.putIfAbsent(edge.getSecond().getName(), edge.getSecond());
       }
-      this.vertices = new ArrayList<>(allVertices);
+
+      this.vertices = new ArrayList<>(found.values());
       Collections.sort(this.vertices, Comparator.comparing(Vertex::getId));
+      index();
+
+      for (Edge edge : edges) {
+         Vertex first = this.byName.get(edge.getFirst().getName());
+         Vertex second = this.byName.get(edge.getSecond().getName());
+         first.addEdge(second, edge.getCost());
+      }
    }
 
    /**
-    * Build the underlying connections from the given edge
+    * Index the vertices by name and id, called whenever the vertex list is replaced
     */
-   private void addEdge(Edge edge) {
-      Vertex first = findVertex(edge.getFirst().getName());
-      Vertex second = findVertex(edge.getSecond().getName());
-      first.addEdge(second, edge.getCost());
+   private void index() {
+      this.byName = new HashMap<>(this.vertices.size() * 4 / 3 + 1);
+      this.byId = new HashMap<>(this.vertices.size() * 4 / 3 + 1);
+      for (Vertex vertex : this.vertices) {
+         this.byName.put(vertex.getName(), vertex);
+         this.byId.put(vertex.getId(), vertex);
+      }
    }
 
+   /**
+    * @return The vertex for a node, or null if it isn't in the map
+    */
    public Vertex findVertex(Identity name) {
-      return this.vertices.stream().filter(v -> v.getName().equals(name)).findFirst().get();
+      return this.byName.get(name);
+   }
+
+   /**
+    * @return The vertex with an id, or null if it isn't in the map
+    */
+   public Vertex findVertex(int id) {
+      return this.byId.get(id);
    }
 
    // defensive programming for the win! Just make sure our network is setup correctly
@@ -161,103 +203,42 @@ public class NetworkMap {
    }
 
    /**
-    * Randomly complete the map.  If verify says it's a broken map, throw it away and try again.
-    */
-   private void fillConnections(List<Identity> registeredNodes) {
-      boolean success = false;
-      while (!success) {
-         try {
-            initializeLoop(registeredNodes); // connect all the vertices to ensure no partitions.
-            attemptToFillConnections(); // attempt to create the graph randomly
-            verify(); // check for correctness
-            success = true;
-         }
-         catch (IllegalStateException e) {
-            this.vertices = new ArrayList<>(); // we failed, clear and try again
-         }
-      }
-   }
-
-   /**
-    * For each vertex, randomly connect to another vertex.
-    */
-   private void attemptToFillConnections() {
-      for (Vertex vertex : this.vertices) {
-         randomlyConnect(vertex);
-      }
-   }
-
-   /**
-    * Pick random vertices and try to connect to them.  Don't connect to myself, something I'm already
-    * connected to, and something that already has the max connections
+    * Randomly build the connections in the shape of the topology, then make a vertex for each node and connect them the same way
     */
-   private void randomlyConnect(Vertex vertex) {
-      // Attempt to randomly connect the graph.  This is not always possible, so we'll try a few times.
-      for (int count = 0; !vertexCompleted(vertex, this.minConnections, count); count++) {
-         Vertex edge = getRandomVertex(vertex.getName());
-
-         if (!vertex.equals(edge) && edge.getEdges().size() < this.maxConnections && !vertex.isConnected(edge)) {
-            vertex.addEdge(edge, generateCost());
-         }
-      }
-
+   private void fillConnections(List<Identity> registeredNodes, Topology topology) {
+      long seed = PartitionedOverlayGenerator.seedFromProperties();
+      OverlayGraph graph = topology.generator(this.minConnections, this.maxConnections).generate(registeredNodes.size(), seed);
+      addGraph(graph, registeredNodes, new Random(seed ^ DEVICE_SEED));
    }
 
    /**
-    * The Vertex is complete when it has the right number of connections.  However, this can go forever, so
-    * we also keep a count.  If it has randomly try to connect to more than the max count then we just
-    * move on.  Maybe some other node will connect to it to complete the vertices.  If not, then this
-    * map will be thrown away.
+    * Make the vertices for a generated graph.  Vertex i is the i'th node.
+    * @param random Picks the devices, seeded from the overlay so the same seed gives the same devices
     */
-   private boolean vertexCompleted(Vertex vertex, int numConnections, int count) {
-      if (vertex.getEdges().size() >= numConnections) {
-         return true;
-      }
-
-      if (count >= numConnections * 10) {
-         return true;
+   private void addGraph(OverlayGraph graph, List<Identity> nodes, Random random) {
+      this.vertices = new ArrayList<>(nodes.size());
+      for (int i = 0; i < nodes.size(); i++) {
+         this.vertices.add(new Vertex(i, nodes.get(i), generateIotDevices(random)));
       }
+      index();
 
-      return false;
-   }
-
-   /**
-    * We're not allowed to have partitions.  To make this simple, we first walk through all the vertices
-    * and connect them in a loop.  You can now reach any node from any other.  The rest of the connections
-    * will be filled randomly.
-    */
-   private void initializeLoop(List<Identity> nodes) {
-      Vertex prev = null;
-      for (int i = 0; i < nodes.size(); i++) {
-         Vertex vertex = new Vertex(i, nodes.get(i), generateIotDevices());
-         this.vertices.add(vertex);
+      for (int v = 0; v < graph.size(); v++) {
+         for (int i = 0; i < graph.degree(v); i++) {
+            int other = graph.neighbor(v, i);
 
-         if (prev != null) {
-            vertex.addEdge(prev, generateCost());
+            // each edge is listed from both ends, add it once
+            if (other > v) {
+               this.vertices.get(v).addEdge(this.vertices.get(other), graph.cost(v, i));
+            }
          }
-         prev = vertex;
-      }
-
-      // if there are only 2 nodes, don't double connect
-      if (!prev.isConnected(this.vertices.get(0))) {
-         prev.addEdge(this.vertices.get(0), generateCost()); // complete the circle by linking the last to the first.
       }
    }
 
-   /**
-    * Random cost between 1 and 10.
-    */
-   private int generateCost() {
-      return ThreadLocalRandom.current().nextInt(1, 11);
-   }
-
    /**
     * Random iot device string
     */
-   private String generateIotDevices() {
-      List<IotDevice> connectedIotDevices = IotFactory.generateRandomDevices(3, 300);
-      IotTransformer trans = new IotTransformer(connectedIotDevices);
-      return trans.getDeviceString();
+   private String generateIotDevices(Random random) {
+      return IotFactory.generateRandomInventory(3, 300, random).getDeviceString();
    }
 
    @Override public int hashCode() {
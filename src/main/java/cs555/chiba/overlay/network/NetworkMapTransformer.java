@@ -3,16 +3,24 @@ package cs555.chiba.overlay.network;
 import cs555.chiba.service.Identity;
 import cs555.chiba.util.Utilities;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Moves overlays in and out of files.  Files ending in .ovl are written in the binary OverlayFile format, anything else as
+ * a CSV of edges.  Imports tell the two apart by the magic number at the start of the binary format.  Both are streamed a
+ * line or a section at a time rather than held in memory as one string.
+ */
 public class NetworkMapTransformer {
 
    private static final Logger logger = Logger.getLogger(NetworkMapTransformer.class.getName());
@@ -23,9 +31,13 @@ public class NetworkMapTransformer {
       this.netMap = netMap;
    }
 
-   public NetworkMapTransformer(File csvData) throws IOException {
-      String data = new String(Utilities.readFile(csvData));
-      parseData(data);
+   public NetworkMapTransformer(File data) throws IOException {
+      if (OverlayFile.isOverlayFile(data)) {
+         this.netMap = OverlayFile.read(data);
+      }
+      else {
+         parseCsv(data);
+      }
    }
 
    public NetworkMap applyRegisteredNodes(List<Identity> registeredNodes) {
@@ -67,15 +79,42 @@ public class NetworkMapTransformer {
       return out + this.netMap.getFullEdgeList().stream().map(Edge::toCsv).collect(Collectors.joining("\n"));
    }
 
+   /**
+    * Write the overlay to a file, binary if it ends in .ovl, otherwise CSV
+    */
+   public File exportTo(String path) throws IOException {
+      File file = new File(path);
+
+      if (path.endsWith(OverlayFile.EXTENSION)) {
+         OverlayFile.write(this.netMap, file);
+         return file;
+      }
+
+      try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+         out.write(this.netMap.getMinConnections() + "," + this.netMap.getMaxConnections());
+         for (Edge edge : this.netMap.getFullEdgeList()) {
+            out.write("\n");
+            out.write(edge.toCsv());
+         }
+      }
+      return file;
+   }
+
    public String exportGephi() {
       return this.netMap.getFullEdgeList().stream().map(Edge::toGephiCsv).collect(Collectors.joining("\n"));
    }
 
-   private void parseData(String data) {
-      String[] rows = data.split("\n");
-      String[] connections = rows[0].split(",");
-      List<Edge> edges = Stream.of(rows).skip(1).map(this::createEdge).collect(Collectors.toList());
-      this.netMap = new NetworkMap(Utilities.quietlyParseInt(connections[0], 1), Utilities.quietlyParseInt(connections[1], 1), edges);
+   private void parseCsv(File file) throws IOException {
+      try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+         String header = in.readLine();
+         if (header == null) {
+            throw new IOException("Overlay file [" + file.getAbsolutePath() + "] is empty");
+         }
+
+         String[] connections = header.split(",");
+         List<Edge> edges = in.lines().filter(row -> !Utilities.isBlank(row)).map(this::createEdge).collect(Collectors.toList());
+         this.netMap = new NetworkMap(Utilities.quietlyParseInt(connections[0], 1), Utilities.quietlyParseInt(connections[1], 1), edges);
+      }
    }
 
    private Edge createEdge(String row) {
@@ -0,0 +1,361 @@
+package cs555.chiba.overlay.network;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * An overlay while it's being generated: the edges in a list, a set to find them, and each vertex's degree.  Nothing is
+ * allowed past the max connections.  Shared by the generators so they lay out and repair graphs the same way.
+ *
+ * Edges cost between 1 and 10 at random unless the generator says otherwise.
+ */
+class OverlayBuilder {
+
+   private static final int REWIRE_ATTEMPTS = 64; // random edges tried before a stub is declared impossible to place
+
+   private final int vertices;
+   private final int maxConnections;
+   private final Random random;
+   private final EdgeCost edgeCost;
+   private final int[] degree;
+   private final EdgeSet set;
+   private long[] edges;
+   private byte[] costs;
+   private int count = 0;
+   private int ringEdges = 0;
+
+   /**
+    * The cost of a new edge
+    */
+   interface EdgeCost {
+      byte cost(int a, int b);
+   }
+
+   OverlayBuilder(int vertices, int maxConnections, Random random) {
+      this(vertices, maxConnections, random, null);
+   }
+
+   OverlayBuilder(int vertices, int maxConnections, Random random, EdgeCost edgeCost) {
+      this.vertices = vertices;
+      this.maxConnections = maxConnections;
+      this.random = random;
+      this.edgeCost = edgeCost != null ? edgeCost : (a, b) -> (byte) (1 + random.nextInt(10)); // between 1 and 10
+      this.degree = new int[vertices];
+      int capacity = (int) Math.min(Integer.MAX_VALUE - 8, (long) vertices * maxConnections / 2 + vertices);
+      this.edges = new long[capacity];
+      this.costs = new byte[capacity];
+      this.set = new EdgeSet(capacity);
+   }
+
+   void ring() {
+      for (int v = 0; v + 1 < this.vertices; v++) {
+         connect(v, v + 1);
+      }
+
+      // with only 2 vertices the ring is the one edge
+      if (this.vertices > 2) {
+         connect(this.vertices - 1, 0);
+      }
+
+      this.ringEdges = this.count;
+   }
+
+   /**
+    * The connections a vertex starts with from the ring
+    */
+   static int ringDegree(int vertices) {
+      return vertices == 2 ? 1 : 2;
+   }
+
+   static boolean isRingEdge(int a, int b, int vertices) {
+      int gap = Math.abs(a - b);
+      return gap == 1 || (vertices > 2 && gap == vertices - 1);
+   }
+
+   static void shuffle(int[] values, int length, Random random) {
+      for (int i = length - 1; i > 0; i--) {
+         int j = random.nextInt(i + 1);
+         int swap = values[i];
+         values[i] = values[j];
+         values[j] = swap;
+      }
+   }
+
+   int degree(int vertex) {
+      return this.degree[vertex];
+   }
+
+   int getEdgeCount() {
+      return this.count;
+   }
+
+   /**
+    * The edges from ring() come first, everything at or after this index can be moved
+    */
+   int getRingEdges() {
+      return this.ringEdges;
+   }
+
+   /**
+    * Stubs for every vertex short of its target, in vertex order
+    */
+   int[] stubsFor(int[] target) {
+      int stubCount = 0;
+      for (int v = 0; v < this.vertices; v++) {
+         stubCount += Math.max(0, target[v] - this.degree[v]);
+      }
+
+      int[] stubs = new int[stubCount];
+      for (int v = 0, s = 0; v < this.vertices; v++) {
+         for (int i = this.degree[v]; i < target[v]; i++) {
+            stubs[s++] = v;
+         }
+      }
+      return stubs;
+   }
+
+   /**
+    * Connect shuffled stubs two at a time.  Pairs that can't be connected are placed afterwards.
+    * @param target The connections each vertex should end up with
+    * @return How many stubs had to be placed after the pairing
+    */
+   int pairStubs(int[] stubs, int stubCount, int[] target) {
+      int[] leftover = new int[stubCount];
+      int leftoverCount = 0;
+
+      for (int i = 0; i + 1 < stubCount; i += 2) {
+         if (!tryConnect(stubs[i], stubs[i + 1])) {
+            leftover[leftoverCount++] = stubs[i];
+            leftover[leftoverCount++] = stubs[i + 1];
+         }
+      }
+      if (stubCount % 2 == 1) {
+         leftover[leftoverCount++] = stubs[stubCount - 1];
+      }
+
+      return place(leftover, leftoverCount, target);
+   }
+
+   boolean tryConnect(int a, int b) {
+      if (a == b || this.degree[a] >= this.maxConnections || this.degree[b] >= this.maxConnections || this.set.contains(OverlayGraph.edge(a, b))) {
+         return false;
+      }
+
+      connect(a, b);
+      return true;
+   }
+
+   private void connect(int a, int b) {
+      connect(a, b, this.edgeCost.cost(a, b));
+   }
+
+   /**
+    * Add an edge already known to be new
+    */
+   void connect(int a, int b, byte cost) {
+      long edge = OverlayGraph.edge(a, b);
+      this.edges[this.count] = edge;
+      this.costs[this.count] = cost;
+      this.count++;
+      this.set.add(edge);
+      this.degree[a]++;
+      this.degree[b]++;
+   }
+
+   /**
+    * Swap the ends of two edges, (a, b) and (c, d) become (a, d) and (c, b).  Every vertex keeps its degree.
+    * @return false if the swap would connect a vertex to itself or repeat an edge
+    */
+   boolean swap(int first, int second) {
+      int a = OverlayGraph.first(this.edges[first]);
+      int b = OverlayGraph.second(this.edges[first]);
+      int c = OverlayGraph.first(this.edges[second]);
+      int d = OverlayGraph.second(this.edges[second]);
+
+      if (this.random.nextBoolean()) {
+         int swap = c;
+         c = d;
+         d = swap;
+      }
+
+      long ad = OverlayGraph.edge(a, d);
+      long cb = OverlayGraph.edge(c, b);
+      if (a == d || c == b || ad == cb || this.set.contains(ad) || this.set.contains(cb)) {
+         return false;
+      }
+
+      this.set.remove(this.edges[first]);
+      this.set.remove(this.edges[second]);
+      this.edges[first] = ad;
+      this.edges[second] = cb;
+      this.costs[first] = this.edgeCost.cost(a, d);
+      this.costs[second] = this.edgeCost.cost(c, b);
+      this.set.add(ad);
+      this.set.add(cb);
+      return true;
+   }
+
+   private void disconnect(int index) {
+      long edge = this.edges[index];
+      this.set.remove(edge);
+      this.degree[OverlayGraph.first(edge)]--;
+      this.degree[OverlayGraph.second(edge)]--;
+      this.count--;
+      this.edges[index] = this.edges[this.count];
+      this.costs[index] = this.costs[this.count];
+   }
+
+   /**
+    * Give every stub an edge: with another stub, with any vertex that has room, or by rewiring a random non-ring edge
+    * @return How many stubs were placed
+    */
+   private int place(int[] stubs, int stubCount, int[] target) {
+      int placed = 0;
+      int[] pending = stubs.clone();
+      int size = stubCount;
+
+      while (size > 0) {
+         int u = pending[--size];
+         if (this.degree[u] >= target[u]) {
+            continue; // filled in while placing someone else
+         }
+
+         if (!pairWithPending(u, pending, size, target) && !connectToAnyWithRoom(u)) {
+            // the edge taken for u leaves its other end a connection short, so it goes back on the pile
+            if (size == pending.length) {
+               pending = Arrays.copyOf(pending, pending.length * 2 + 1);
+            }
+            pending[size++] = rewire(u);
+         }
+
+         if (++placed > stubCount + this.vertices * 4) {
+            throw new IllegalStateException("Unable to connect the overlay with [" + this.vertices + "] vertices and at most [" + this.maxConnections + "] connections");
+         }
+
+         size = compact(pending, size, target); // a partner may have been filled
+      }
+
+      return placed;
+   }
+
+   private boolean pairWithPending(int u, int[] pending, int size, int[] target) {
+      for (int i = size - 1; i >= 0; i--) {
+         int w = pending[i];
+         if (this.degree[w] < target[w] && tryConnect(u, w)) {
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+   private boolean connectToAnyWithRoom(int u) {
+      int start = this.random.nextInt(this.vertices);
+
+      for (int i = 0; i < this.vertices; i++) {
+         if (tryConnect(u, (start + i) % this.vertices)) {
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+   /**
+    * Take a random edge that isn't part of the ring and hand one end of it to u
+    * @return The vertex left a connection short
+    */
+   private int rewire(int u) {
+      for (int attempt = 0; attempt < REWIRE_ATTEMPTS && this.count > this.ringEdges; attempt++) {
+         int index = this.ringEdges + this.random.nextInt(this.count - this.ringEdges);
+         long edge = this.edges[index];
+         int x = OverlayGraph.first(edge);
+         int y = OverlayGraph.second(edge);
+
+         if (this.random.nextBoolean()) {
+            int swap = x;
+            x = y;
+            y = swap;
+         }
+
+         if (x != u && y != u && !this.set.contains(OverlayGraph.edge(u, x))) {
+            disconnect(index);
+            connect(u, x);
+            return y;
+         }
+      }
+
+      throw new IllegalStateException("Unable to connect the overlay with [" + this.vertices + "] vertices and at most [" + this.maxConnections + "] connections");
+   }
+
+   /**
+    * Drop the stubs that have been filled
+    */
+   private int compact(int[] pending, int size, int[] target) {
+      int kept = 0;
+      for (int i = 0; i < size; i++) {
+         if (this.degree[pending[i]] < target[pending[i]]) {
+            pending[kept++] = pending[i];
+         }
+      }
+      return kept;
+   }
+
+   OverlayGraph build() {
+      return OverlayGraph.fromEdges(this.vertices, this.edges, this.costs, this.count);
+   }
+
+   /**
+    * An open addressing set of packed edges
+    */
+   static class EdgeSet {
+
+      private static final long EMPTY = -1;
+      private static final long REMOVED = -2;
+
+      private final long[] table;
+      private final int mask;
+
+      EdgeSet(int capacity) {
+         int size = Integer.highestOneBit(Math.max(16, capacity * 2 - 1)) << 1;
+         this.table = new long[size];
+         this.mask = size - 1;
+         Arrays.fill(this.table, EMPTY);
+      }
+
+      boolean contains(long edge) {
+         for (int i = slot(edge); ; i = (i + 1) & this.mask) {
+            if (this.table[i] == edge) {
+               return true;
+            }
+            if (this.table[i] == EMPTY) {
+               return false;
+            }
+         }
+      }
+
+      void add(long edge) {
+         int i = slot(edge);
+         while (this.table[i] != EMPTY && this.table[i] != REMOVED) {
+            i = (i + 1) & this.mask;
+         }
+         this.table[i] = edge;
+      }
+
+      void remove(long edge) {
+         for (int i = slot(edge); this.table[i] != EMPTY; i = (i + 1) & this.mask) {
+            if (this.table[i] == edge) {
+               this.table[i] = REMOVED;
+               return;
+            }
+         }
+      }
+
+      private int slot(long edge) {
+         edge ^= edge >>> 33;
+         edge *= 0xff51afd7ed558ccdL;
+         edge ^= edge >>> 33;
+         return (int) edge & this.mask;
+      }
+   }
+}
@@ -0,0 +1,229 @@
+package cs555.chiba.overlay.network;
+
+import cs555.chiba.service.Identity;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A binary overlay file.  Unlike the CSV, every node is written once and the edges are plain ints, so it's a fraction of
+ * the size, is written straight to the file as it goes and is read through a memory mapped buffer without parsing text.
+ *
+ * The layout, big endian:
+ *
+ * header:    magic "OVL1", version, min connections, max connections, vertex count, edge count (all ints)
+ * vertices:  the id of each vertex, in vertex order
+ * offsets:   vertex count + 1 ints, the edges of vertex v are offsets[v] up to offsets[v + 1]
+ * targets:   edge count ints, the other end of each edge, always a later vertex so each edge is written once
+ * costs:     edge count ints, the cost of each edge
+ * strings:   the identity key then the device string of each vertex, each an int length and the UTF-8 bytes
+ *
+ * Anything that doesn't start with the magic number is taken to be a CSV.
+ */
+public class OverlayFile {
+
+   private static final Logger logger = Logger.getLogger(OverlayFile.class.getName());
+
+   public static final String EXTENSION = ".ovl";
+
+   static final int MAGIC = 0x4F564C31; // OVL1
+   static final int VERSION = 1;
+   private static final int HEADER_INTS = 6;
+
+   private OverlayFile() {
+   }
+
+   /**
+    * @return true if the file starts with the magic number
+    */
+   public static boolean isOverlayFile(File file) throws IOException {
+      if (file.length() < 4) {
+         return false;
+      }
+
+      try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+         return in.readInt() == MAGIC;
+      }
+   }
+
+   public static void write(NetworkMap net, File file) throws IOException {
+      try (OutputStream out = new FileOutputStream(file)) {
+         write(net, out);
+      }
+   }
+
+   /**
+    * Stream the overlay out.  The edges are walked once per section rather than collected.
+    */
+   public static void write(NetworkMap net, OutputStream stream) throws IOException {
+      List<Vertex> vertices = net.getVertices();
+      Map<Vertex, Integer> index = new IdentityHashMap<>(vertices.size());
+      for (int i = 0; i < vertices.size(); i++) {
+         index.put(vertices.get(i), i);
+      }
+
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+      int[] counts = new int[vertices.size()];
+      int edgeCount = 0;
+
+      for (int v = 0; v < vertices.size(); v++) {
+         for (Vertex other : vertices.get(v).getEdges().keySet()) {
+            if (index.get(other) > v) {
+               counts[v]++;
+            }
+         }
+         edgeCount += counts[v];
+      }
+
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(net.getMinConnections());
+      out.writeInt(net.getMaxConnections());
+      out.writeInt(vertices.size());
+      out.writeInt(edgeCount);
+
+      for (Vertex vertex : vertices) {
+         out.writeInt(vertex.getId());
+      }
+
+      int offset = 0;
+      out.writeInt(offset);
+      for (int count : counts) {
+         offset += count;
+         out.writeInt(offset);
+      }
+
+      for (int v = 0; v < vertices.size(); v++) {
+         for (Vertex other : vertices.get(v).getEdges().keySet()) {
+            int target = index.get(other);
+            if (target > v) {
+               out.writeInt(target);
+            }
+         }
+      }
+
+      // the same walk again, so the costs line up with the targets
+      for (int v = 0; v < vertices.size(); v++) {
+         for (Map.Entry<Vertex, Integer> edge : vertices.get(v).getEdges().entrySet()) {
+            if (index.get(edge.getKey()) > v) {
+               out.writeInt(edge.getValue());
+            }
+         }
+      }
+
+      for (Vertex vertex : vertices) {
+         writeString(out, vertex.getName().getIdentityKey());
+         writeString(out, vertex.getDeviceString());
+      }
+
+      out.flush();
+      logger.info("Wrote overlay of [" + vertices.size() + "] vertices and [" + edgeCount + "] edges, [" + out.size() + "] bytes");
+   }
+
+   private static void writeString(DataOutputStream out, String value) throws IOException {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+   }
+
+   /**
+    * Map the file and rebuild the overlay from it
+    */
+   public static NetworkMap read(File file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+         if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Overlay file [" + file.getAbsolutePath() + "] is too large to map");
+         }
+
+         MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         return read(buffer);
+      }
+      catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+         throw new IOException("Overlay file [" + file.getAbsolutePath() + "] is corrupt", e);
+      }
+   }
+
+   static NetworkMap read(ByteBuffer buffer) throws IOException {
+      IntBuffer header = buffer.asIntBuffer();
+      if (header.remaining() < HEADER_INTS || header.get() != MAGIC) {
+         throw new IOException("Not an overlay file");
+      }
+
+      int version = header.get();
+      if (version != VERSION) {
+         throw new IOException("Unsupported overlay file version [" + version + "]");
+      }
+
+      int minConnections = header.get();
+      int maxConnections = header.get();
+      int vertexCount = header.get();
+      int edgeCount = header.get();
+      if (vertexCount < 0 || edgeCount < 0) {
+         throw new IOException("Overlay file has [" + vertexCount + "] vertices and [" + edgeCount + "] edges");
+      }
+
+      // the int sections are read in place, only the strings are copied out
+      IntBuffer ids = section(buffer, HEADER_INTS, vertexCount);
+      IntBuffer offsets = section(buffer, HEADER_INTS + vertexCount, vertexCount + 1);
+      IntBuffer targets = section(buffer, HEADER_INTS + 2 * vertexCount + 1, edgeCount);
+      IntBuffer costs = section(buffer, HEADER_INTS + 2 * vertexCount + 1 + edgeCount, edgeCount);
+
+      ByteBuffer strings = buffer.duplicate();
+      strings.position(4 * (HEADER_INTS + 2 * vertexCount + 1 + 2 * edgeCount));
+
+      List<Vertex> vertices = new ArrayList<>(vertexCount);
+      for (int v = 0; v < vertexCount; v++) {
+         Identity name = Identity.builder().withIdentityKey(readString(strings)).build();
+         vertices.add(new Vertex(ids.get(v), name, readString(strings)));
+      }
+
+      if (offsets.get(0) != 0 || offsets.get(vertexCount) != edgeCount) {
+         throw new IOException("Overlay file offsets don't cover the [" + edgeCount + "] edges");
+      }
+
+      for (int v = 0; v < vertexCount; v++) {
+         for (int e = offsets.get(v); e < offsets.get(v + 1); e++) {
+            int target = targets.get(e);
+            if (target <= v || target >= vertexCount) {
+               throw new IOException("Overlay file has an edge from [" + v + "] to [" + target + "]");
+            }
+            vertices.get(v).addEdge(vertices.get(target), costs.get(e));
+         }
+      }
+
+      return NetworkMap.fromVertices(minConnections, maxConnections, vertices);
+   }
+
+   private static IntBuffer section(ByteBuffer buffer, int startInt, int length) {
+      ByteBuffer section = buffer.duplicate();
+      section.position(4 * startInt);
+      section.limit(4 * (startInt + length));
+      return section.slice().asIntBuffer();
+   }
+
+   private static String readString(ByteBuffer buffer) {
+      int length = buffer.getInt();
+      ByteBuffer bytes = buffer.slice();
+      bytes.limit(length);
+      buffer.position(buffer.position() + length);
+      return StandardCharsets.UTF_8.decode(bytes).toString();
+   }
+}
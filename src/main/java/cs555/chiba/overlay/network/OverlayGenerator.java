@@ -0,0 +1,11 @@
+package cs555.chiba.overlay.network;
+
+/**
+ * Lays out an overlay of a number of vertices.  Every generator joins the vertices in a ring first, so no topology can
+ * leave the overlay partitioned, and keeps every vertex between the min and max connections it was made with.  The same
+ * seed always gives the same overlay.
+ */
+public interface OverlayGenerator {
+
+   OverlayGraph generate(int vertices, long seed);
+}
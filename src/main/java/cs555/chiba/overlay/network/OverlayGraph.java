@@ -0,0 +1,133 @@
+package cs555.chiba.overlay.network;
+
+import cs555.chiba.util.Utilities;
+
+/**
+ * An undirected overlay held in compressed sparse row form.  The neighbors of vertex v are targets[offsets[v]] up to
+ * targets[offsets[v + 1]], with the cost of each edge at the same position in costs.  Every edge is listed from both ends.
+ *
+ * Three arrays are all it takes, so a graph of hundreds of thousands of vertices can be generated and checked before any
+ * Vertex objects are made for it.
+ */
+public class OverlayGraph {
+
+   private final int[] offsets;
+   private final int[] targets;
+   private final byte[] costs;
+
+   public OverlayGraph(int[] offsets, int[] targets, byte[] costs) {
+      Utilities.checkArgument(offsets.length > 0 && offsets[offsets.length - 1] == targets.length, "The offsets don't cover the targets");
+      Utilities.checkArgument(targets.length == costs.length, "Every target needs a cost");
+      this.offsets = offsets;
+      this.targets = targets;
+      this.costs = costs;
+   }
+
+   /**
+    * Lay out a list of edges.  Edges are given once, as pairs of vertices with a cost.
+    */
+   static OverlayGraph fromEdges(int vertices, long[] edges, byte[] edgeCosts, int edgeCount) {
+      int[] offsets = new int[vertices + 1];
+
+      for (int i = 0; i < edgeCount; i++) {
+         offsets[first(edges[i]) + 1]++;
+         offsets[second(edges[i]) + 1]++;
+      }
+
+      for (int v = 0; v < vertices; v++) {
+         offsets[v + 1] += offsets[v];
+      }
+
+      int[] fill = new int[vertices];
+      int[] targets = new int[edgeCount * 2];
+      byte[] costs = new byte[edgeCount * 2];
+
+      for (int i = 0; i < edgeCount; i++) {
+         int a = first(edges[i]);
+         int b = second(edges[i]);
+         int at = offsets[a] + fill[a]++;
+         int bt = offsets[b] + fill[b]++;
+         targets[at] = b;
+         costs[at] = edgeCosts[i];
+         targets[bt] = a;
+         costs[bt] = edgeCosts[i];
+      }
+
+      return new OverlayGraph(offsets, targets, costs);
+   }
+
+   /**
+    * Pack an undirected edge into one long, the lower vertex first
+    */
+   static long edge(int a, int b) {
+      return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+   }
+
+   static int first(long edge) {
+      return (int) (edge >>> 32);
+   }
+
+   static int second(long edge) {
+      return (int) edge;
+   }
+
+   public int size() {
+      return this.offsets.length - 1;
+   }
+
+   public int getEdgeCount() {
+      return this.targets.length / 2;
+   }
+
+   public int degree(int vertex) {
+      return this.offsets[vertex + 1] - this.offsets[vertex];
+   }
+
+   /**
+    * @return The index'th neighbor of the vertex
+    */
+   public int neighbor(int vertex, int index) {
+      return this.targets[this.offsets[vertex] + index];
+   }
+
+   public int cost(int vertex, int index) {
+      return this.costs[this.offsets[vertex] + index];
+   }
+
+   public boolean isConnected(int a, int b) {
+      for (int i = this.offsets[a]; i < this.offsets[a + 1]; i++) {
+         if (this.targets[i] == b) {
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+   public int minDegree() {
+      int min = Integer.MAX_VALUE;
+      for (int v = 0; v < size(); v++) {
+         min = Math.min(min, degree(v));
+      }
+      return min;
+   }
+
+   public int maxDegree() {
+      int max = 0;
+      for (int v = 0; v < size(); v++) {
+         max = Math.max(max, degree(v));
+      }
+      return max;
+   }
+
+   /**
+    * @return The bytes held by the arrays
+    */
+   public long memoryBytes() {
+      return 4L * this.offsets.length + 4L * this.targets.length + this.costs.length;
+   }
+
+   @Override public String toString() {
+      return "OverlayGraph{" + "vertices=" + size() + ", edges=" + getEdgeCount() + ", degree=" + minDegree() + "-" + maxDegree() + ", bytes=" + memoryBytes() + '}';
+   }
+}
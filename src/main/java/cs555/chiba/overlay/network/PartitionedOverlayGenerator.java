@@ -0,0 +1,281 @@
+package cs555.chiba.overlay.network;
+
+import cs555.chiba.util.Utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+/**
+ * Builds very large overlays on every core.  The vertices are split into contiguous partitions.  Each partition shuffles
+ * and pairs the stubs of its own vertices on a ForkJoinPool, keeping back a share of them, -Dcsu.overlay.cross (0.5), to
+ * connect across partitions.  The kept back stubs, along with any pair a partition couldn't connect, are then shuffled
+ * and paired over the whole graph in a single pass, the same way the ConfigurationModelGenerator does.
+ *
+ * As in the ConfigurationModelGenerator, every vertex draws how many connections it wants evenly between the min and
+ * max, from its partition's random numbers.  If the stubs don't pair up evenly, one vertex is moved up or down a
+ * connection before the pass over the whole graph.
+ *
+ * The ring through every vertex is laid down first, as before, so the overlay can't be partitioned no matter how the
+ * partitions come out.
+ *
+ * Every partition draws from its own random numbers, derived from the seed and the partition, and the partitions are
+ * combined in order.  The number of partitions only depends on the number of vertices and the partition size, never on
+ * the cores, so the same seed and size always give the same overlay on any machine, however the threads are scheduled.
+ *
+ * -Dcsu.overlay.seed fixes the seed, otherwise a random one is chosen and logged.  The vertices are split into as many
+ * partitions of at least -Dcsu.overlay.partition.size (4096) vertices as they fill.  An overlay too small for two
+ * partitions is built in a single pass.
+ */
+public class PartitionedOverlayGenerator implements OverlayGenerator {
+
+   private static final Logger logger = Logger.getLogger(PartitionedOverlayGenerator.class.getName());
+
+   static final String SEED_PROPERTY = "csu.overlay.seed";
+   static final String PARTITION_SIZE_PROPERTY = "csu.overlay.partition.size";
+   static final String CROSS_PROPERTY = "csu.overlay.cross";
+
+   private final int minConnections;
+   private final int maxConnections;
+   private final int minPartitionSize;
+   private final double crossFraction;
+
+   /**
+    * @param minPartitionSize The fewest vertices in a partition
+    * @param crossFraction The share of random connections made across partitions
+    */
+   public PartitionedOverlayGenerator(int minConnections, int maxConnections, int minPartitionSize, double crossFraction) {
+      Utilities.checkArgument(minPartitionSize > 0, "The partition size must be positive [" + minPartitionSize + "]");
+      Utilities.checkArgument(crossFraction >= 0 && crossFraction <= 1, "The cross partition share must be between 0 and 1 [" + crossFraction + "]");
+      ConfigurationModelGenerator.checkConnections(minConnections, maxConnections);
+      this.minConnections = minConnections;
+      this.maxConnections = maxConnections;
+      this.minPartitionSize = minPartitionSize;
+      this.crossFraction = crossFraction;
+   }
+
+   public static PartitionedOverlayGenerator fromProperties(int minConnections, int maxConnections) {
+      return new PartitionedOverlayGenerator(minConnections, maxConnections, Integer.getInteger(PARTITION_SIZE_PROPERTY, 4096), Double.parseDouble(System.getProperty(CROSS_PROPERTY, "0.5")));
+   }
+
+   /**
+    * @return The seed set with -Dcsu.overlay.seed, or a new random one
+    */
+   public static long seedFromProperties() {
+      Long seed = Long.getLong(SEED_PROPERTY);
+      if (seed == null) {
+         seed = new Random().nextLong();
+      }
+      logger.info("Overlay seed [" + seed + "]");
+      return seed;
+   }
+
+   @Override public OverlayGraph generate(int vertices, long seed) {
+      int count = vertices / this.minPartitionSize;
+
+      if (count < 2) {
+         return new ConfigurationModelGenerator(this.minConnections, this.maxConnections).generate(vertices, seed);
+      }
+      ConfigurationModelGenerator.checkVertices(vertices, this.maxConnections);
+
+      long started = System.nanoTime();
+      List<Partition> built = ForkJoinPool.commonPool().invoke(new BuildPartitions(vertices, count, 0, count, seed));
+      long parallel = System.nanoTime();
+
+      OverlayBuilder graph = new OverlayBuilder(vertices, this.maxConnections, new Random(seed));
+      graph.ring();
+      int crossCount = 0;
+      long stubTotal = 0;
+
+      for (Partition partition : built) {
+         for (int i = 0; i < partition.edgeCount; i++) {
+            graph.connect(OverlayGraph.first(partition.edges[i]), OverlayGraph.second(partition.edges[i]), partition.costs[i]);
+         }
+         crossCount += partition.crossCount;
+         stubTotal += partition.stubCount;
+      }
+
+      int[] cross = new int[crossCount + 1]; // room for the stub that evens out the count
+      int[] target = new int[vertices];
+      int at = 0;
+      for (int p = 0; p < built.size(); p++) {
+         Partition partition = built.get(p);
+         System.arraycopy(partition.cross, 0, cross, at, partition.crossCount);
+         System.arraycopy(partition.target, 0, target, start(vertices, count, p), partition.target.length);
+         at += partition.crossCount;
+      }
+
+      Random random = new Random(seed ^ 0x5DEECE66DL);
+      if (stubTotal % 2 == 1) {
+         crossCount = evenOut(vertices, target, cross, crossCount, random);
+      }
+
+      OverlayBuilder.shuffle(cross, crossCount, random);
+      int placed = graph.pairStubs(cross, crossCount, target);
+
+      OverlayGraph overlay = graph.build();
+      logger.info("Generated " + overlay + " from " + count + " partitions in " + (System.nanoTime() - started) / 1000000 + " ms (" + (parallel - started) / 1000000 + " ms in parallel), "
+            + crossCount + " stubs connected across partitions, " + placed + " placed after the shuffle");
+      return overlay;
+   }
+
+   /**
+    * Move one vertex a connection up, adding a stub, or failing that down, taking back one of its stubs still waiting to
+    * be paired.  If no vertex can move the count stays odd and the last stub is placed on its own.
+    * @return The number of stubs left to pair
+    */
+   private int evenOut(int vertices, int[] target, int[] cross, int crossCount, Random random) {
+      int start = random.nextInt(vertices);
+
+      for (int i = 0; i < vertices; i++) {
+         int v = (start + i) % vertices;
+         if (target[v] < this.maxConnections) {
+            target[v]++;
+            cross[crossCount] = v;
+            return crossCount + 1;
+         }
+      }
+
+      int floor = Math.max(this.minConnections, OverlayBuilder.ringDegree(vertices));
+      for (int i = 0; i < crossCount; i++) {
+         int v = cross[i];
+         if (target[v] > floor) {
+            target[v]--;
+            cross[i] = cross[crossCount - 1];
+            return crossCount - 1;
+         }
+      }
+
+      return crossCount;
+   }
+
+   /**
+    * The first vertex of a partition, spreading the vertices as evenly as possible
+    */
+   private static int start(int vertices, int count, int partition) {
+      return (int) ((long) vertices * partition / count);
+   }
+
+   /**
+    * Pair the stubs inside one partition
+    */
+   private Partition buildPartition(int vertices, int from, int to, Random random) {
+      int ring = OverlayBuilder.ringDegree(vertices);
+      int[] target = new int[to - from];
+      int stubCount = 0;
+
+      for (int v = from; v < to; v++) {
+         int wanted = this.minConnections + random.nextInt(this.maxConnections - this.minConnections + 1);
+         target[v - from] = Math.max(wanted, ring);
+         stubCount += target[v - from] - ring;
+      }
+
+      int[] local = new int[stubCount];
+      Partition partition = new Partition(target, stubCount);
+      int localCount = 0;
+
+      for (int v = from; v < to; v++) {
+         for (int i = ring; i < target[v - from]; i++) {
+            if (random.nextDouble() < this.crossFraction) {
+               partition.cross[partition.crossCount++] = v;
+            }
+            else {
+               local[localCount++] = v;
+            }
+         }
+      }
+
+      OverlayBuilder.shuffle(local, localCount, random);
+
+      // the ring edges inside the partition are already taken, everything else is checked against the partition's own edges
+      OverlayBuilder.EdgeSet taken = new OverlayBuilder.EdgeSet(localCount / 2 + 1);
+      partition.edges = new long[localCount / 2];
+      partition.costs = new byte[localCount / 2];
+
+      for (int i = 0; i + 1 < localCount; i += 2) {
+         int a = local[i];
+         int b = local[i + 1];
+         long edge = OverlayGraph.edge(a, b);
+
+         if (a == b || OverlayBuilder.isRingEdge(a, b, vertices) || taken.contains(edge)) {
+            partition.cross[partition.crossCount++] = a;
+            partition.cross[partition.crossCount++] = b;
+            continue;
+         }
+
+         taken.add(edge);
+         partition.edges[partition.edgeCount] = edge;
+         partition.costs[partition.edgeCount] = (byte) (1 + random.nextInt(10)); // between 1 and 10
+         partition.edgeCount++;
+      }
+
+      if (localCount % 2 == 1) {
+         partition.cross[partition.crossCount++] = local[localCount - 1];
+      }
+
+      return partition;
+   }
+
+   /**
+    * The connections each vertex of a partition wants, the edges made inside it and the stubs left to connect across
+    * partitions
+    */
+   private static class Partition {
+
+      private final int[] target;
+      private final int stubCount;
+      private long[] edges;
+      private byte[] costs;
+      private int edgeCount = 0;
+      private final int[] cross;
+      private int crossCount = 0;
+
+      Partition(int[] target, int stubCount) {
+         this.target = target;
+         this.stubCount = stubCount;
+         this.cross = new int[stubCount];
+      }
+   }
+
+   /**
+    * Splits the partitions in half until there's one to build
+    */
+   private class BuildPartitions extends RecursiveTask<List<Partition>> {
+
+      private static final long serialVersionUID = 1L;
+
+      private final int vertices;
+      private final int count;
+      private final int from;
+      private final int to;
+      private final long seed;
+
+      BuildPartitions(int vertices, int count, int from, int to, long seed) {
+         this.vertices = vertices;
+         this.count = count;
+         this.from = from;
+         this.to = to;
+         this.seed = seed;
+      }
+
+      @Override protected List<Partition> compute() {
+         if (this.to - this.from == 1) {
+            Random random = new Random(this.seed * 0x9E3779B97F4A7C15L + this.from);
+            List<Partition> one = new ArrayList<>(1);
+            one.add(buildPartition(this.vertices, start(this.vertices, this.count, this.from), start(this.vertices, this.count, this.from + 1), random));
+            return one;
+         }
+
+         int middle = (this.from + this.to) >>> 1;
+         BuildPartitions left = new BuildPartitions(this.vertices, this.count, this.from, middle, this.seed);
+         BuildPartitions right = new BuildPartitions(this.vertices, this.count, middle, this.to, this.seed);
+         right.fork();
+         List<Partition> built = left.compute();
+         built.addAll(right.join());
+         return built;
+      }
+   }
+}
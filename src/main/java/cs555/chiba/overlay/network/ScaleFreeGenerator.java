@@ -0,0 +1,70 @@
+package cs555.chiba.overlay.network;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * A Barabasi-Albert scale free overlay.  The vertices join one at a time, in ring order, and each connects to vertices that
+ * joined before it until it has the min connections.  A vertex is picked with a chance in proportion to the connections it
+ * already has, so early and popular vertices become hubs.
+ *
+ * Hubs stop at the max connections, which cuts off the tail of the degree distribution but keeps the overlay inside the
+ * limits.  A vertex that keeps picking full hubs settles for any vertex that joined before it.  The first few vertices,
+ * with too few before them to reach the min, are finished with random connections.
+ */
+public class ScaleFreeGenerator implements OverlayGenerator {
+
+   private static final Logger logger = Logger.getLogger(ScaleFreeGenerator.class.getName());
+
+   private static final int ATTEMPTS = 32; // picks tried before a vertex is left to the random connections
+
+   private final int minConnections;
+   private final int maxConnections;
+
+   public ScaleFreeGenerator(int minConnections, int maxConnections) {
+      ConfigurationModelGenerator.checkConnections(minConnections, maxConnections);
+      this.minConnections = minConnections;
+      this.maxConnections = maxConnections;
+   }
+
+   @Override public OverlayGraph generate(int vertices, long seed) {
+      ConfigurationModelGenerator.checkVertices(vertices, this.maxConnections);
+      long started = System.nanoTime();
+      Random random = new Random(seed);
+
+      OverlayBuilder graph = new OverlayBuilder(vertices, this.maxConnections, random);
+      graph.ring();
+
+      // every end of every edge among the vertices that have joined, picking one at random favors the well connected
+      int[] ends = new int[2 * ((int) Math.min(Integer.MAX_VALUE / 2 - 8, (long) vertices * this.maxConnections / 2 + vertices))];
+      int endCount = 0;
+
+      for (int v = 1; v < vertices; v++) {
+         ends[endCount++] = v - 1; // the ring edge to the vertex before
+         ends[endCount++] = v;
+
+         for (int attempt = 0; graph.degree(v) < this.minConnections && attempt < ATTEMPTS; attempt++) {
+            // once the hubs are full, fall back on any vertex that joined before
+            int w = attempt < ATTEMPTS / 2 ? ends[random.nextInt(endCount)] : random.nextInt(v);
+
+            if (graph.tryConnect(v, w)) {
+               ends[endCount++] = v;
+               ends[endCount++] = w;
+            }
+         }
+      }
+
+      int[] target = new int[vertices];
+      for (int v = 0; v < vertices; v++) {
+         target[v] = Math.max(this.minConnections, graph.degree(v));
+      }
+
+      int[] stubs = graph.stubsFor(target);
+      OverlayBuilder.shuffle(stubs, stubs.length, random);
+      graph.pairStubs(stubs, stubs.length, target);
+
+      OverlayGraph overlay = graph.build();
+      logger.info("Generated scale free " + overlay + " in " + (System.nanoTime() - started) / 1000000 + " ms, " + stubs.length + " random stubs");
+      return overlay;
+   }
+}
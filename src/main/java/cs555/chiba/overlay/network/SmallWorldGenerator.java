@@ -0,0 +1,81 @@
+package cs555.chiba.overlay.network;
+
+import cs555.chiba.util.Utilities;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * A Watts-Strogatz small world.  Every vertex is connected to its nearest neighbors around the ring, half on each side,
+ * for as many connections as the min allows in pairs.  An odd min is made up with random connections.  Then each edge off
+ * the ring is rewired with the probability -Dcsu.overlay.rewire (0.1), which gives the lattice a few long shortcuts.
+ *
+ * Rewiring swaps the ends of two edges instead of moving one end, so every vertex keeps its degree and the ring is never
+ * touched.  The overlay stays connected and inside the min and max.
+ */
+public class SmallWorldGenerator implements OverlayGenerator {
+
+   private static final Logger logger = Logger.getLogger(SmallWorldGenerator.class.getName());
+
+   static final String REWIRE_PROPERTY = "csu.overlay.rewire";
+
+   private final int minConnections;
+   private final int maxConnections;
+   private final double rewire;
+
+   /**
+    * @param rewire The chance each lattice edge is rewired
+    */
+   public SmallWorldGenerator(int minConnections, int maxConnections, double rewire) {
+      ConfigurationModelGenerator.checkConnections(minConnections, maxConnections);
+      Utilities.checkArgument(rewire >= 0 && rewire <= 1, "The rewiring probability must be between 0 and 1 [" + rewire + "]");
+      this.minConnections = minConnections;
+      this.maxConnections = maxConnections;
+      this.rewire = rewire;
+   }
+
+   public static SmallWorldGenerator fromProperties(int minConnections, int maxConnections) {
+      return new SmallWorldGenerator(minConnections, maxConnections, Double.parseDouble(System.getProperty(REWIRE_PROPERTY, "0.1")));
+   }
+
+   @Override public OverlayGraph generate(int vertices, long seed) {
+      ConfigurationModelGenerator.checkVertices(vertices, this.maxConnections);
+      long started = System.nanoTime();
+      Random random = new Random(seed);
+
+      OverlayBuilder graph = new OverlayBuilder(vertices, this.maxConnections, random);
+      graph.ring();
+
+      // the ring is the nearest neighbor on each side, the lattice adds the next ones out
+      int reach = this.minConnections / 2;
+      for (int step = 2; step <= reach; step++) {
+         for (int v = 0; v < vertices; v++) {
+            graph.tryConnect(v, (v + step) % vertices);
+         }
+      }
+
+      int lattice = graph.getEdgeCount();
+      int movable = lattice - graph.getRingEdges();
+      int rewired = 0;
+
+      for (int i = graph.getRingEdges(); i < lattice && movable > 1; i++) {
+         if (random.nextDouble() < this.rewire && graph.swap(i, graph.getRingEdges() + random.nextInt(movable))) {
+            rewired++;
+         }
+      }
+
+      int[] target = new int[vertices];
+      for (int v = 0; v < vertices; v++) {
+         target[v] = Math.max(this.minConnections, graph.degree(v));
+      }
+
+      int[] stubs = graph.stubsFor(target);
+      OverlayBuilder.shuffle(stubs, stubs.length, random);
+      graph.pairStubs(stubs, stubs.length, target);
+
+      OverlayGraph overlay = graph.build();
+      logger.info("Generated small world " + overlay + " in " + (System.nanoTime() - started) / 1000000 + " ms, " + rewired + " of " + movable + " lattice edges rewired, "
+            + stubs.length + " random stubs");
+      return overlay;
+   }
+}
@@ -0,0 +1,48 @@
+package cs555.chiba.overlay.network;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The shapes of overlay the registry can build.  -Dcsu.overlay.topology picks the one buildoverlay uses when it isn't
+ * given one, random by default.
+ */
+public enum Topology {
+   RANDOM {
+      @Override public OverlayGenerator generator(int minConnections, int maxConnections) {
+         return PartitionedOverlayGenerator.fromProperties(minConnections, maxConnections);
+      }
+   },
+   SMALLWORLD {
+      @Override public OverlayGenerator generator(int minConnections, int maxConnections) {
+         return SmallWorldGenerator.fromProperties(minConnections, maxConnections);
+      }
+   },
+   SCALEFREE {
+      @Override public OverlayGenerator generator(int minConnections, int maxConnections) {
+         return new ScaleFreeGenerator(minConnections, maxConnections);
+      }
+   },
+   GRID {
+      @Override public OverlayGenerator generator(int minConnections, int maxConnections) {
+         return new GridGenerator(minConnections, maxConnections);
+      }
+   };
+
+   static final String TOPOLOGY_PROPERTY = "csu.overlay.topology";
+
+   public abstract OverlayGenerator generator(int minConnections, int maxConnections);
+
+   public static Topology parse(String name) {
+      try {
+         return valueOf(name.trim().toUpperCase(Locale.ROOT).replace("-", ""));
+      }
+      catch (IllegalArgumentException e) {
+         throw new IllegalArgumentException("Unknown topology [" + name + "], use one of " + Arrays.toString(values()).toLowerCase(Locale.ROOT));
+      }
+   }
+
+   public static Topology fromProperties() {
+      return parse(System.getProperty(TOPOLOGY_PROPERTY, "random"));
+   }
+}
@@ -0,0 +1,103 @@
+package cs555.chiba.registry;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.Utilities;
+import cs555.chiba.wireformats.Flood;
+
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An expanding ring search.  The query starts as a convergecast flood with a small hop limit.  If the ring doesn't find
+ * the wanted number of devices, the same query is re-issued from the same peer with double the hop limit, until the
+ * maximum hop limit is reached.  Popular metrics are usually found in the first rings, at a fraction of the messages a
+ * full flood would send.
+ *
+ * Every ring shares the query id, so peers that an earlier ring counted pass the query on without counting themselves
+ * again, and the results add up to one answer.
+ *
+ * A ring is answered when the peer it was sent from replies for that ring.  Late replies from deeper in a ring go straight
+ * to the registry from other peers, so they add to the totals but never stand in for a ring's answer.  The peers wait
+ * -Dcsu.flood.hop.timeout.ms for every hop a ring can travel, so each ring waits that long per hop plus
+ * -Dcsu.ring.slack.ms before the next one is sent.
+ */
+class ExpandingRing implements Runnable {
+
+   private static final Logger logger = Logger.getLogger(ExpandingRing.class.getName());
+
+   static final String HOP_TIMEOUT_PROPERTY = "csu.flood.hop.timeout.ms"; // the same property the peers wait on
+   static final String SLACK_PROPERTY = "csu.ring.slack.ms";
+
+   private final RegistryNode registryNode;
+   private final String metric;
+   private final int wantedDevices;
+   private final int startHops;
+   private final int maxHops;
+   private final long hopTimeoutMillis;
+   private final long slackMillis;
+   private final UUID id = UUID.randomUUID();
+
+   ExpandingRing(RegistryNode registryNode, String metric, int wantedDevices, int startHops, int maxHops) {
+      Utilities.checkArgument(startHops > 0, "The starting hop limit must be above 0 [" + startHops + "]");
+      Utilities.checkArgument(maxHops >= startHops, "The maximum hop limit [" + maxHops + "] can't be below the starting hop limit [" + startHops + "]");
+      this.registryNode = registryNode;
+      this.metric = metric;
+      this.wantedDevices = wantedDevices;
+      this.startHops = startHops;
+      this.maxHops = maxHops;
+      this.hopTimeoutMillis = Long.getLong(HOP_TIMEOUT_PROPERTY, 500L);
+      this.slackMillis = Long.getLong(SLACK_PROPERTY, 1000L);
+   }
+
+   /**
+    * The peers give up on a ring after a hop timeout per hop, the slack covers the trip back to the registry
+    */
+   long deadlineMillis(int hops) {
+      return hops * this.hopTimeoutMillis + this.slackMillis;
+   }
+
+   /**
+    * Run the search in the background, the rings wait on replies
+    */
+   UUID start() {
+      this.registryNode.addRequest(this.id, "expanding_ring");
+      Thread thread = new Thread(this, "ExpandingRing-" + this.id);
+      thread.setDaemon(true);
+      thread.start();
+      return this.id;
+   }
+
+   @Override public void run() {
+      ResultMetrics result = this.registryNode.getRequests().get(this.id);
+      Identity center = this.registryNode.getRegistry().getRandomPeer();
+      result.setRingCenter(center.getIdentityKey());
+      int ring = 0;
+
+      try {
+         for (int hops = this.startHops; ; hops = Math.min(this.maxHops, hops * 2), ring++) {
+            Flood request = new Flood(this.id, this.registryNode.getIdentity(), this.registryNode.getIdentity(), this.metric, 0, hops);
+            request.setMode(Flood.MODE_CONVERGECAST);
+            request.setRing(ring);
+            this.registryNode.getTcpConnectionsCache().sendSingle(center, request.getBytes());
+
+            long deadline = deadlineMillis(hops);
+            if (!result.awaitRing(ring, deadline)) {
+               logger.warning("Expanding ring [" + this.id + "] ring [" + ring + "] didn't answer within [" + deadline + "] ms");
+            }
+
+            if (result.getTotalNumberOfDevicesWithMetric() >= this.wantedDevices || hops >= this.maxHops) {
+               break;
+            }
+         }
+
+         logger.info("Expanding ring [" + this.id + "] finished after [" + (ring + 1) + "] rings with [" + result.getTotalNumberOfDevicesWithMetric() + "] devices");
+      }
+      catch (InterruptedException e) {
+         // shutting down
+      }
+      catch (Exception e) {
+         logger.log(Level.SEVERE, "Expanding ring [" + this.id + "] failed", e);
+      }
+   }
+}
@@ -2,6 +2,7 @@ package cs555.chiba.registry;
 
 import cs555.chiba.overlay.network.NetworkMap;
 import cs555.chiba.overlay.network.NetworkMapTransformer;
+import cs555.chiba.overlay.network.Topology;
 import cs555.chiba.overlay.network.Vertex;
 import cs555.chiba.service.Commands;
 import cs555.chiba.service.Identity;
@@ -17,6 +18,7 @@ import cs555.chiba.wireformats.ShutdownMessage;
 import java.io.File;
 import java.io.FileWriter;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
@@ -31,6 +33,8 @@ class RegistryCommands {
 
    private static final Logger logger = Logger.getLogger(RegistryCommands.class.getName());
 
+   static final String CHECK_IN_PROPERTY = "csu.walk.checkin.hops";
+
    static Commands getRegistryCommands(RegistryNode registryNode) {
       Commands.Builder builder = Commands.builder();
       builder.registerCommand("listpeers", args -> { // list all the registered nodes
@@ -40,10 +44,12 @@ class RegistryCommands {
 
       builder.registerCommand("randomWalk", args -> {
          if (!Utilities.checkArgCount(2, args)) {
-            throw new IllegalArgumentException("Random Walk requires 2 arguments:  " + "metric-to-collect hop-limit");
+            throw new IllegalArgumentException("Random Walk requires 2 arguments:  " + "metric-to-collect hop-limit [walkers] [wanted-devices]");
          }
 
-         sendRandomWalkRequest(args[0], Integer.parseInt(args[1]), registryNode);
+         int walkers = args.length > 2 ? Utilities.parsePositiveIntFromArg("walkers", args[2]) : 1;
+         int wantedDevices = args.length > 3 ? Utilities.parsePositiveIntFromArg("wanted-devices", args[3]) : 0;
+         sendRandomWalkRequest(args[0], Integer.parseInt(args[1]), walkers, wantedDevices, registryNode);
          return null;
       });
 
@@ -56,6 +62,27 @@ class RegistryCommands {
          return null;
       });
 
+      builder.registerCommand("convergecast", args -> {
+         if (!Utilities.checkArgCount(2, args)) {
+            throw new IllegalArgumentException("Convergecast requires 2 arguments:  " + "metric-to-collect, hop-limit");
+         }
+
+         sendConvergecastRequest(args[0], Integer.parseInt(args[1]), registryNode);
+         return null;
+      });
+
+      builder.registerCommand("expandingring", args -> {
+         if (!Utilities.checkArgCount(2, args)) {
+            throw new IllegalArgumentException("Expanding Ring requires 2 arguments:  " + "metric-to-collect, wanted-devices [starting-hop-limit] [max-hop-limit]");
+         }
+
+         int wantedDevices = Utilities.parsePositiveIntFromArg("wanted-devices", args[1]);
+         int startHops = args.length > 2 ? Utilities.parsePositiveIntFromArg("starting-hop-limit", args[2]) : 1;
+         int maxHops = args.length > 3 ? Utilities.parsePositiveIntFromArg("max-hop-limit", args[3]) : 16;
+         logger.info("Sending Expanding Ring request [" + new ExpandingRing(registryNode, args[0], wantedDevices, startHops, maxHops).start() + "]");
+         return null;
+      });
+
       builder.registerCommand("gossiptype0", args -> {
          if (!Utilities.checkArgCount(2, args)) {
             throw new IllegalArgumentException("Gossiping type 0 requires 2 arguments:  " + "metric-to-collect, hop-limit");
@@ -74,14 +101,15 @@ class RegistryCommands {
          return null;
       });
 
-      builder.registerCommand("buildoverlay", args -> { // build a random overlay with the current peers
+      builder.registerCommand("buildoverlay", args -> { // build an overlay with the current peers
          if (!Utilities.checkArgCount(2, args)) {
-            throw new IllegalArgumentException("Build Overlay requires 2 arguments:  min-connections-per-peer max-connections-per-peer");
+            throw new IllegalArgumentException("Build Overlay requires 2 arguments:  min-connections-per-peer max-connections-per-peer [random|smallworld|scalefree|grid]");
          }
 
          int min = Utilities.quietlyParseInt(args[0], 1);
          int max = Utilities.quietlyParseInt(args[1], 2);
-         logger.info(buildOverlay(min, max, registryNode));
+         Topology topology = args.length > 2 ? Topology.parse(args[2]) : Topology.fromProperties();
+         logger.info(buildOverlay(min, max, topology, registryNode));
          return null;
       });
 
@@ -154,11 +182,23 @@ class RegistryCommands {
       return builder.build();
    }
 
-   private static void sendRandomWalkRequest(String metric, int hopLimit, RegistryNode registryNode) {
-      RandomWalk request = new RandomWalk(UUID.randomUUID(), registryNode.getIdentity(), registryNode.getIdentity(), metric, 0, hopLimit);
-      registryNode.addRequest(request.getID(), "randomWalk");
-      logger.info("Sending random Walk request");
-      registryNode.getTcpConnectionsCache().sendSingle(registryNode.getRegistry().getRandomPeer(), request.getBytes());
+   /**
+    * Start k walkers sharing one query id, each from a random peer.  When wanted devices is set, the walkers check in
+    * every -Dcsu.walk.checkin.hops hops and are stopped once that many devices with the metric have been found.
+    */
+   private static void sendRandomWalkRequest(String metric, int hopLimit, int walkers, int wantedDevices, RegistryNode registryNode) {
+      UUID id = UUID.randomUUID();
+      int checkInHops = wantedDevices > 0 ? Integer.getInteger(CHECK_IN_PROPERTY, 4) : 0;
+      registryNode.addRequest(id, walkers == 1 ? "randomWalk" : "randomWalk_k" + walkers);
+      logger.info("Sending random Walk request with [" + walkers + "] walkers");
+
+      for (int walker = 0; walker < walkers; walker++) {
+         RandomWalk request = new RandomWalk(id, registryNode.getIdentity(), registryNode.getIdentity(), metric, 0, hopLimit);
+         request.setWalker(walker);
+         request.setWantedDevices(wantedDevices);
+         request.setCheckInHops(checkInHops);
+         registryNode.getTcpConnectionsCache().sendSingle(registryNode.getRegistry().getRandomPeer(), request.getBytes());
+      }
    }
 
    private static void sendGossipingRequest(String metric, int hopLimit, RegistryNode registryNode, int type) {
@@ -179,6 +219,14 @@ class RegistryCommands {
       registryNode.getTcpConnectionsCache().sendSingle(registryNode.getRegistry().getRandomPeer(), request.getBytes());
    }
 
+   private static void sendConvergecastRequest(String metric, int hopLimit, RegistryNode registryNode) {
+      Flood request = new Flood(UUID.randomUUID(), registryNode.getIdentity(), registryNode.getIdentity(), metric, 0, hopLimit);
+      request.setMode(Flood.MODE_CONVERGECAST);
+      registryNode.addRequest(request.getID(), "flood_convergecast");
+      logger.info("Sending Convergecast request");
+      registryNode.getTcpConnectionsCache().sendSingle(registryNode.getRegistry().getRandomPeer(), request.getBytes());
+   }
+
    /**
     * Who's in our system
     * @param registryNode
@@ -197,9 +245,9 @@ class RegistryCommands {
    /**
     * Create an Overlay
     */
-   private static String buildOverlay(int minConnections, int maxConnections, RegistryNode registryNode) {
-      StringBuffer out = new StringBuffer("Building Overlay: \n");
-      out.append(registryNode.buildOverlay(minConnections, maxConnections));
+   private static String buildOverlay(int minConnections, int maxConnections, Topology topology, RegistryNode registryNode) {
+      StringBuffer out = new StringBuffer("Building " + topology.name().toLowerCase(Locale.ROOT) + " Overlay: \n");
+      out.append(registryNode.buildOverlay(minConnections, maxConnections, topology));
       return out.toString();
    }
 
@@ -216,8 +264,7 @@ class RegistryCommands {
          }
          else {
             NetworkMapTransformer trans = new NetworkMapTransformer(net);
-            String edges = trans.export();
-            File file = Utilities.writeFile(exportPath, edges);
+            File file = trans.exportTo(exportPath);
             out.append("Export Succeeded: [").append(file.getAbsolutePath()).append("] \n");
          }
       }
@@ -232,7 +279,7 @@ class RegistryCommands {
 	      StringBuilder out = new StringBuilder("Exporting Results: \n");
 	      try {
 	    	  FileWriter f = new FileWriter(exportPath);
-	    	  f.write("ID,Total Hops,Total Devices,Devices with Metric,Max Hops,Hop Limit,Time Start,Time End,Type\n");
+	    	  f.write("ID,Total Hops,Total Devices,Devices with Metric,Max Hops,Hop Limit,Time Start,Time End,Type,Result Messages\n");
 	    	  for(ResultMetrics m : results.values()) {
 		    	  StringBuilder line = new StringBuilder("");
 		    	  line.append(m.getRequestId().toString()).append(",");
@@ -243,7 +290,8 @@ class RegistryCommands {
 		    	  line.append(m.getHopLimit()).append(",");
 		    	  line.append(m.getTimeQueryStarted()).append(",");
 		    	  line.append(m.getTimeOfLastReceivedResultMessage()).append(",");
-		    	  line.append(m.getTypeOfQuery()).append("\n");
+		    	  line.append(m.getTypeOfQuery()).append(",");
+		    	  line.append(m.getResultMessages()).append("\n");
 		    	  f.write(line.toString());
 	    	  }
 	    	  f.close();
@@ -2,6 +2,7 @@ package cs555.chiba.registry;
 
 import cs555.chiba.overlay.network.NetworkMap;
 import cs555.chiba.overlay.network.NetworkMapCheck;
+import cs555.chiba.overlay.network.Topology;
 import cs555.chiba.service.ServiceNode;
 import cs555.chiba.util.Utilities;
 import cs555.chiba.wireformats.Event;
@@ -38,12 +39,7 @@ public class RegistryNode extends ServiceNode {
          handle((RegisterMessage) event);
       }
       else if (event instanceof RandomWalk) {
-         RandomWalk randomWalkMessage = (RandomWalk) event;
-         if (requests.containsKey(randomWalkMessage.getID())) {
-            this.requests.put(randomWalkMessage.getID(), new ResultMetrics(randomWalkMessage.getID(), 0, 0, 0, 0, 0, "randomWalk"));
-         }
-
-         requests.get(randomWalkMessage.getID()).addResult(randomWalkMessage.getCurrentHop(), randomWalkMessage.getTotalDevicesChecked(), randomWalkMessage.getTotalDevicesWithMetric(), randomWalkMessage.getCurrentHop(), randomWalkMessage.getHopLimit());
+         handle((RandomWalk) event);
       }
       else if (event instanceof GossipQuery) {
          GossipQuery gossipQueryMessage = (GossipQuery) event;
@@ -64,7 +60,12 @@ public class RegistryNode extends ServiceNode {
             this.requests.put(floodMessage.getID(), new ResultMetrics(floodMessage.getID(), 0, 0, 0, 0, 0, "flood"));
          }
 
-         this.requests.get(floodMessage.getID()).addResult(floodMessage.getCurrentHop(), floodMessage.getTotalDevicesChecked(), floodMessage.getTotalDevicesWithMetric(), floodMessage.getCurrentHop(), floodMessage.getHopLimit());
+         ResultMetrics result = this.requests.get(floodMessage.getID());
+         result.addResult(floodMessage.getCurrentHop(), floodMessage.getTotalDevicesChecked(), floodMessage.getTotalDevicesWithMetric(), floodMessage.getCurrentHop(), floodMessage.getHopLimit());
+
+         if (floodMessage.getMode() == Flood.MODE_REPLY) {
+            result.addRingReply(floodMessage.getRing(), floodMessage.getSenderID().getIdentityKey());
+         }
       }
       else if (event instanceof ListPeersResponseMessage) {
          if (this.mapCheck != null) {
@@ -76,6 +77,21 @@ public class RegistryNode extends ServiceNode {
       }
    }
 
+   /**
+    * Walkers report what they've found since their last report.  Check ins are answered with stop once the query has
+    * found the devices it wanted.
+    */
+   private void handle(RandomWalk walk) {
+      ResultMetrics result = this.requests.computeIfAbsent(walk.getID(), id -> new ResultMetrics(id, 0, 0, 0, 0, 0, "randomWalk"));
+      result.addWalkerResult(walk.getWalker(), walk.getCurrentHop(), walk.getTotalDevicesChecked(), walk.getTotalDevicesWithMetric(), walk.getHopLimit());
+
+      if (walk.getMode() == RandomWalk.MODE_CHECK_IN) {
+         boolean found = walk.getWantedDevices() > 0 && result.getTotalNumberOfDevicesWithMetric() >= walk.getWantedDevices();
+         RandomWalk answer = walk.copy(this.getIdentity(), walk.getCurrentHop(), found ? RandomWalk.MODE_STOP : RandomWalk.MODE_CONTINUE);
+         this.getTcpConnectionsCache().sendSingle(walk.getSenderID(), answer.getBytes());
+      }
+   }
+
    public void addRequest(UUID requestId, String type) {
       ResultMetrics resultMetrics = new ResultMetrics(requestId, 0, 0, 0, 0, 0, type);
       requests.put(requestId, resultMetrics);
@@ -93,8 +109,8 @@ public class RegistryNode extends ServiceNode {
       return networkMap;
    }
 
-   public String buildOverlay(int minConnections, int maxConnections) {
-      this.networkMap = new NetworkMap(this.registry.listRegisteredPeers(), minConnections, maxConnections);
+   public String buildOverlay(int minConnections, int maxConnections, Topology topology) {
+      this.networkMap = new NetworkMap(this.registry.listRegisteredPeers(), minConnections, maxConnections, topology);
       return "Successfully Created.  Next step is building the cluster.";
    }
 
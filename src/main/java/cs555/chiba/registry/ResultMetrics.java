@@ -1,6 +1,10 @@
 package cs555.chiba.registry;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 public class ResultMetrics {
@@ -14,6 +18,10 @@ public class ResultMetrics {
     private Date timeQueryStarted;
     private Date timeOfLastReceivedResultMessage;
     private String typeOfQuery;
+    private long resultMessages;
+    private Map<Integer, Integer> walkerHops = new HashMap<>(); // the furthest hop each random walker has reported
+    private String ringCenter; // the identity key of the peer expanding ring replies must come from
+    private Set<Integer> answeredRings = new HashSet<>();
 
     public ResultMetrics(UUID requestId, long totalNumberOfHops, long totalNumberOfDevices, long
             totalNumberOfDevicesWithMetric, long maxHops, long hopLimit, String typeOfQuery) {
@@ -35,6 +43,50 @@ public class ResultMetrics {
         this.maxHops = Math.max(maxHops, this.maxHops);
         this.hopLimit = hopLimit;
         this.timeOfLastReceivedResultMessage = new Date();
+        this.resultMessages++;
+        notifyAll();
+    }
+
+    /**
+     * Expanding ring searches only count a ring as answered when the peer it was sent to replies
+     */
+    public synchronized void setRingCenter(String identityKey) {
+        this.ringCenter = identityKey;
+    }
+
+    /**
+     * A flood reply for one ring.  Late replies from deeper in the ring come from other peers and don't answer it.
+     */
+    public synchronized void addRingReply(int ring, String senderKey) {
+        if (this.ringCenter != null && this.ringCenter.equals(senderKey) && this.answeredRings.add(ring)) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the peer at the center of an expanding ring has replied for the given ring
+     * @return false if the wait timed out first
+     */
+    public synchronized boolean awaitRing(int ring, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+
+        while (!this.answeredRings.contains(ring) && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+
+        return this.answeredRings.contains(ring);
+    }
+
+    /**
+     * Random walkers report more than once, so only the hops walked since the walker's last report are added
+     */
+    public synchronized void addWalkerResult(int walker, int currentHop, int totalNumberOfDevices, int
+            totalNumberOfDevicesWithMetric, int hopLimit) {
+        int lastHop = this.walkerHops.getOrDefault(walker, 0);
+        this.walkerHops.put(walker, Math.max(lastHop, currentHop));
+        addResult(Math.max(0, currentHop - lastHop), totalNumberOfDevices, totalNumberOfDevicesWithMetric, currentHop, hopLimit);
     }
 
     @Override
@@ -47,6 +99,8 @@ public class ResultMetrics {
                 ", timeQueryStarted=" + timeQueryStarted +
                 ", timeOfLastReceivedResultMessage=" + timeOfLastReceivedResultMessage +
                 ", typeOfQuery='" + typeOfQuery + '\'' +
+                ", resultMessages=" + resultMessages +
+                (walkerHops.isEmpty() ? "" : ", walkers=" + walkerHops.size()) +
                 '}';
     }
 
@@ -62,7 +116,7 @@ public class ResultMetrics {
 		return totalNumberOfDevices;
 	}
 	
-	public long getTotalNumberOfDevicesWithMetric() {
+	public synchronized long getTotalNumberOfDevicesWithMetric() {
 		return totalNumberOfDevicesWithMetric;
 	}
 	    
@@ -86,4 +140,8 @@ public class ResultMetrics {
 		return typeOfQuery;
 	}
 
+	public long getResultMessages() {
+		return resultMessages;
+	}
+
 }
@@ -1,14 +1,13 @@
 package cs555.chiba.service;
 
 import cs555.chiba.util.LRUCache.Entry;
-import cs555.chiba.util.Metric;
+import cs555.chiba.util.QueryMetricStore;
 import cs555.chiba.util.Utilities;
 import cs555.chiba.node.Peer;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 import java.util.function.Function;
 import java.util.logging.Logger;
 
@@ -45,6 +44,14 @@ public class Commands {
          logger.info(listConnections());
          return null;
       });
+      this.commands.put("connectionpool", args -> { // hit rate and connect latency for one off messages
+         logger.info(ServiceNode.getThisNode().getTcpConnectionsCache().getConnectionPool().getMetrics());
+         return null;
+      });
+      this.commands.put("dispatch", args -> { // queue depth and handler latency per message type
+         logger.info(ServiceNode.getThisNode().getEventFactory().getDispatcher().getMetrics());
+         return null;
+      });
       this.commands.put("gossipdata", args -> { // print gossip data
           logger.info(gossipData());
           return null;
@@ -60,10 +67,11 @@ public class Commands {
    }
 
    private static String queryMetrics() {
-	      StringBuffer out = new StringBuffer("queryMetrics: \n");
-	      for(Map.Entry<UUID,Metric> e : ((Peer) ServiceNode.getThisNode()).getMetrics().entrySet()) {
-	         out.append(e.getKey()).append(" : ").append(e.getValue().getNumResults()).append(" : ").append(e.getValue().getNumHops()).append("\n");
-	      }
+	      QueryMetricStore metrics = ((Peer) ServiceNode.getThisNode()).getMetrics();
+	      StringBuffer out = new StringBuffer(metrics.describe()).append("\nqueryMetrics: \n");
+	      metrics.forEach((id, metric) -> {
+	         out.append(id).append(" : ").append(metric.getNumResults()).append(" : ").append(metric.getNumHops()).append("\n");
+	      });
 	      return out.toString();
 	   }
    
@@ -10,6 +10,9 @@ import java.net.SocketAddress;
  *
  * Tracking who a connection is connected to requires a few different forms of the same data.  Rather than passing the pieces, this 
  * class maintains all the necessary identity information.
+ *
+ * Identities built from a key, or a host and port, are interned in the IdentityTable.  Building the same one twice
+ * returns the same instance, and the hash is computed once up front.
  */
 public class Identity {
 
@@ -17,12 +20,29 @@ public class Identity {
    private final String host; // host and port used in various messages and command line activites
    private final int port;
    private final InetSocketAddress socketAddress; // can be used to resolve the given id to confirm validity of the identity via dns.  However, that takes too long to do on every Identity object.
+   private final int hash;
 
    Identity(String identityKey, String host, int port, InetSocketAddress socketAddress) {
       this.identityKey = identityKey;
       this.host = host;
       this.port = port;
       this.socketAddress = socketAddress;
+      this.hash = computeHash();
+   }
+
+   /**
+    * The canonical identity for an IPv4 address and port, without building or splitting the key when it's already known
+    * @param address The address, most significant octet first
+    */
+   public static Identity fromIPv4(int address, int port) {
+      Identity identity = IdentityTable.get(address, port);
+
+      if (identity == null) {
+         String host = ((address >>> 24) & 0xff) + "." + ((address >>> 16) & 0xff) + "." + ((address >>> 8) & 0xff) + "." + (address & 0xff);
+         identity = IdentityTable.intern(address, port, builder().withHost(host).withPort(port).build());
+      }
+
+      return identity;
    }
 
    public String getIdentityKey() {
@@ -47,6 +67,10 @@ public class Identity {
 
    @Override
    public int hashCode() {
+      return this.hash;
+   }
+
+   private int computeHash() {
       final int prime = 31;
       int result = 1;
       result = prime * result + ((host == null) ? 0 : host.hashCode());
@@ -151,12 +175,41 @@ public class Identity {
       }
 
       public Identity build() {
+         boolean internable = this.socketAddress == null;
+
+         if (internable) {
+            Identity interned = lookup();
+            if (interned != null) {
+               return interned;
+            }
+         }
+
          fixMissingFields();
          Utilities.checkArgument(!Utilities.isBlank(this.identityKey), "Identity Key cannot be blank");
          Utilities.checkArgument(!Utilities.isBlank(this.host), "Identity Key cannot be blank");
          Utilities.checkArgument(Utilities.parsePort(port) != 0, "Invalid port");
 
-         return new Identity(this.identityKey, this.host, this.port, this.socketAddress);
+         Identity identity = new Identity(this.identityKey, this.host, this.port, this.socketAddress);
+         return internable ? IdentityTable.intern(identity) : identity;
+      }
+
+      /**
+       * Find an already built identity for the key, or the host and port
+       */
+      private Identity lookup() {
+         if (!Utilities.isBlank(this.identityKey)) {
+            Identity found = IdentityTable.get(this.identityKey);
+
+            // a host and port given along with the key still have to agree with it
+            if (found != null && (Utilities.isBlank(this.host) || (found.getHost().equals(this.host) && found.getPort() == this.port))) {
+               return found;
+            }
+         }
+         else if (!Utilities.isBlank(this.host) && this.port != 0) {
+            return IdentityTable.get(this.host + ":" + this.port);
+         }
+
+         return null;
       }
 
       /**
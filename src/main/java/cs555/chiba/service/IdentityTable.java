@@ -0,0 +1,65 @@
+package cs555.chiba.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide table of canonical Identity objects.  Every message names the same few hundred nodes over and over, so
+ * decoding looks the name up here instead of parsing it into a new Identity each time.  Identities from the table are
+ * the same instance every time, which makes them safe to compare by reference.
+ *
+ * Only identities that are fully described by their key are interned.  Ones built from a live socket address carry the
+ * resolved address and are left alone.
+ *
+ * The table is bounded by -Dcsu.identity.table.size.  Once full, new identities are built as usual without being kept.
+ */
+final class IdentityTable {
+
+   static final String SIZE_PROPERTY = "csu.identity.table.size";
+
+   private static final int MAX_ENTRIES = Integer.getInteger(SIZE_PROPERTY, 1 << 16);
+   private static final ConcurrentHashMap<String, Identity> byKey = new ConcurrentHashMap<>();
+   private static final ConcurrentHashMap<Long, Identity> byAddress = new ConcurrentHashMap<>(); // IPv4 address and port packed into a long
+
+   private IdentityTable() {
+   }
+
+   static Identity get(String identityKey) {
+      return byKey.get(identityKey);
+   }
+
+   static Identity get(int address, int port) {
+      return byAddress.get(pack(address, port));
+   }
+
+   /**
+    * Keep the identity unless another thread beat us to it or the table is full
+    * @return The canonical instance
+    */
+   static Identity intern(Identity identity) {
+      if (byKey.size() >= MAX_ENTRIES) {
+         Identity existing = byKey.get(identity.getIdentityKey());
+         return existing != null ? existing : identity;
+      }
+
+      Identity existing = byKey.putIfAbsent(identity.getIdentityKey(), identity);
+      return existing != null ? existing : identity;
+   }
+
+   static Identity intern(int address, int port, Identity identity) {
+      Identity canonical = intern(identity);
+
+      if (canonical == byKey.get(canonical.getIdentityKey()) && byAddress.size() < MAX_ENTRIES) {
+         byAddress.putIfAbsent(pack(address, port), canonical);
+      }
+
+      return canonical;
+   }
+
+   static int size() {
+      return byKey.size();
+   }
+
+   private static long pack(int address, int port) {
+      return ((address & 0xffffffffL) << 16) | (port & 0xffff);
+   }
+}
@@ -1,7 +1,8 @@
 package cs555.chiba.service;
 
+import cs555.chiba.transport.MessageServer;
 import cs555.chiba.transport.TCPConnectionsCache;
-import cs555.chiba.transport.TCPServerThread;
+import cs555.chiba.transport.Transport;
 import cs555.chiba.wireformats.Event;
 import cs555.chiba.wireformats.EventFactory;
 
@@ -19,13 +20,18 @@ import java.util.logging.Logger;
 public abstract class ServiceNode {
 
    private static final Logger logger = Logger.getLogger(ServiceNode.class.getName());
+
+   static final String WALK_SWEEP_PROPERTY = "csu.walk.sweep"; // walker counts compared by the automated experiments
+   static final String RING_WANTED_PROPERTY = "csu.ring.wanted"; // devices the automated expanding ring searches look for
+   static final String WALK_WANTED_PROPERTY = "csu.walk.wanted"; // devices the automated random walks look for, so the walkers check in
+
    private static ServiceNode myself;
    private static Thread commandPromptThread;
 
    private Identity identity; // who am I?
    private EventFactory eventFactory;
    private TCPConnectionsCache connections;
-   private TCPServerThread server;
+   private MessageServer server;
    private Thread serverThread;
    private boolean dead = false;
 
@@ -102,9 +108,10 @@ public abstract class ServiceNode {
    private void startup(int port, Commands commands, String prompt) {
       try {
          myself = this;
-         this.eventFactory = EventFactory.getInstance(this);
-         this.connections = new TCPConnectionsCache();
-         this.server = new TCPServerThread(port, connections, eventFactory);
+         Transport transport = Transport.fromProperties();
+         this.eventFactory = EventFactory.getInstance(this, transport == Transport.NIO);
+         this.connections = new TCPConnectionsCache(transport);
+         this.server = transport.createServer(port, connections, eventFactory);
          this.identity = Identity.builder().withHost(this.server.getAddr().getHostAddress()).withPort(this.server.getPort()).build();
          this.serverThread = new Thread(this.server);
          this.serverThread.start();
@@ -126,16 +133,17 @@ public abstract class ServiceNode {
    private void automatedStartup(int port, Commands commands, int minConnections, int maxConnections, String filename) {
       try {
          myself = this;
-         this.eventFactory = EventFactory.getInstance(this);
-         this.connections = new TCPConnectionsCache();
-         this.server = new TCPServerThread(port, connections, eventFactory);
+         Transport transport = Transport.fromProperties();
+         this.eventFactory = EventFactory.getInstance(this, transport == Transport.NIO);
+         this.connections = new TCPConnectionsCache(transport);
+         this.server = transport.createServer(port, connections, eventFactory);
          this.identity = Identity.builder().withHost(this.server.getAddr().getHostAddress()).withPort(this.server.getPort()).build();
          this.serverThread = new Thread(this.server);
          this.serverThread.start();
          specialStartUp();
          logger.info("Starting up as [" + this.getIdentity().getIdentityKey() + "]");
          int[] maxHops = new int[]{14,13,12,11,10,9,8,7,6,5,4};
-         String[] queryTypes = new String[]{"flood","gossiptype0","gossiptype1","randomwalk"};
+         String[] queryTypes = new String[]{"flood","gossiptype0","gossiptype1","randomwalk","expandingring"};
          synchronized(this) {
         	 this.wait(30000);
 			 logger.info("building overlay");
@@ -147,6 +155,20 @@ public abstract class ServiceNode {
 		     for (int maxHop : maxHops) {
 		        for(int i = 0; i < 6; i++) {
 		           for (String type : queryTypes) {
+		              if (type.equals("randomwalk")) {
+		                 // one walk for each walker count being compared, each stopping early once enough is found
+		                 for (String walkers : System.getProperty(WALK_SWEEP_PROPERTY, "1").split(",")) {
+		                    parseCommand(commands, new String[]{type, "AIR_QUALITY", "" + maxHop, walkers.trim(), Integer.getInteger(WALK_WANTED_PROPERTY, 100).toString()});
+		                    this.wait(500);
+		                 }
+		                 continue;
+		              }
+		              if (type.equals("expandingring")) {
+		                 // grows up to the hop limit the other queries use, stopping early once enough is found
+		                 parseCommand(commands, new String[]{type, "AIR_QUALITY", Integer.getInteger(RING_WANTED_PROPERTY, 100).toString(), "1", "" + maxHop});
+		                 this.wait(500);
+		                 continue;
+		              }
 		              parseCommand(commands, new String[]{type, "AIR_QUALITY", "" + maxHop});
 		              this.wait(500);
 		           }
@@ -0,0 +1,321 @@
+/**
+ * The ConnectionPool keeps outbound sockets for one off messages open so
+ * replies to the originator don't pay for a TCP handshake every time.
+ *
+ * Connections are borrowed exclusively, so two threads never write to the
+ * same socket at once.  Idle connections are kept per destination up to a
+ * bounded total, the least recently used is dropped when the pool is full,
+ * and anything idle for too long is closed by a background sweep.
+ *
+ * Before a pooled socket is reused it is probed with a non-blocking read.
+ * Nobody writes back over these sockets, so anything but "no data" means the
+ * other side has gone away and the socket is replaced.
+ *
+ * -Dcsu.pool.size sets the number of idle connections kept (0 disables pooling)
+ * -Dcsu.pool.idle.ms sets how long an idle connection is kept
+ *
+ * The receiving side closes these connections once they've been idle for twice
+ * that long.  The pool never reuses a connection that old, so the close can't
+ * race a send.
+ */
+package cs555.chiba.transport;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.Utilities;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+public class ConnectionPool implements AutoCloseable {
+
+   private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+   private static final int SIZE_OF_INT = 4;
+
+   static final String SIZE_PROPERTY = "csu.pool.size";
+   static final String IDLE_PROPERTY = "csu.pool.idle.ms";
+
+   private final int maxIdle;
+   private final long idleTimeoutMillis;
+   private final LinkedHashMap<Identity, PooledConnection> idle; // access ordered, so the eldest is the least recently used
+   private final ScheduledExecutorService sweeper;
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder stale = new LongAdder();
+   private final LongAdder evictions = new LongAdder();
+   private final LongAdder connects = new LongAdder();
+   private final LongAdder connectNanos = new LongAdder();
+   private final AtomicLong maxConnectNanos = new AtomicLong();
+
+   public ConnectionPool(int maxIdle, long idleTimeoutMillis) {
+      this.maxIdle = maxIdle;
+      this.idleTimeoutMillis = idleTimeoutMillis;
+      this.idle = new LinkedHashMap<Identity, PooledConnection>(16, 0.75f, true) {
+
+         @Override protected boolean removeEldestEntry(Map.Entry<Identity, PooledConnection> eldest) {
+            if (size() > ConnectionPool.this.maxIdle) {
+               evict(eldest.getValue());
+               return true;
+            }
+            return false;
+         }
+      };
+
+      this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+         Thread thread = new Thread(runnable, "ConnectionPoolSweeper");
+         thread.setDaemon(true);
+         return thread;
+      });
+      long period = Math.max(1, idleTimeoutMillis / 2);
+      this.sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+   }
+
+   public static ConnectionPool fromProperties() {
+      return new ConnectionPool(Integer.getInteger(SIZE_PROPERTY, 64), Long.getLong(IDLE_PROPERTY, 30000L));
+   }
+
+   /**
+    * How long a receiver waits on an inbound connection that never introduced itself before closing it
+    */
+   static long inboundIdleMillis() {
+      return 2 * Long.getLong(IDLE_PROPERTY, 30000L);
+   }
+
+   /**
+    * Write one message to the destination over a pooled connection.  If a reused connection fails, the message is
+    * retried once over a fresh connection.
+    */
+   public void send(Identity identity, byte[] message) throws IOException {
+      PooledConnection connection = borrow(identity);
+
+      try {
+         connection.write(message);
+      }
+      catch (IOException e) {
+         connection.close();
+
+         if (!connection.reused) {
+            throw e;
+         }
+
+         this.stale.increment();
+         connection = connect(identity);
+         connection.write(message);
+      }
+
+      release(identity, connection);
+   }
+
+   private PooledConnection borrow(Identity identity) throws IOException {
+      PooledConnection connection;
+
+      synchronized (this.idle) {
+         connection = this.idle.remove(identity);
+      }
+
+      if (connection != null) {
+         if (connection.isHealthy(this.idleTimeoutMillis)) {
+            this.hits.increment();
+            connection.reused = true;
+            return connection;
+         }
+
+         this.stale.increment();
+         connection.close();
+      }
+
+      this.misses.increment();
+      return connect(identity);
+   }
+
+   private void release(Identity identity, PooledConnection connection) {
+      if (this.maxIdle < 1) {
+         connection.close();
+         return;
+      }
+
+      connection.lastUsed = System.currentTimeMillis();
+      PooledConnection old;
+
+      synchronized (this.idle) {
+         old = this.idle.put(identity, connection);
+      }
+
+      // another thread needed the same destination at the same time, only keep one of them
+      if (old != null && old != connection) {
+         old.close();
+      }
+   }
+
+   private PooledConnection connect(Identity identity) throws IOException {
+      long start = System.nanoTime();
+      SocketChannel channel = SocketChannel.open(new InetSocketAddress(identity.getHost(), identity.getPort()));
+      long elapsed = System.nanoTime() - start;
+
+      this.connects.increment();
+      this.connectNanos.add(elapsed);
+      this.maxConnectNanos.accumulateAndGet(elapsed, Math::max);
+
+      try {
+         channel.socket().setTcpNoDelay(true);
+      }
+      catch (IOException e) {
+         Utilities.closeQuietly(channel);
+         throw e;
+      }
+
+      return new PooledConnection(channel);
+   }
+
+   private void evict(PooledConnection connection) {
+      this.evictions.increment();
+      connection.close();
+   }
+
+   /**
+    * Close everything that hasn't been used within the idle timeout
+    */
+   void evictIdle() {
+      long cutoff = System.currentTimeMillis() - this.idleTimeoutMillis;
+      List<PooledConnection> expired = new ArrayList<>();
+
+      synchronized (this.idle) {
+         Iterator<PooledConnection> it = this.idle.values().iterator();
+         while (it.hasNext()) {
+            PooledConnection connection = it.next();
+            if (connection.lastUsed > cutoff) {
+               break; // access ordered, everything after this was used more recently
+            }
+            it.remove();
+            expired.add(connection);
+         }
+      }
+
+      expired.forEach(this::evict);
+   }
+
+   public int size() {
+      synchronized (this.idle) {
+         return this.idle.size();
+      }
+   }
+
+   long getHits() {
+      return this.hits.sum();
+   }
+
+   long getStale() {
+      return this.stale.sum();
+   }
+
+   long getEvictions() {
+      return this.evictions.sum();
+   }
+
+   long getConnects() {
+      return this.connects.sum();
+   }
+
+   /**
+    * The idle connection kept for a destination, or null.  It stays in the pool.
+    */
+   SocketChannel peekIdle(Identity identity) {
+      synchronized (this.idle) {
+         PooledConnection connection = this.idle.get(identity);
+         return connection == null ? null : connection.channel;
+      }
+   }
+
+   public String getMetrics() {
+      long hit = this.hits.sum();
+      long miss = this.misses.sum();
+      long connected = this.connects.sum();
+      double hitRate = hit + miss == 0 ? 0 : (double) hit / (hit + miss);
+      double avgConnect = connected == 0 ? 0 : this.connectNanos.sum() / (double) connected / 1000000.0;
+
+      StringBuilder out = new StringBuilder("Connection Pool: \n");
+      out.append("idle connections: ").append(size()).append(" of ").append(this.maxIdle).append("\n");
+      out.append("hits: ").append(hit).append("  misses: ").append(miss).append(String.format("  hit rate: %.3f", hitRate)).append("\n");
+      out.append("stale: ").append(this.stale.sum()).append("  evictions: ").append(this.evictions.sum()).append("\n");
+      out.append("connects: ").append(connected).append(String.format("  avg connect ms: %.3f  max connect ms: %.3f", avgConnect, this.maxConnectNanos.get() / 1000000.0));
+      return out.toString();
+   }
+
+   @Override public void close() {
+      this.sweeper.shutdownNow();
+      List<PooledConnection> all;
+
+      synchronized (this.idle) {
+         all = new ArrayList<>(this.idle.values());
+         this.idle.clear();
+      }
+
+      all.forEach(PooledConnection::close);
+   }
+
+   private static class PooledConnection implements AutoCloseable {
+
+      private final SocketChannel channel;
+      private final ByteBuffer probe = ByteBuffer.allocate(1);
+      private long lastUsed = System.currentTimeMillis();
+      private boolean reused = false;
+
+      PooledConnection(SocketChannel channel) {
+         this.channel = channel;
+      }
+
+      void write(byte[] message) throws IOException {
+         ByteBuffer framed = ByteBuffer.allocate(SIZE_OF_INT + message.length);
+         framed.putInt(message.length);
+         framed.put(message);
+         framed.flip();
+
+         while (framed.hasRemaining()) {
+            this.channel.write(framed);
+         }
+      }
+
+      /**
+       * The connection is usable if it hasn't sat idle too long and a non-blocking read finds nothing waiting.  A read
+       * of -1 means the other side closed the socket.
+       */
+      boolean isHealthy(long idleTimeoutMillis) {
+         if (!this.channel.isOpen() || !this.channel.isConnected()) {
+            return false;
+         }
+
+         if (System.currentTimeMillis() - this.lastUsed > idleTimeoutMillis) {
+            return false;
+         }
+
+         try {
+            this.channel.configureBlocking(false);
+            this.probe.clear();
+            int read = this.channel.read(this.probe);
+            this.channel.configureBlocking(true);
+            return read == 0;
+         }
+         catch (IOException e) {
+            logger.fine("Pooled connection failed its health check: " + e.getMessage());
+            return false;
+         }
+      }
+
+      @Override public void close() {
+         Utilities.closeQuietly(this.channel);
+      }
+   }
+}
@@ -0,0 +1,39 @@
+/**
+ * A MessageReceiver reads length prefixed messages off a single connection
+ * and hands them to the EventFactory.
+ */
+package cs555.chiba.transport;
+
+import cs555.chiba.service.Identity;
+
+import java.io.IOException;
+import java.net.Socket;
+
+public interface MessageReceiver extends AutoCloseable {
+
+   /**
+    * Start reading from the connection.  Calling this on a receiver that is already running does nothing.
+    */
+   void start();
+
+   /**
+    * Close an inbound connection that sits idle for this long before introducing itself.  These are the one off
+    * connections other nodes keep in their ConnectionPool, and nothing else would ever close them on this side.
+    */
+   void closeWhenIdle(long idleMillis);
+
+   /**
+    * Name the connection after an IntroductionMessage.  Introduced connections are never closed for being idle.
+    */
+   void setIdentity(Identity identity);
+
+   Socket getSocket();
+
+   /**
+    * Build a sender that writes back over the same connection.  Used once an IntroductionMessage tells us who is on the
+    * other end of an inbound socket.
+    */
+   MessageSender createSender() throws IOException;
+
+   @Override void close();
+}
@@ -0,0 +1,26 @@
+/**
+ * A MessageSender delivers serialized messages over a single connection.
+ * The TCP transport backs this with a dedicated thread per socket, the NIO
+ * transport with a write queue drained by a selector loop.
+ */
+package cs555.chiba.transport;
+
+import cs555.chiba.service.Identity;
+
+public interface MessageSender extends AutoCloseable {
+
+   /**
+    * Start delivering queued messages.  Calling this on a sender that is already running does nothing.
+    */
+   void start();
+
+   /**
+    * Add a message to the queue of messages waiting to be sent
+    * @param message The serialized message
+    */
+   void addMessage(byte[] message);
+
+   Identity getIdentity();
+
+   @Override void close();
+}
@@ -0,0 +1,16 @@
+/**
+ * A MessageServer owns the listening socket and hands new inbound
+ * connections to the TCPConnectionsCache.
+ */
+package cs555.chiba.transport;
+
+import java.net.InetAddress;
+
+public interface MessageServer extends Runnable, AutoCloseable {
+
+   int getPort();
+
+   InetAddress getAddr();
+
+   @Override void close();
+}
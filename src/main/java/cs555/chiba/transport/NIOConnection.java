@@ -0,0 +1,321 @@
+/**
+ * The NIOConnection is one non-blocking socket owned by a NIOSelectorLoop.
+ * It is both the receiver and the sender for the connection, so no threads
+ * are created per socket.
+ *
+ * Framing matches the TCP transport: an integer message size followed by the
+ * serialized message.  Queued messages are flushed together with one
+ * gathering write, up to -Dcsu.sender.batch messages at a time.
+ *
+ * Messages are handed to the EventDispatcher without blocking the loop.  When
+ * a message's type is backed up, the connection stops reading until the
+ * dispatcher has room, and the other connections on the loop carry on.
+ */
+package cs555.chiba.transport;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.service.ServiceNode;
+import cs555.chiba.util.Utilities;
+import cs555.chiba.wireformats.EventFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class NIOConnection implements MessageSender, MessageReceiver {
+
+   /**
+    * Takes each whole message read off the connection, the EventFactory outside of the tests
+    */
+   interface Handler {
+
+      /**
+       * @return false if the message can't be taken yet, onFree is run once there's room
+       */
+      boolean tryProcessMessage(byte[] message, Socket socket, Runnable onFree) throws IOException;
+   }
+
+   private static final Logger logger = Logger.getLogger(NIOConnection.class.getName());
+   private static final int SIZE_OF_INT = 4;
+   static final int MAX_MESSAGE_SIZE = 64 << 20; // anything bigger is a corrupt header, not a message
+
+   private final SocketChannel channel;
+   private final NIOSelectorLoop loop;
+   private final Handler handler;
+   private final ByteBuffer header = ByteBuffer.allocate(SIZE_OF_INT);
+   private final Queue<ByteBuffer> messageQueue = new ConcurrentLinkedQueue<>();
+   private final AtomicBoolean started = new AtomicBoolean(false);
+   private final AtomicBoolean closed = new AtomicBoolean(false);
+   private ByteBuffer body; // the message currently being read, only touched by the loop
+   private byte[] paused; // a message the dispatcher had no room for, reading stops until it's taken, only touched by the loop
+   private final ByteBuffer[] batch; // messages being written, only touched by the loop
+   private int batchStart = 0;
+   private int batchEnd = 0;
+   private SelectionKey key;
+   private volatile Identity identity;
+   private volatile long idleMillis = 0; // 0 never closes for being idle
+   private volatile long lastRead = System.currentTimeMillis();
+
+   NIOConnection(SocketChannel channel, NIOSelectorLoop loop, EventFactory factory) throws IOException {
+      this(channel, loop, factory::tryProcessMessage);
+   }
+
+   NIOConnection(SocketChannel channel, NIOSelectorLoop loop, Handler handler) throws IOException {
+      this.channel = channel;
+      this.loop = loop;
+      this.handler = handler;
+      this.batch = new ByteBuffer[Math.max(1, Integer.getInteger(TCPSender.BATCH_PROPERTY, TCPSender.DEFAULT_BATCH))];
+      this.channel.configureBlocking(false);
+      this.identity = Identity.builder().withSocketAddress(channel.getRemoteAddress()).build();
+   }
+
+   /**
+    * Open an outbound connection.  The connect itself blocks so failures are reported to the caller, the same as
+    * creating a Socket for the TCP transport.
+    */
+   static NIOConnection connect(Identity ident, NIOSelectorLoop loop, EventFactory factory) throws IOException {
+      SocketChannel channel = SocketChannel.open(new InetSocketAddress(ident.getHost(), ident.getPort()));
+
+      try {
+         channel.socket().setTcpNoDelay(true);
+         return new NIOConnection(channel, loop, factory);
+      }
+      catch (IOException e) {
+         Utilities.closeQuietly(channel);
+         throw e;
+      }
+   }
+
+   @Override public void start() {
+      if (this.started.compareAndSet(false, true)) {
+         this.loop.register(this);
+      }
+   }
+
+   @Override public void addMessage(byte[] message) {
+      ByteBuffer framed = ByteBuffer.allocate(SIZE_OF_INT + message.length);
+      framed.putInt(message.length);
+      framed.put(message);
+      framed.flip();
+      this.messageQueue.add(framed);
+      this.loop.requestWrite(this);
+   }
+
+   /**
+    * Read as many whole messages as the socket has available.  Called from the loop when the channel is readable.
+    */
+   void read() throws IOException {
+      while (!this.closed.get() && this.paused == null) {
+         if (this.body == null) {
+            int read = this.channel.read(this.header);
+            if (read < 0) {
+               remoteClosed();
+               return;
+            }
+            if (read > 0) {
+               this.lastRead = System.currentTimeMillis();
+            }
+
+            if (this.header.hasRemaining()) {
+               return; // wait for the rest of the size
+            }
+
+            this.header.flip();
+            int size = this.header.getInt();
+            this.header.clear();
+
+            if (size < 0 || size > MAX_MESSAGE_SIZE) {
+               throw new IOException("Bad message size [" + size + "]"); // the loop fails this connection alone
+            }
+            this.body = ByteBuffer.allocate(size);
+         }
+
+         if (this.channel.read(this.body) < 0) {
+            remoteClosed();
+            return;
+         }
+
+         if (this.body.hasRemaining()) {
+            return; // wait for the rest of the message
+         }
+
+         byte[] message = this.body.array();
+         this.body = null;
+
+         if (!this.handler.tryProcessMessage(message, this.channel.socket(), this::slotFreed)) {
+            this.paused = message;
+            setReading(false);
+         }
+      }
+   }
+
+   /**
+    * Called from a dispatcher worker, the retry belongs on the loop
+    */
+   private void slotFreed() {
+      this.loop.execute(this::resume);
+   }
+
+   /**
+    * Offer the paused message again and start reading if it's taken
+    */
+   private void resume() {
+      if (this.paused == null || this.closed.get()) {
+         return;
+      }
+
+      try {
+         if (this.handler.tryProcessMessage(this.paused, this.channel.socket(), this::slotFreed)) {
+            this.paused = null;
+            setReading(true);
+         }
+      }
+      catch (Exception e) {
+         failed(e);
+      }
+   }
+
+   /**
+    * Write queued messages until the queue is empty or the socket buffer is full.  Called from the loop when the
+    * channel is writable.
+    */
+   void flush() throws IOException {
+      while (true) {
+         if (this.batchStart == this.batchEnd && !fillBatch()) {
+            break;
+         }
+
+         this.channel.write(this.batch, this.batchStart, this.batchEnd - this.batchStart);
+
+         while (this.batchStart < this.batchEnd && !this.batch[this.batchStart].hasRemaining()) {
+            this.batch[this.batchStart++] = null;
+         }
+
+         if (this.batchStart < this.batchEnd) {
+            return; // the socket is full, stay interested in writes
+         }
+      }
+
+      // anything queued after this point schedules another requestWrite on the loop
+      updateInterest(false);
+   }
+
+   private boolean fillBatch() {
+      this.batchStart = 0;
+      this.batchEnd = 0;
+      ByteBuffer next;
+
+      while (this.batchEnd < this.batch.length && (next = this.messageQueue.poll()) != null) {
+         this.batch[this.batchEnd++] = next;
+      }
+
+      return this.batchEnd > 0;
+   }
+
+   void enableWrite() {
+      updateInterest(true);
+   }
+
+   /**
+    * Reads are watched unless a message is paused, writes only when asked
+    */
+   private void updateInterest(boolean write) {
+      if (this.key != null && this.key.isValid()) {
+         this.key.interestOps((this.paused == null ? SelectionKey.OP_READ : 0) | (write ? SelectionKey.OP_WRITE : 0));
+      }
+   }
+
+   /**
+    * Start or stop watching for reads, leaving writes alone
+    */
+   private void setReading(boolean reading) {
+      if (this.key != null && this.key.isValid()) {
+         this.key.interestOps(reading ? this.key.interestOps() | SelectionKey.OP_READ : this.key.interestOps() & ~SelectionKey.OP_READ);
+      }
+   }
+
+   int interestOps() {
+      return this.messageQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+   }
+
+   void setKey(SelectionKey key) {
+      this.key = key;
+   }
+
+   SocketChannel getChannel() {
+      return this.channel;
+   }
+
+   private void remoteClosed() {
+      logger.severe("The NIO connection on [" + this.identity.getIdentityKey() + "] has been closed remotely");
+      close();
+   }
+
+   void failed(Exception e) {
+      if (!this.closed.get()) {
+         logger.log(Level.SEVERE, "NIOConnection failed [" + this.identity.getIdentityKey() + "] ", e);
+      }
+      close();
+   }
+
+   @Override public void close() {
+      if (!this.closed.compareAndSet(false, true)) {
+         return;
+      }
+
+      if (this.key != null) {
+         this.key.cancel();
+      }
+      Utilities.closeQuietly(this.channel);
+      this.messageQueue.clear();
+
+      ServiceNode node = ServiceNode.getThisNode();
+      if (node != null) { // there's no node in the transport tests
+         node.removeConnection(this.identity);
+      }
+      logger.info("NIOConnection Closed [" + this.identity.getIdentityKey() + "]");
+   }
+
+   @Override public void closeWhenIdle(long idleMillis) {
+      this.idleMillis = idleMillis;
+   }
+
+   boolean isClosed() {
+      return this.closed.get();
+   }
+
+   /**
+    * Checked by the loop now and then
+    */
+   boolean isIdle(long now) {
+      return this.idleMillis > 0 && this.paused == null && now - this.lastRead > this.idleMillis;
+   }
+
+   @Override public void setIdentity(Identity identity) {
+      this.identity = identity;
+      this.idleMillis = 0; // introduced connections stay open
+   }
+
+   @Override public Identity getIdentity() {
+      return this.identity;
+   }
+
+   @Override public Socket getSocket() {
+      return this.channel.socket();
+   }
+
+   /**
+    * Reads and writes share the channel, so the connection is its own sender.
+    */
+   @Override public MessageSender createSender() {
+      return this;
+   }
+}
@@ -0,0 +1,145 @@
+/**
+ * The NIOSelectorLoop runs a single Selector over many non-blocking
+ * connections.  Other threads never touch the selector directly; they queue
+ * tasks that the loop runs between selects.  About once a second it also
+ * closes inbound connections that have sat idle without introducing themselves.
+ */
+package cs555.chiba.transport;
+
+import cs555.chiba.util.Utilities;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+class NIOSelectorLoop implements Runnable, AutoCloseable {
+
+   private static final Logger logger = Logger.getLogger(NIOSelectorLoop.class.getName());
+   private static final long SWEEP_MILLIS = 1000;
+
+   private final Selector selector;
+   private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+   private final String name;
+   private volatile boolean dead = false;
+   private long lastSweep = System.currentTimeMillis();
+
+   NIOSelectorLoop(String name) throws IOException {
+      this.selector = Selector.open();
+      this.name = name;
+   }
+
+   void start() {
+      Thread thread = new Thread(this, this.name);
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   /**
+    * Register the connection with this loop.  The connection starts out interested in reads, and in writes if it
+    * already has something queued.
+    */
+   void register(NIOConnection connection) {
+      execute(() -> {
+         try {
+            SelectionKey key = connection.getChannel().register(this.selector, connection.interestOps(), connection);
+            connection.setKey(key);
+         }
+         catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to register [" + connection.getIdentity().getIdentityKey() + "]", e);
+            connection.close();
+         }
+      });
+   }
+
+   /**
+    * Ask the loop to start watching the connection for write readiness
+    */
+   void requestWrite(NIOConnection connection) {
+      execute(connection::enableWrite);
+   }
+
+   void execute(Runnable task) {
+      this.tasks.add(task);
+      this.selector.wakeup();
+   }
+
+   public void run() {
+      while (!Thread.currentThread().isInterrupted() && !this.dead) {
+         try {
+            this.selector.select(SWEEP_MILLIS);
+            runTasks();
+            processSelectedKeys();
+            closeIdle();
+         }
+         catch (Exception e) {
+            if (!this.dead) {
+               logger.log(Level.SEVERE, "NIOSelectorLoop.run() ", e);
+            }
+         }
+      }
+      closeSelector();
+      logger.info("NIOSelectorLoop Closed [" + this.name + "]");
+   }
+
+   private void runTasks() {
+      Runnable task;
+      while ((task = this.tasks.poll()) != null) {
+         task.run();
+      }
+   }
+
+   private void processSelectedKeys() {
+      Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+         SelectionKey key = keys.next();
+         keys.remove();
+         NIOConnection connection = (NIOConnection) key.attachment();
+
+         try {
+            if (key.isValid() && key.isReadable()) {
+               connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+               connection.flush();
+            }
+         }
+         catch (Exception e) {
+            connection.failed(e);
+         }
+      }
+   }
+
+   private void closeIdle() {
+      long now = System.currentTimeMillis();
+      if (now - this.lastSweep < SWEEP_MILLIS) {
+         return;
+      }
+      this.lastSweep = now;
+
+      for (SelectionKey key : new ArrayList<>(this.selector.keys())) {
+         NIOConnection connection = (NIOConnection) key.attachment();
+         if (connection.isIdle(now)) {
+            logger.fine("Closing idle inbound connection [" + connection.getIdentity().getIdentityKey() + "]");
+            connection.close();
+         }
+      }
+   }
+
+   private void closeSelector() {
+      for (SelectionKey key : new ArrayList<>(this.selector.keys())) {
+         Utilities.closeQuietly((NIOConnection) key.attachment());
+      }
+      Utilities.closeQuietly(this.selector);
+   }
+
+   @Override public void close() {
+      this.dead = true;
+      this.selector.wakeup();
+   }
+}
@@ -0,0 +1,45 @@
+/**
+ * The NIOSelectorPool holds the selector loops for the NIO transport and
+ * spreads new connections across them round robin.
+ *
+ * The number of loops is set with -Dcsu.nio.loops and defaults to 1, which is
+ * plenty for a peer with a few dozen neighbors.
+ */
+package cs555.chiba.transport;
+
+import cs555.chiba.util.Utilities;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class NIOSelectorPool implements AutoCloseable {
+
+   static final String LOOPS_PROPERTY = "csu.nio.loops";
+
+   private final NIOSelectorLoop[] loops;
+   private final AtomicInteger next = new AtomicInteger();
+
+   NIOSelectorPool(int size) throws IOException {
+      Utilities.checkArgument(size > 0, "The selector pool needs at least one loop [" + size + "]");
+      this.loops = new NIOSelectorLoop[size];
+
+      for (int i = 0; i < size; i++) {
+         this.loops[i] = new NIOSelectorLoop("NIOSelectorLoop-" + i);
+         this.loops[i].start();
+      }
+   }
+
+   static NIOSelectorPool fromProperties() throws IOException {
+      return new NIOSelectorPool(Integer.getInteger(LOOPS_PROPERTY, 1));
+   }
+
+   NIOSelectorLoop next() {
+      return this.loops[Math.floorMod(this.next.getAndIncrement(), this.loops.length)];
+   }
+
+   @Override public void close() {
+      for (NIOSelectorLoop loop : this.loops) {
+         loop.close();
+      }
+   }
+}
@@ -0,0 +1,83 @@
+/**
+ * The NIOServerThread accepts inbound connections for the NIO transport and
+ * hands each one to a selector loop instead of starting a receiver thread.
+ */
+package cs555.chiba.transport;
+
+import cs555.chiba.wireformats.EventFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class NIOServerThread implements MessageServer {
+
+   private static final Logger logger = Logger.getLogger(NIOServerThread.class.getName());
+
+   private ServerSocketChannel server;
+   private TCPConnectionsCache connections;
+   private EventFactory factory;
+   private int port;
+   private InetAddress addr;
+   private volatile boolean dead = false;
+
+   public NIOServerThread(int port, TCPConnectionsCache connections, EventFactory factory) {
+      try {
+         this.server = ServerSocketChannel.open();
+         this.server.bind(new InetSocketAddress(port));
+         this.addr = InetAddress.getLocalHost();
+         this.port = this.server.socket().getLocalPort();
+      }
+      catch (IOException e) {
+         logger.log(Level.SEVERE, "NIOServerThread() ", e);
+      }
+      this.connections = connections;
+      this.factory = factory;
+   }
+
+   public void run() {
+      while (!Thread.currentThread().isInterrupted() && !this.dead) {
+         try {
+            // accept blocks on this thread, the accepted channel is switched to non-blocking for its selector loop
+            SocketChannel channel = this.server.accept();
+            NIOConnection connection = new NIOConnection(channel, this.connections.getSelectorPool().next(), this.factory);
+            connection.closeWhenIdle(ConnectionPool.inboundIdleMillis()); // until it introduces itself
+            // the sender side of this is registered after the introduction message is received
+            this.connections.addReceiver(connection.getIdentity(), connection);
+         }
+         catch (Exception e) {
+            if (!this.dead) {
+               logger.log(Level.SEVERE, "NIOServerThread.run() ", e);
+            }
+         }
+      }
+      close();
+      logger.info("NIOServerThread Closed");
+   }
+
+   /**
+    * Close the ServerSocketChannel
+    */
+   @Override public void close() {
+      try {
+         this.dead = true;
+         this.server.close();
+         this.connections.close();
+      }
+      catch (IOException e) {
+         logger.log(Level.SEVERE, "Failed to Close", e);
+      }
+   }
+
+   @Override public int getPort() {
+      return this.port;
+   }
+
+   @Override public InetAddress getAddr() {
+      return this.addr;
+   }
+}
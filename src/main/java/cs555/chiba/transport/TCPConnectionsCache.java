@@ -1,5 +1,6 @@
 /**
- * The TCPConnectionsCache stores references to all the sender/receiver threads.
+ * The TCPConnectionsCache stores references to all the senders/receivers
+ * for the Transport the node was started with.
  * It also contains utilities for sending messages.
  *
  * @author Kevin Bruhwiler
@@ -29,19 +30,26 @@ public class TCPConnectionsCache implements AutoCloseable {
 
    private static final Logger logger = Logger.getLogger(TCPConnectionsCache.class.getName());
 
-   private ConcurrentHashMap<Identity, TCPReceiverThread> receiverThreads = new ConcurrentHashMap<>();
-   private ConcurrentHashMap<Identity, TCPSender> senders = new ConcurrentHashMap<>();
+   private ConcurrentHashMap<Identity, MessageReceiver> receiverThreads = new ConcurrentHashMap<>();
+   private ConcurrentHashMap<Identity, MessageSender> senders = new ConcurrentHashMap<>();
+   private final Transport transport;
+   private NIOSelectorPool selectorPool; // only used by the NIO transport
+   private ConnectionPool connectionPool; // only created once something is sent with sendSingle
 
    public TCPConnectionsCache() {
+      this(Transport.TCP);
+   }
+
+   public TCPConnectionsCache(Transport transport) {
+      this.transport = transport;
    }
 
    /**
-    * Adds a receiver thread to the cache
+    * Adds a receiver to the cache and starts it reading
     */
-   void addReceiverThread(Identity ident, TCPReceiverThread receiver) {
-      Thread receiverThread = new Thread(receiver);
-      receiverThread.start();
-      TCPReceiverThread old = this.receiverThreads.putIfAbsent(ident, receiver);
+   void addReceiver(Identity ident, MessageReceiver receiver) {
+      receiver.start();
+      MessageReceiver old = this.receiverThreads.putIfAbsent(ident, receiver);
 
       if (old != null) {
          old.close();
@@ -49,20 +57,30 @@ public class TCPConnectionsCache implements AutoCloseable {
    }
 
    public void addConnection(Identity ident, EventFactory factory) {
-      Socket sock = null;
-
-      TCPSender node = this.senders.get(ident);
+      MessageSender node = this.senders.get(ident);
 
       if (node != null) {
          logger.info("Already connected to [" + ident.getIdentityKey() + "]");
          return;
       }
 
+      switch (this.transport) {
+         case NIO:
+            addNIOConnection(ident, factory);
+            break;
+         default:
+            addTCPConnection(ident, factory);
+      }
+   }
+
+   private void addTCPConnection(Identity ident, EventFactory factory) {
+      Socket sock = null;
+
       try {
          sock = new Socket(ident.getHost(), ident.getPort());
          TCPSender sender = new TCPSender(sock);
          addSender(sender, ident);
-         addReceiverThread(ident, new TCPReceiverThread(sock, factory));
+         addReceiver(ident, new TCPReceiverThread(sock, factory));
          IntroductionMessage message = new IntroductionMessage(ServiceNode.getThisNode().getIdentity());
          sender.sendMessage(message.getBytes());
       }
@@ -72,14 +90,49 @@ public class TCPConnectionsCache implements AutoCloseable {
       }
    }
 
+   private void addNIOConnection(Identity ident, EventFactory factory) {
+      try {
+         NIOConnection connection = NIOConnection.connect(ident, getSelectorPool().next(), factory);
+         // queue the introduction first so it is always the first thing the other side reads
+         IntroductionMessage message = new IntroductionMessage(ServiceNode.getThisNode().getIdentity());
+         connection.addMessage(message.getBytes());
+         addSender(connection, ident);
+         addReceiver(ident, connection);
+      }
+      catch (IOException e) {
+         logger.log(Level.SEVERE, "Failed to add connection to [" + ident.getIdentityKey() + "]", e);
+      }
+   }
+
+   /**
+    * The selector loops are only started the first time an NIO connection needs one
+    */
+   synchronized NIOSelectorPool getSelectorPool() throws IOException {
+      if (this.selectorPool == null) {
+         this.selectorPool = NIOSelectorPool.fromProperties();
+      }
+
+      return this.selectorPool;
+   }
+
+   /**
+    * The pool of sockets for one off messages
+    */
+   public synchronized ConnectionPool getConnectionPool() {
+      if (this.connectionPool == null) {
+         this.connectionPool = ConnectionPool.fromProperties();
+      }
+
+      return this.connectionPool;
+   }
+
    /**
     * Adds a sender to the cache with the default ID
     * @param sender A reference to the sender object
     */
-   public void addSender(TCPSender sender, Identity ident) {
-      Thread senderThread = new Thread(sender);
-      senderThread.start();
-      TCPSender old = senders.putIfAbsent(ident, sender);
+   public void addSender(MessageSender sender, Identity ident) {
+      sender.start();
+      MessageSender old = senders.putIfAbsent(ident, sender);
 
       if (old != null) {
          old.close();
@@ -90,10 +143,10 @@ public class TCPConnectionsCache implements AutoCloseable {
     * Convenience to get a random sender from the cache
     * @returns TCPsender A random sender
     */
-   public TCPSender getRandomSender() {
+   public MessageSender getRandomSender() {
       Random generator = new Random();
       Object[] values = senders.values().toArray();
-      return (TCPSender) values[generator.nextInt(values.length)];
+      return (MessageSender) values[generator.nextInt(values.length)];
    }
 
    /**
@@ -123,24 +176,16 @@ public class TCPConnectionsCache implements AutoCloseable {
 
    /**
     * Send a one off message to a peer.
-    * This is builds and tears down a socket per message.
-    * Do not use outside of registry communication.
+    * The socket is borrowed from the connection pool, so repeated messages to the same node reuse a connection.
+    * Do not use for neighbors, they already have a sender.
     */
    public void sendSingle(Identity identity, byte[] message) {
-      Socket sock = null;
-
       try {
-         sock = new Socket(identity.getHost(), identity.getPort());
-         TCPSender sender = new TCPSender(sock);
-         sender.sendMessage(message);
-         sender.close();
+         getConnectionPool().send(identity, message);
       }
       catch (Exception e) {
          logger.log(Level.SEVERE, "Failed to send message to [" + identity.getIdentityKey() + "]", e);
       }
-      finally {
-         Utilities.closeQuietly(sock);
-      }
    }
 
    /**
@@ -159,14 +204,14 @@ public class TCPConnectionsCache implements AutoCloseable {
    public void sendToRandom(byte[] message, Identity exclude) {
       Random generator = new Random();
 
-      ConcurrentHashMap<Identity, TCPSender> clonedListOfSenders = new ConcurrentHashMap<>(this.senders);
+      ConcurrentHashMap<Identity, MessageSender> clonedListOfSenders = new ConcurrentHashMap<>(this.senders);
       clonedListOfSenders.remove(exclude);
 
       Object[] keys = clonedListOfSenders.keySet().toArray();
 
       Identity key = (Identity) keys[generator.nextInt(keys.length)];
 
-      TCPSender randomSender = senders.get(key);
+      MessageSender randomSender = senders.get(key);
 
       randomSender.addMessage(message);
    }
@@ -214,8 +259,13 @@ public class TCPConnectionsCache implements AutoCloseable {
    }
 
    @Override public void close() {
-      this.receiverThreads.values().forEach(TCPReceiverThread::close);
-      this.senders.values().forEach(TCPSender::close);
+      this.receiverThreads.values().forEach(MessageReceiver::close);
+      this.senders.values().forEach(MessageSender::close);
+
+      synchronized (this) {
+         Utilities.closeQuietly(this.selectorPool);
+         Utilities.closeQuietly(this.connectionPool);
+      }
    }
 
    /**
@@ -227,11 +277,10 @@ public class TCPConnectionsCache implements AutoCloseable {
     */
    public void correctIdentity(Identity wrongIdent, Identity identity) {
       try {
-         TCPReceiverThread receiver = this.receiverThreads.remove(wrongIdent);
+         MessageReceiver receiver = this.receiverThreads.remove(wrongIdent);
          receiver.setIdentity(identity);
          this.receiverThreads.put(identity, receiver);
-         TCPSender sender = new TCPSender(receiver.getSocket());
-         addSender(sender, identity);
+         addSender(receiver.createSender(), identity);
       }
       catch (IOException e) {
          logger.log(Level.SEVERE, "Failed to correct socket labels.  We may have duplicate connections. Wrong Label [" + wrongIdent.getIdentityKey() + "] Right Label [" + identity.getIdentityKey() + "]");
@@ -17,10 +17,12 @@ import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class TCPReceiverThread implements Runnable, AutoCloseable {
+public class TCPReceiverThread implements Runnable, MessageReceiver {
 
    private static final Logger logger = Logger.getLogger(TCPReceiverThread.class.getName());
 
@@ -29,6 +31,8 @@ public class TCPReceiverThread implements Runnable, AutoCloseable {
    private EventFactory factory;
    private Identity identity;
    private boolean dead = false;
+   private boolean started = false;
+   private volatile boolean introduced = false;
 
    public TCPReceiverThread(Socket socket, EventFactory factory) throws IOException {
       this.socket = socket;
@@ -37,6 +41,13 @@ public class TCPReceiverThread implements Runnable, AutoCloseable {
       this.identity = Identity.builder().withSocketAddress(socket.getRemoteSocketAddress()).build();
    }
 
+   @Override public synchronized void start() {
+      if (!this.started) {
+         this.started = true;
+         new Thread(this).start();
+      }
+   }
+
    public void run() {
       int size;
       while (!Thread.currentThread().isInterrupted() && !this.dead) {
@@ -49,6 +60,13 @@ public class TCPReceiverThread implements Runnable, AutoCloseable {
             //Send the serialized message to be processed
             factory.processMessage(response, socket);
          }
+         catch (SocketTimeoutException e) {
+            if (this.introduced) {
+               continue; // the timeout was set before the introduction arrived
+            }
+            logger.fine("Closing idle inbound connection [" + this.identity.getIdentityKey() + "]");
+            break;
+         }
          catch (EOFException e) {
             logger.severe("The Tcp Connection input stream on [" + this.identity.getIdentityKey() + "] has been closed remotely");
             break;
@@ -73,11 +91,29 @@ public class TCPReceiverThread implements Runnable, AutoCloseable {
       ServiceNode.getThisNode().removeConnection(this.identity);
    }
 
-   public void setIdentity(Identity identity) {
+   @Override public void closeWhenIdle(long idleMillis) {
+      try {
+         this.socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleMillis));
+      }
+      catch (SocketException e) {
+         logger.log(Level.WARNING, "Unable to set an idle timeout on [" + this.identity.getIdentityKey() + "]", e);
+      }
+   }
+
+   @Override public void setIdentity(Identity identity) {
       this.identity = identity;
+      this.introduced = true;
+      closeWhenIdle(0); // introduced connections stay open
    }
 
-   public Socket getSocket() {
+   @Override public Socket getSocket() {
       return this.socket;
    }
+
+   /**
+    * Blocking sockets need their own sender thread for the write side
+    */
+   @Override public MessageSender createSender() throws IOException {
+      return new TCPSender(this.socket);
+   }
 }
\ No newline at end of file
@@ -2,6 +2,11 @@
  * The TCPSender holds a TCP socket and sends messages
  * held in a LinkedBlockingQueue.
  *
+ * Queued messages are sent in batches.  Everything waiting in the queue is
+ * framed into one reusable buffer and written with a single write and flush.
+ * -Dcsu.sender.batch caps the messages per batch and -Dcsu.sender.linger.ms
+ * lets the sender wait briefly for a batch to fill (0, the default, never waits).
+ *
  * @author Kevin Bruhwiler
  * @version 1.0
  * @since 2019-06-11
@@ -16,33 +21,57 @@ import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class TCPSender implements Runnable, AutoCloseable {
+public class TCPSender implements Runnable, MessageSender {
 
    private static final Logger logger = Logger.getLogger(TCPSender.class.getName());
    private static final byte[] STOP = "STOP".getBytes();
+   private static final int SIZE_OF_INT = 4;
+   private static final int MAX_RETAINED_BUFFER = 1 << 20; // bigger batches get a throwaway buffer
+
+   static final String BATCH_PROPERTY = "csu.sender.batch";
+   static final String LINGER_PROPERTY = "csu.sender.linger.ms";
+   static final int DEFAULT_BATCH = 64;
 
    private Socket socket;
    private DataOutputStream s_out;
    private LinkedBlockingQueue<byte[]> messageQueue;
    private Identity identity;
    private boolean dead = false;
+   private boolean started = false;
+   private final int maxBatch;
+   private final long lingerNanos;
+   private ByteBuffer buffer = ByteBuffer.allocate(4096); // guarded by s_out
 
    public TCPSender(Socket socket) throws IOException {
       this.socket = socket;
       this.s_out = new DataOutputStream(socket.getOutputStream());
       this.messageQueue = new LinkedBlockingQueue<>();
+      this.maxBatch = Math.max(1, Integer.getInteger(BATCH_PROPERTY, DEFAULT_BATCH));
+      this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(LINGER_PROPERTY, 0L));
       this.identity = Identity.builder().withSocketAddress(socket.getRemoteSocketAddress()).build();
    }
 
+   @Override public synchronized void start() {
+      if (!this.started) {
+         this.started = true;
+         new Thread(this).start();
+      }
+   }
+
    /**
     * Add a message to the queue of messages waiting to be sent
     * @param message The serialized message
     */
-   public void addMessage(byte[] message) {
+   @Override public void addMessage(byte[] message) {
       messageQueue.add(message);
    }
 
@@ -51,11 +80,27 @@ public class TCPSender implements Runnable, AutoCloseable {
     * @param message The serialized message
     */
    public void sendMessage(byte[] message) {
-      int size = message.length;
+      sendBatch(Collections.singletonList(message));
+   }
+
+   /**
+    * Frame every message into one buffer and write it with a single flush
+    * @param messages The serialized messages
+    */
+   private void sendBatch(List<byte[]> messages) {
+      int size = 0;
+      for (byte[] message : messages) {
+         size += SIZE_OF_INT + message.length;
+      }
+
       synchronized (s_out) {
          try {
-            s_out.writeInt(size); //start with size of message
-            s_out.write(message, 0, size);
+            ByteBuffer out = bufferFor(size);
+            for (byte[] message : messages) {
+               out.putInt(message.length); //start with size of message
+               out.put(message);
+            }
+            s_out.write(out.array(), 0, out.position());
             s_out.flush();
          }
          catch (EOFException e) {
@@ -68,16 +113,59 @@ public class TCPSender implements Runnable, AutoCloseable {
       }
    }
 
+   private ByteBuffer bufferFor(int size) {
+      if (size > MAX_RETAINED_BUFFER) {
+         return ByteBuffer.allocate(size);
+      }
+
+      if (size > this.buffer.capacity()) {
+         this.buffer = ByteBuffer.allocate(Math.min(MAX_RETAINED_BUFFER, Integer.highestOneBit(size - 1) << 1));
+      }
+
+      this.buffer.clear();
+      return this.buffer;
+   }
+
+   /**
+    * Fill the batch with whatever is already queued, lingering for more if configured
+    */
+   private void fillBatch(List<byte[]> batch) throws InterruptedException {
+      this.messageQueue.drainTo(batch, this.maxBatch - batch.size());
+
+      if (this.lingerNanos > 0) {
+         long deadline = System.nanoTime() + this.lingerNanos;
+         long remaining = this.lingerNanos;
+
+         while (batch.size() < this.maxBatch && remaining > 0) {
+            byte[] next = this.messageQueue.poll(remaining, TimeUnit.NANOSECONDS);
+
+            if (next == null) {
+               break;
+            }
+
+            batch.add(next);
+            this.messageQueue.drainTo(batch, this.maxBatch - batch.size());
+            remaining = deadline - System.nanoTime();
+         }
+      }
+
+      // A fun way to break out of a linkedBlockingQueue
+      batch.removeIf(message -> message == STOP);
+   }
+
    public void run() {
+      List<byte[]> batch = new ArrayList<>(this.maxBatch);
+
       while (!Thread.currentThread().isInterrupted() && !this.dead) {
-         byte[] nextMessage;
          try {
             //Block until there are messages in the queue
-            nextMessage = messageQueue.take();
-            // A fun way to break out of a linkedBlockingQueue
-            if (!nextMessage.equals(STOP)) {
-               sendMessage(nextMessage);
+            batch.add(messageQueue.take());
+            fillBatch(batch);
+
+            if (!batch.isEmpty()) {
+               sendBatch(batch);
             }
+            batch.clear();
          }
          catch (Exception e) {
             if (!this.dead) {
@@ -97,14 +185,18 @@ public class TCPSender implements Runnable, AutoCloseable {
       this.dead = true;
       Utilities.closeQuietly(socket);
       this.messageQueue.add(STOP);
-      ServiceNode.getThisNode().removeConnection(this.identity);
+
+      ServiceNode node = ServiceNode.getThisNode();
+      if (node != null) { // there's no node in the transport tests
+         node.removeConnection(this.identity);
+      }
    }
 
    public Socket getSocket() {
       return socket;
    }
 
-   public Identity getIdentity() {
+   @Override public Identity getIdentity() {
       return identity;
    }
 }
@@ -20,7 +20,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
-public class TCPServerThread implements Runnable, AutoCloseable {
+public class TCPServerThread implements MessageServer {
     private static final Logger logger = Logger.getLogger(TCPServerThread.class.getName());
 
     private ServerSocket server;
@@ -51,7 +51,9 @@ public class TCPServerThread implements Runnable, AutoCloseable {
                 Socket socket = server.accept();
                 Identity ident = Identity.builder().withSocketAddress(socket.getRemoteSocketAddress()).build();
                 // the sender thread side of this is created after the introduction message is received
-                connections.addReceiverThread(ident, new TCPReceiverThread(socket, factory));
+                TCPReceiverThread receiver = new TCPReceiverThread(socket, factory);
+                receiver.closeWhenIdle(ConnectionPool.inboundIdleMillis()); // until it introduces itself
+                connections.addReceiver(ident, receiver);
             } catch (Exception e){
                 if (!this.dead) {
                     logger.log(Level.SEVERE, "TCPServerThread.run() ", e);
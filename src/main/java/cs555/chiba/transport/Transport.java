@@ -0,0 +1,45 @@
+/**
+ * The Transport selects how a node moves bytes between sockets.
+ *
+ * TCP uses a blocking receiver thread and sender thread per connection.
+ * NIO multiplexes every connection over a small pool of selector loops.
+ *
+ * The transport is picked at startup with -Dcsu.transport=tcp|nio and defaults to TCP.
+ */
+package cs555.chiba.transport;
+
+import cs555.chiba.wireformats.EventFactory;
+
+import java.util.logging.Logger;
+
+public enum Transport {
+   TCP, NIO;
+
+   private static final Logger logger = Logger.getLogger(Transport.class.getName());
+
+   public static final String PROPERTY = "csu.transport";
+
+   /**
+    * Read the transport from the system properties.  Unknown values fall back to TCP.
+    */
+   public static Transport fromProperties() {
+      String name = System.getProperty(PROPERTY, TCP.name());
+
+      try {
+         return Transport.valueOf(name.trim().toUpperCase());
+      }
+      catch (IllegalArgumentException e) {
+         logger.severe("Unknown transport [" + name + "].  Falling back to [" + TCP + "]");
+         return TCP;
+      }
+   }
+
+   public MessageServer createServer(int port, TCPConnectionsCache connections, EventFactory factory) {
+      switch (this) {
+         case NIO:
+            return new NIOServerThread(port, connections, factory);
+         default:
+            return new TCPServerThread(port, connections, factory);
+      }
+   }
+}
@@ -0,0 +1,183 @@
+package cs555.chiba.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A stack of Bloom filters, one per hop.  Level 0 holds the metric names a peer has itself, level 1 the names its
+ * neighbors have, and so on.  A peer's view of a neighbor is the neighbor's own names at level 0 shifted down by one for
+ * everything further away, so the first level a name appears at is roughly how many hops past the neighbor it is.
+ *
+ * Every level has the same number of bits and hashes, which lets the levels be combined with a bitwise or.  Like any Bloom
+ * filter a level can claim a name it doesn't have, but never misses one it does.
+ */
+public class AttenuatedBloomFilter {
+
+   private final int depth;
+   private final int bits;
+   private final int hashes;
+   private final long[] words; // level after level, bits / 64 words each
+
+   /**
+    * @param depth The number of levels, so the most hops away a name is remembered
+    * @param bits The bits in each level, a multiple of 64
+    * @param hashes The number of bits set for each name
+    */
+   public AttenuatedBloomFilter(int depth, int bits, int hashes) {
+      this(depth, bits, hashes, new long[depth * (bits / 64)]);
+   }
+
+   /**
+    * Rebuild a filter from its words, as read off the wire
+    */
+   public AttenuatedBloomFilter(int depth, int bits, int hashes, long[] words) {
+      Utilities.checkArgument(depth > 0, "The filter depth must be positive [" + depth + "]");
+      Utilities.checkArgument(bits > 0 && bits % 64 == 0, "The filter bits must be a positive multiple of 64 [" + bits + "]");
+      Utilities.checkArgument(hashes > 0, "The filter hashes must be positive [" + hashes + "]");
+      Utilities.checkArgument(words.length == depth * (bits / 64), "The filter has [" + words.length + "] words but needs [" + depth * (bits / 64) + "]");
+      this.depth = depth;
+      this.bits = bits;
+      this.hashes = hashes;
+      this.words = words;
+   }
+
+   public void add(int level, String name) {
+      long h1 = hash(name);
+      long h2 = mix(h1) | 1;
+      int offset = level * (this.bits / 64);
+
+      for (int i = 0; i < this.hashes; i++) {
+         int bit = (int) Math.floorMod(h1 + i * h2, (long) this.bits);
+         this.words[offset + (bit >>> 6)] |= 1L << bit;
+      }
+   }
+
+   public boolean contains(int level, String name) {
+      long h1 = hash(name);
+      long h2 = mix(h1) | 1;
+      int offset = level * (this.bits / 64);
+
+      for (int i = 0; i < this.hashes; i++) {
+         int bit = (int) Math.floorMod(h1 + i * h2, (long) this.bits);
+         if ((this.words[offset + (bit >>> 6)] & (1L << bit)) == 0) {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * @return The nearest level that has the name, or -1 if none do
+    */
+   public int firstLevel(String name) {
+      for (int level = 0; level < this.depth; level++) {
+         if (contains(level, name)) {
+            return level;
+         }
+      }
+
+      return -1;
+   }
+
+   /**
+    * Or in a neighbor's filter one level further away.  Its deepest level falls off the end.
+    */
+   public void mergeShifted(AttenuatedBloomFilter neighbor) {
+      Utilities.checkArgument(isCompatible(neighbor), "The filters have different shapes");
+      int perLevel = this.bits / 64;
+
+      for (int i = 0; i < (this.depth - 1) * perLevel; i++) {
+         this.words[perLevel + i] |= neighbor.words[i];
+      }
+   }
+
+   /**
+    * Or in another filter level for level
+    */
+   public void merge(AttenuatedBloomFilter other) {
+      Utilities.checkArgument(isCompatible(other), "The filters have different shapes");
+
+      for (int i = 0; i < this.words.length; i++) {
+         this.words[i] |= other.words[i];
+      }
+   }
+
+   public boolean isCompatible(AttenuatedBloomFilter other) {
+      return this.depth == other.depth && this.bits == other.bits && this.hashes == other.hashes;
+   }
+
+   public AttenuatedBloomFilter copy() {
+      return new AttenuatedBloomFilter(this.depth, this.bits, this.hashes, this.words.clone());
+   }
+
+   public int getDepth() {
+      return this.depth;
+   }
+
+   public int getBits() {
+      return this.bits;
+   }
+
+   public int getHashes() {
+      return this.hashes;
+   }
+
+   public long[] getWords() {
+      return this.words;
+   }
+
+   /**
+    * 64 bit FNV-1a over the name's bytes
+    */
+   private static long hash(String name) {
+      long hash = 0xcbf29ce484222325L;
+
+      for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+         hash ^= b & 0xff;
+         hash *= 0x100000001b3L;
+      }
+
+      return mix(hash);
+   }
+
+   /**
+    * The murmur3 finalizer
+    */
+   private static long mix(long value) {
+      value ^= value >>> 33;
+      value *= 0xff51afd7ed558ccdL;
+      value ^= value >>> 33;
+      value *= 0xc4ceb9fe1a85ec53L;
+      value ^= value >>> 33;
+      return value;
+   }
+
+   @Override public boolean equals(Object o) {
+      if (this == o)
+         return true;
+      if (o == null || getClass() != o.getClass())
+         return false;
+      AttenuatedBloomFilter that = (AttenuatedBloomFilter) o;
+      return isCompatible(that) && Arrays.equals(words, that.words);
+   }
+
+   @Override public int hashCode() {
+      return 31 * (31 * (31 * depth + bits) + hashes) + Arrays.hashCode(words);
+   }
+
+   @Override public String toString() {
+      StringBuilder out = new StringBuilder("AttenuatedBloomFilter{" + "depth=" + depth + ", bits=" + bits + ", hashes=" + hashes + ", set=[");
+      int perLevel = this.bits / 64;
+
+      for (int level = 0; level < this.depth; level++) {
+         int set = 0;
+         for (int i = 0; i < perLevel; i++) {
+            set += Long.bitCount(this.words[level * perLevel + i]);
+         }
+         out.append(level == 0 ? "" : ", ").append(set);
+      }
+
+      return out.append("]}").toString();
+   }
+}
@@ -0,0 +1,257 @@
+package cs555.chiba.util;
+
+import cs555.chiba.service.Identity;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * A duplicate query filter that uses the same memory no matter how many queries pass through.
+ *
+ * Ids go into a ring of Bloom filters.  Each generation covers a slice of the retention window.  When the current one is
+ * too old, or holds as many ids as it was sized for, the oldest generation is cleared and becomes the new current one.
+ * An id is a duplicate if any live generation has it, so ids are remembered for at least the retention window as long as
+ * no more than the capacity arrive within it.  Under heavier load a generation fills before its time is up and the ring
+ * turns early, so ids can be forgotten sooner.  Early turns are logged and counted in describe(), along with the
+ * shortest window they left.  Clearing a generation takes every lock, so no lookup or add sees one half cleared.
+ *
+ * A Bloom filter never misses an id it holds, but it can claim to hold one it doesn't.  Those false positives mean an
+ * occasional new query is treated as a duplicate.  The filters are sized for -Dcsu.seen.fp (default 0.001) with
+ * -Dcsu.seen.size ids per window.  The bits actually set give a live estimate of the rate.
+ */
+public class BloomSeenFilter implements SeenFilter {
+
+   private static final Logger logger = Logger.getLogger(BloomSeenFilter.class.getName());
+
+   static final String FP_PROPERTY = "csu.seen.fp";
+   static final String GENERATIONS_PROPERTY = "csu.seen.generations";
+
+   private static final int LOCKS = 16;
+
+   private final Generation[] generations;
+   private final Object[] locks = new Object[LOCKS];
+   private final int hashes;
+   private final long bits;
+   private final long perGeneration;
+   private final long spanMillis;
+   private final double targetRate;
+   private final long retentionMillis;
+   private volatile int current = 0;
+   private long earlyRotations = 0; // guarded by this
+   private long shortestWindowMillis = Long.MAX_VALUE; // guarded by this
+
+   /**
+    * @param capacity The number of ids expected in one retention window
+    * @param falsePositiveRate The target chance of a false duplicate
+    * @param retentionMillis How long an id is remembered at least
+    * @param generations The number of filters in the ring, at least 2
+    */
+   public BloomSeenFilter(int capacity, double falsePositiveRate, long retentionMillis, int generations) {
+      Utilities.checkArgument(capacity > 0, "The seen filter capacity must be positive [" + capacity + "]");
+      Utilities.checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "The false positive rate must be between 0 and 1 [" + falsePositiveRate + "]");
+      Utilities.checkArgument(retentionMillis > 0, "The retention window must be positive [" + retentionMillis + "]");
+      Utilities.checkArgument(generations >= 2, "The seen filter needs at least 2 generations [" + generations + "]");
+
+      this.targetRate = falsePositiveRate;
+      this.retentionMillis = retentionMillis;
+      this.spanMillis = Math.max(1, retentionMillis / (generations - 1));
+      this.perGeneration = Math.max(1, (capacity + generations - 2) / (generations - 1));
+
+      // every live generation can be the one that falsely matches, so each one gets a share of the target rate
+      double perFilterRate = 1 - Math.pow(1 - falsePositiveRate, 1.0 / generations);
+      double optimalBits = -this.perGeneration * Math.log(perFilterRate) / (Math.log(2) * Math.log(2));
+      this.bits = Math.max(64, ((long) Math.ceil(optimalBits) + 63) & ~63L);
+      this.hashes = Math.max(1, (int) Math.round((double) this.bits / this.perGeneration * Math.log(2)));
+
+      long now = System.currentTimeMillis();
+      this.generations = new Generation[generations];
+      for (int i = 0; i < generations; i++) {
+         this.generations[i] = new Generation((int) (this.bits / 64), now);
+      }
+      for (int i = 0; i < LOCKS; i++) {
+         this.locks[i] = new Object();
+      }
+   }
+
+   public static BloomSeenFilter fromProperties() {
+      return new BloomSeenFilter(Integer.getInteger(SeenQueries.SIZE_PROPERTY, 4096), Double.parseDouble(System.getProperty(FP_PROPERTY, "0.001")),
+            Long.getLong(SeenQueries.TTL_PROPERTY, 120000L), Integer.getInteger(GENERATIONS_PROPERTY, 4));
+   }
+
+   @Override public boolean markIfAbsent(UUID id, Identity parent) {
+      long h1 = mix(id.getMostSignificantBits());
+      long h2 = mix(id.getLeastSignificantBits()) | 1;
+      rotateIfNeeded();
+
+      // the same id always takes the same lock, so two copies arriving together can't both look new
+      synchronized (this.locks[(int) (h1 >>> 60) & (LOCKS - 1)]) {
+         if (contains(h1, h2)) {
+            return false;
+         }
+
+         this.generations[this.current].add(h1, h2);
+         return true;
+      }
+   }
+
+   @Override public boolean contains(UUID id) {
+      long h1 = mix(id.getMostSignificantBits());
+      long h2 = mix(id.getLeastSignificantBits()) | 1;
+      rotateIfNeeded();
+
+      synchronized (this.locks[(int) (h1 >>> 60) & (LOCKS - 1)]) {
+         return contains(h1, h2);
+      }
+   }
+
+   private boolean contains(long h1, long h2) {
+      for (Generation generation : this.generations) {
+         if (generation.contains(h1, h2)) {
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+   private void rotateIfNeeded() {
+      Generation now = this.generations[this.current];
+
+      if (System.currentTimeMillis() - now.started >= this.spanMillis || now.added.get() >= this.perGeneration) {
+         rotate(now);
+      }
+   }
+
+   private synchronized void rotate(Generation expected) {
+      if (this.generations[this.current] != expected) {
+         return; // another thread already rotated
+      }
+
+      long now = System.currentTimeMillis();
+      int next = (this.current + 1) % this.generations.length;
+
+      // the newest id in the generation being cleared went in no later than the generation after it started
+      long window = now - this.generations[(next + 1) % this.generations.length].started;
+      if (this.generations[next].added.get() > 0 && window < this.retentionMillis) {
+         this.shortestWindowMillis = Math.min(this.shortestWindowMillis, window);
+         if (this.earlyRotations++ == 0) {
+            logger.warning("More than [" + this.perGeneration + "] ids arrived in [" + this.spanMillis + "] ms, the seen filter is rotating early and forgetting ids after about ["
+                  + window + "] ms instead of [" + this.retentionMillis + "] ms.  Raise -D" + SeenQueries.SIZE_PROPERTY);
+         }
+      }
+
+      clearUnderLocks(0, this.generations[next], now);
+      this.current = next;
+   }
+
+   /**
+    * Take every stripe lock, in order, then clear the generation
+    */
+   private void clearUnderLocks(int lock, Generation generation, long now) {
+      if (lock == LOCKS) {
+         generation.clear(now);
+         return;
+      }
+
+      synchronized (this.locks[lock]) {
+         clearUnderLocks(lock + 1, generation, now);
+      }
+   }
+
+   @Override public double estimatedFalsePositiveRate() {
+      double missAll = 1;
+
+      for (Generation generation : this.generations) {
+         double fill = (double) generation.setBits.get() / this.bits;
+         missAll *= 1 - Math.pow(fill, this.hashes);
+      }
+
+      return 1 - missAll;
+   }
+
+   @Override public synchronized String describe() {
+      long ids = 0;
+      for (Generation generation : this.generations) {
+         ids += generation.added.get();
+      }
+
+      return String.format("Seen Filter: bloom%n" + "generations: %d  bits per generation: %d  hashes: %d  memory bytes: %d%n" + "ids held: %d  ids per generation: %d  window ms: %d%n"
+            + "early rotations: %d  shortest window ms: %s%n" + "estimated false positive rate: %.6f  target: %.6f", this.generations.length, this.bits, this.hashes,
+            this.generations.length * this.bits / 8, ids, this.perGeneration, this.retentionMillis, this.earlyRotations,
+            this.earlyRotations == 0 ? "-" : Long.toString(this.shortestWindowMillis), estimatedFalsePositiveRate(), this.targetRate);
+   }
+
+   synchronized long getEarlyRotations() {
+      return this.earlyRotations;
+   }
+
+   /**
+    * Spread the bits of one half of the id, the murmur3 finalizer
+    */
+   private static long mix(long value) {
+      value ^= value >>> 33;
+      value *= 0xff51afd7ed558ccdL;
+      value ^= value >>> 33;
+      value *= 0xc4ceb9fe1a85ec53L;
+      value ^= value >>> 33;
+      return value;
+   }
+
+   private class Generation {
+
+      private final AtomicLongArray words;
+      private final AtomicLong setBits = new AtomicLong();
+      private final AtomicLong added = new AtomicLong();
+      private volatile long started;
+
+      Generation(int words, long started) {
+         this.words = new AtomicLongArray(words);
+         this.started = started;
+      }
+
+      boolean contains(long h1, long h2) {
+         for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+               return false;
+            }
+         }
+
+         return true;
+      }
+
+      void add(long h1, long h2) {
+         for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long old;
+
+            do {
+               old = this.words.get(word);
+               if ((old & mask) != 0) {
+                  break;
+               }
+            }
+            while (!this.words.compareAndSet(word, old, old | mask));
+
+            if ((old & mask) == 0) {
+               this.setBits.incrementAndGet();
+            }
+         }
+
+         this.added.incrementAndGet();
+      }
+
+      void clear(long now) {
+         for (int i = 0; i < this.words.length(); i++) {
+            this.words.set(i, 0);
+         }
+         this.setBits.set(0);
+         this.added.set(0);
+         this.started = now;
+      }
+   }
+}
@@ -2,140 +2,229 @@ package cs555.chiba.util;
 
 import cs555.chiba.service.Identity;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Every change to an entry stamps it with the next version of the cache.  Gossip remembers the version each neighbor has
+ * been sent, and only sends the entries changed since.
+ *
+ * Entries live in a concurrent map, so lookups and iteration take no locks and never copy the cache.  Iteration is weakly
+ * consistent: it sees every entry present when it started and may or may not see later changes.  An entry's value list is
+ * replaced rather than changed, so a list read from an entry never changes underneath the reader.
+ *
+ * Eviction is split over segments by key, each with its own lock.  A segment approximates least recently used with the
+ * clock algorithm: a read marks an entry referenced, and a full segment sweeps its ring clearing marks until it finds an
+ * unmarked entry to replace.  Marking is a plain write, so reads never wait on writers.
+ *
+ * Entries are also indexed by key name, kept up to date as entries are added, renamed and evicted, so finding every
+ * entry for a metric costs the matches rather than a scan of the cache.
+ */
 public class LRUCache {
-	
+
 	public class Entry {
-		public Identity value;
-		public HashMap<Identity, Integer> valueList;
-		public String keyName;
+		public volatile Identity value;
+		public volatile HashMap<Identity, Integer> valueList; // replaced, never changed, once the entry is in the cache
+		public volatile String keyName;
 		UUID key;
-		int distance;
-		Entry left;
-		Entry right;
+		volatile int distance;
+		volatile long version;
+		volatile boolean referenced;
 	}
-	
-	HashMap<UUID, Entry> hashmap;
-	Entry start, end;
-	int LRU_SIZE; 
+
+	private static final int MAX_SEGMENTS = 16;
+	private static final int MIN_SEGMENT_SIZE = 32;
+
+	private final ConcurrentHashMap<UUID, Entry> hashmap;
+	private final Segment[] segments;
+	private final ConcurrentHashMap<String, Set<Entry>> byName = new ConcurrentHashMap<>();
+	private final AtomicLong version = new AtomicLong();
+	// writers share it while stamping, reading the version takes it alone so every stamp up to the version is visible
+	private final ReentrantReadWriteLock stamping = new ReentrantReadWriteLock();
 
 	public LRUCache(int size) {
-		hashmap = new HashMap<UUID, Entry>();
-		LRU_SIZE = size;
+		Utilities.checkArgument(size > 0, "The cache size must be positive [" + size + "]");
+		int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, size / MIN_SEGMENT_SIZE)));
+		this.hashmap = new ConcurrentHashMap<>(size * 4 / 3 + 1);
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			// spread the remainder so the segments add up to the size
+			this.segments[i] = new Segment(size / count + (i < size % count ? 1 : 0));
+		}
 	}
 
+	/**
+	 * @return The entry, or an empty one if the key isn't held
+	 */
 	public Entry getEntry(UUID key) {
-		if (hashmap.containsKey(key)) {
-			Entry entry = hashmap.get(key);
-			removeNode(entry);
-			addAtTop(entry);
+		Entry entry = hashmap.get(key);
+		if (entry != null) {
+			entry.referenced = true;
 			return entry;
 		}
-		return new Entry();
+		Entry missing = new Entry();
+		missing.valueList = new HashMap<Identity, Integer>();
+		return missing;
 	}
-	
+
 	public boolean containsEntry(UUID key) {
 		return hashmap.containsKey(key);
 	}
-	
-	@SuppressWarnings("unchecked")
-	public HashMap<UUID, Entry> getHashmap(){
-		return (HashMap<UUID, Entry>) hashmap.clone();
+
+	/**
+	 * A read only view of the cache, not a copy
+	 */
+	public Map<UUID, Entry> getHashmap(){
+		return Collections.unmodifiableMap(hashmap);
 	}
-	
-	public synchronized boolean putEntryAppend(UUID key, String keyName, int distance, Identity value) {
-		boolean updated = false;
-		if (hashmap.containsKey(key)){
+
+	/**
+	 * A read only view of the entries with a key name, not a copy
+	 */
+	public Collection<Entry> getEntriesNamed(String keyName) {
+		Set<Entry> named = byName.get(keyName);
+		return named == null ? Collections.<Entry>emptySet() : Collections.unmodifiableSet(named);
+	}
+
+	/**
+	 * A read only view of the entries, not a copy
+	 */
+	public Collection<Entry> entries() {
+		return Collections.unmodifiableCollection(hashmap.values());
+	}
+
+	public boolean putEntryAppend(UUID key, String keyName, int distance, Identity value) {
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
 			Entry entry = hashmap.get(key);
-			if(!entry.valueList.containsKey(value) || entry.distance > distance)
-				updated = true;
-			entry.valueList.put(value, Math.min(distance, entry.distance));
-			entry.distance = Math.min(distance, entry.distance);
-			removeNode(entry);
-			addAtTop(entry);
-		} else {
-			updated = true;
+			if (entry != null) {
+				boolean updated = !entry.valueList.containsKey(value) || entry.distance > distance;
+				if (updated) {
+					HashMap<Identity, Integer> valueList = new HashMap<Identity, Integer>(entry.valueList);
+					valueList.put(value, Math.min(distance, entry.distance));
+					stamp(() -> {
+						entry.valueList = valueList;
+						entry.distance = Math.min(distance, entry.distance);
+					}, entry);
+				}
+				entry.referenced = true;
+				return updated;
+			}
+
 			Entry newnode = new Entry();
-			newnode.left = null;
-			newnode.right = null;
 			newnode.valueList = new HashMap<Identity, Integer>();
 			newnode.valueList.put(value, distance);
 			newnode.keyName = keyName;
 			newnode.key = key;
 			newnode.distance = distance;
-			if (hashmap.size() > LRU_SIZE) {
-				hashmap.remove(end.key);
-				removeNode(end);				
-				addAtTop(newnode);
-			} else {
-				addAtTop(newnode);
-			}
-			hashmap.put(key, newnode);
+			stamp(() -> segment.insert(newnode), newnode);
+			return true;
 		}
-		return updated;
 	}
 
-	public synchronized boolean putEntry(UUID key, Identity value) {
-		boolean newEntry = false;
-		if (hashmap.containsKey(key)){
+	public boolean putEntry(UUID key, Identity value) {
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
 			Entry entry = hashmap.get(key);
-			entry.value = value;
-			removeNode(entry);
-			addAtTop(entry);
-		} else {
-			newEntry = true;
+			if (entry != null) {
+				if (!value.equals(entry.value))
+					stamp(() -> entry.value = value, entry);
+				entry.referenced = true;
+				return false;
+			}
+
 			Entry newnode = new Entry();
-			newnode.left = null;
-			newnode.right = null;
 			newnode.value = value;
 			newnode.key = key;
-			if (hashmap.size() > LRU_SIZE){
-				hashmap.remove(end.key);
-				removeNode(end);				
-				addAtTop(newnode);
-			} else {
-				addAtTop(newnode);
-			}
-
-			hashmap.put(key, newnode);
+			stamp(() -> segment.insert(newnode), newnode);
+			return true;
 		}
-		return newEntry;
 	}
-	
-	public synchronized boolean putEntryWithProbability(UUID key, Identity value, String device, double probability) {
-		boolean newEntry = false;
-		if (hashmap.containsKey(key)){
+
+	public boolean putEntryWithProbability(UUID key, Identity value, String device, double probability) {
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
 			Entry entry = hashmap.get(key);
-			entry.value = value;
-			entry.keyName = device;
-			removeNode(entry);
-			addAtTop(entry);
-		} else {
-			newEntry = true;
+			if (entry != null) {
+				if (!value.equals(entry.value) || !device.equals(entry.keyName)) {
+					String oldName = entry.keyName;
+					stamp(() -> {
+						entry.value = value;
+						entry.keyName = device;
+					}, entry);
+					if (!device.equals(oldName)) {
+						unindex(oldName, entry);
+						index(entry);
+					}
+				}
+				entry.referenced = true;
+				return false;
+			}
+
+			// a full cache only takes a new location some of the time
+			if (segment.isFull() && Math.random() > probability)
+				return false;
+
 			Entry newnode = new Entry();
-			newnode.left = null;
-			newnode.right = null;
 			newnode.value = value;
 			newnode.key = key;
 			newnode.keyName = device;
-			if (hashmap.size() > LRU_SIZE){
-				if(Math.random() > probability)
-					return false;
-				hashmap.remove(end.key);
-				removeNode(end);				
-				addAtTop(newnode);
-			} else {
-				addAtTop(newnode);
-			}
+			stamp(() -> segment.insert(newnode), newnode);
+			return true;
+		}
+	}
 
-			hashmap.put(key, newnode);
+	/**
+	 * Make a change and stamp the entry with the next version.  Called with the entry's segment locked.
+	 */
+	private void stamp(Runnable change, Entry entry) {
+		stamping.readLock().lock();
+		try {
+			change.run();
+			entry.version = version.incrementAndGet();
+		} finally {
+			stamping.readLock().unlock();
 		}
-		return newEntry;
 	}
-	
+
+	/**
+	 * The version of the most recent change.  Every entry stamped with it or earlier can be seen by the time it returns.
+	 */
+	public long getVersion() {
+		stamping.writeLock().lock();
+		try {
+			return version.get();
+		} finally {
+			stamping.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * The distances of the entries changed after the given version
+	 */
+	public HashMap<String,Integer> getValueListsSince(long since){
+		HashMap<String,Integer> keyNames = new HashMap<String,Integer>();
+		for(Entry e : hashmap.values()) {
+			if (e.version > since)
+				keyNames.put(e.keyName, e.distance);
+		}
+		return keyNames;
+	}
+
+	/**
+	 * The locations of the entries changed after the given version
+	 */
+	public Entry[] getLocationsSince(long since){
+		return hashmap.values().stream().filter(e -> e.version > since).toArray(Entry[]::new);
+	}
+
 	public HashMap<String,Integer> getValueLists(){
 		HashMap<String,Integer> keyNames = new HashMap<String,Integer>();
 		for(Entry e : hashmap.values()) {
@@ -143,39 +232,76 @@ public class LRUCache {
 		}
 		return keyNames;
 	}
-	
-	public synchronized Entry[] getLocations(){
-		Entry[] locations = new Entry[this.hashmap.size()];
-		int i = 0;
-		for(Map.Entry<UUID, Entry> e : this.hashmap.entrySet()) {
-			locations[i] = e.getValue();
-			i++;
-		}
-		return locations;
+
+	public Entry[] getLocations(){
+		return hashmap.values().toArray(new Entry[0]);
 	}
-	
-	private void addAtTop(Entry node) {
-		node.right = start;
-		node.left = null;
-		if (start != null)
-			start.left = node;
-		start = node;
-		if (end == null)
-			end = start;
+
+	public int size() {
+		return hashmap.size();
+	}
+
+	private void index(Entry entry) {
+		if (entry.keyName == null)
+			return;
+		byName.compute(entry.keyName, (name, named) -> {
+			Set<Entry> set = named == null ? ConcurrentHashMap.<Entry>newKeySet() : named;
+			set.add(entry);
+			return set;
+		});
+	}
+
+	private void unindex(String keyName, Entry entry) {
+		if (keyName == null)
+			return;
+		byName.computeIfPresent(keyName, (name, named) -> {
+			named.remove(entry);
+			return named.isEmpty() ? null : named;
+		});
+	}
+
+	private Segment segmentFor(UUID key) {
+		int hash = key.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
 	}
 
-	private void removeNode(Entry node) {
+	private class Segment {
 
-		if (node.left != null) {
-			node.left.right = node.right;
-		} else {
-			start = node.right;
+		private final Entry[] ring;
+		private int count = 0;
+		private int hand = 0;
+
+		Segment(int capacity) {
+			this.ring = new Entry[Math.max(1, capacity)];
+		}
+
+		boolean isFull() {
+			return count == ring.length;
 		}
 
-		if (node.right != null) {
-			node.right.left = node.left;
-		} else {
-			end = node.left;
+		/**
+		 * Add an entry, replacing the first unreferenced one the hand reaches if the segment is full
+		 */
+		void insert(Entry entry) {
+			int slot;
+			entry.referenced = true;
+
+			if (!isFull()) {
+				slot = count++;
+			} else {
+				while (ring[hand].referenced) {
+					ring[hand].referenced = false;
+					hand = (hand + 1) % ring.length;
+				}
+				hashmap.remove(ring[hand].key);
+				unindex(ring[hand].keyName, ring[hand]);
+				slot = hand;
+				hand = (hand + 1) % ring.length;
+			}
+
+			ring[slot] = entry;
+			hashmap.put(entry.key, entry);
+			index(entry);
 		}
 	}
 }
@@ -0,0 +1,198 @@
+package cs555.chiba.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The results and hop count this peer recorded for each query it handled.
+ *
+ * Like SeenQueries, the entries are held in a StripedExpiringMap.  Entries older than the time to live are dropped, and a
+ * full stripe drops its oldest entry.  The two counts are packed into one long, so an entry costs the key and a small slot
+ * rather than a Metric object.
+ *
+ * Dropped entries can be appended to a csv file so long runs don't lose them.  The file is only ever appended to, one line
+ * per query: id, results, hops, and the time it was recorded.  Anything still held is written when the store is closed.
+ *
+ * -Dcsu.metrics.size sets how many queries are kept in total, -Dcsu.metrics.ttl.ms how long they are kept, and
+ * -Dcsu.metrics.spill names the file evicted entries are appended to.
+ */
+public class QueryMetricStore implements AutoCloseable {
+
+   private static final Logger logger = Logger.getLogger(QueryMetricStore.class.getName());
+
+   static final String SIZE_PROPERTY = "csu.metrics.size";
+   static final String TTL_PROPERTY = "csu.metrics.ttl.ms";
+   static final String SPILL_PROPERTY = "csu.metrics.spill";
+
+   private final StripedExpiringMap<Slot> slots;
+   private final BufferedWriter spill; // guarded by itself, null when evicted entries are discarded
+   private final LongAdder evicted = new LongAdder();
+   private final LongAdder spilled = new LongAdder();
+   private boolean closed = false; // guarded by spill
+
+   public QueryMetricStore(int capacity, long ttlMillis) {
+      this(capacity, ttlMillis, null);
+   }
+
+   /**
+    * @param spillFile Where evicted entries are appended, or null to discard them
+    */
+   public QueryMetricStore(int capacity, long ttlMillis, Path spillFile) {
+      Utilities.checkArgument(capacity > 0, "The query metric capacity must be positive [" + capacity + "]");
+      Utilities.checkArgument(ttlMillis > 0, "The query metric time to live must be positive [" + ttlMillis + "]");
+      this.slots = new StripedExpiringMap<>(capacity, ttlMillis);
+      this.spill = openSpill(spillFile);
+   }
+
+   public static QueryMetricStore fromProperties() {
+      String spillFile = System.getProperty(SPILL_PROPERTY);
+      return new QueryMetricStore(Integer.getInteger(SIZE_PROPERTY, 4096), Long.getLong(TTL_PROPERTY, 600000L), Utilities.isBlank(spillFile) ? null : Paths.get(spillFile));
+   }
+
+   private static BufferedWriter openSpill(Path spillFile) {
+      if (spillFile == null) {
+         return null;
+      }
+
+      try {
+         return Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+      }
+      catch (IOException e) {
+         throw new IllegalArgumentException("Unable to open the query metric spill file [" + spillFile + "]", e);
+      }
+   }
+
+   /**
+    * Record the metric for a query, replacing anything already recorded for it
+    */
+   public void put(UUID id, int numResults, int numHops) {
+      List<Map.Entry<UUID, Slot>> dropped = this.slots.put(id, new Slot(pack(numResults, numHops), System.currentTimeMillis()));
+
+      if (!dropped.isEmpty()) {
+         this.evicted.add(dropped.size());
+         spill(dropped);
+      }
+   }
+
+   /**
+    * @return The metric recorded for the query, or null if it isn't held
+    */
+   public Metric get(UUID id) {
+      Slot slot = this.slots.get(id);
+      return slot == null ? null : unpack(slot.packed);
+   }
+
+   /**
+    * Visit every held entry.  The action runs without holding a lock.
+    */
+   public void forEach(BiConsumer<UUID, Metric> action) {
+      this.slots.forEach((id, slot) -> action.accept(id, unpack(slot.packed)));
+   }
+
+   public int size() {
+      return this.slots.size();
+   }
+
+   public String describe() {
+      return "Query Metrics: \n" + "queries held: " + size() + " of " + this.slots.capacity() + "  window ms: " + this.slots.getTtlMillis() + "\n" + "evicted: " + this.evicted.sum() + "  spilled: " + this.spilled.sum();
+   }
+
+   private void spill(List<Map.Entry<UUID, Slot>> entries) {
+      if (this.spill == null || entries.isEmpty()) {
+         return;
+      }
+
+      synchronized (this.spill) {
+         if (this.closed) {
+            return;
+         }
+
+         try {
+            for (Map.Entry<UUID, Slot> entry : entries) {
+               write(entry.getKey(), entry.getValue());
+            }
+            this.spill.flush();
+            this.spilled.add(entries.size());
+         }
+         catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to spill query metrics", e);
+         }
+      }
+   }
+
+   private void write(UUID id, Slot slot) throws IOException {
+      this.spill.write(id + "," + results(slot.packed) + "," + hops(slot.packed) + "," + slot.recordedAt);
+      this.spill.newLine();
+   }
+
+   /**
+    * Write out everything still held, then close the spill file.  Closing more than once does nothing.
+    */
+   @Override public void close() {
+      if (this.spill == null) {
+         return;
+      }
+
+      synchronized (this.spill) {
+         if (this.closed) {
+            return;
+         }
+
+         this.slots.drain((id, slot) -> {
+            try {
+               write(id, slot);
+               this.spilled.increment();
+            }
+            catch (IOException e) {
+               logger.log(Level.WARNING, "Unable to spill query metrics", e);
+            }
+         });
+
+         this.closed = true;
+         Utilities.closeQuietly(this.spill);
+      }
+   }
+
+   static long pack(int numResults, int numHops) {
+      return ((long) numResults << 32) | (numHops & 0xffffffffL);
+   }
+
+   static int results(long packed) {
+      return (int) (packed >>> 32);
+   }
+
+   static int hops(long packed) {
+      return (int) packed;
+   }
+
+   private static Metric unpack(long packed) {
+      return new Metric(results(packed), hops(packed));
+   }
+
+   private static class Slot implements StripedExpiringMap.Stamped {
+
+      private final long packed; // results in the high int, hops in the low int
+      private final long recordedAt;
+
+      Slot(long packed, long recordedAt) {
+         this.packed = packed;
+         this.recordedAt = recordedAt;
+      }
+
+      @Override public long getStamp() {
+         return this.recordedAt;
+      }
+   }
+}
@@ -0,0 +1,46 @@
+package cs555.chiba.util;
+
+import cs555.chiba.service.Identity;
+
+import java.util.UUID;
+
+/**
+ * Duplicate query detection for a peer.  -Dcsu.seen.filter picks the implementation: exact (the default) remembers every
+ * recent id, bloom keeps constant memory and accepts a small rate of false duplicates.
+ */
+public interface SeenFilter {
+
+   String FILTER_PROPERTY = "csu.seen.filter";
+
+   /**
+    * Record the query if it hasn't been seen yet.  Checking and recording happen as one step.
+    * @param parent The neighbor the query came from
+    * @return true if this is the first time the query has been seen
+    */
+   boolean markIfAbsent(UUID id, Identity parent);
+
+   boolean contains(UUID id);
+
+   /**
+    * The chance that an unseen query is reported as a duplicate
+    */
+   double estimatedFalsePositiveRate();
+
+   /**
+    * Size, memory and accuracy for the seenfilter command
+    */
+   String describe();
+
+   static SeenFilter fromProperties() {
+      String type = System.getProperty(FILTER_PROPERTY, "exact");
+
+      switch (type.toLowerCase()) {
+         case "bloom":
+            return BloomSeenFilter.fromProperties();
+         case "exact":
+            return SeenQueries.fromProperties();
+         default:
+            throw new IllegalArgumentException("Unknown seen filter [" + type + "], use exact or bloom");
+      }
+   }
+}
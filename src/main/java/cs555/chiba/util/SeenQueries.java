@@ -0,0 +1,81 @@
+package cs555.chiba.util;
+
+import cs555.chiba.service.Identity;
+
+import java.util.UUID;
+
+/**
+ * Remembers which queries this peer has already handled, and which neighbor first sent each one.
+ *
+ * The ids are held in a StripedExpiringMap, so concurrent queries rarely wait on each other.  Ids older than the time to
+ * live are dropped, and a full stripe drops its oldest id.  Memory stays bounded while recent queries are never forgotten
+ * just because others are in flight.
+ *
+ * -Dcsu.seen.size sets how many ids are kept in total, -Dcsu.seen.ttl.ms how long they are kept.
+ */
+public class SeenQueries implements SeenFilter {
+
+   static final String SIZE_PROPERTY = "csu.seen.size";
+   static final String TTL_PROPERTY = "csu.seen.ttl.ms";
+
+   private final StripedExpiringMap<Mark> marks;
+
+   public SeenQueries(int capacity, long ttlMillis) {
+      Utilities.checkArgument(capacity > 0, "The seen query capacity must be positive [" + capacity + "]");
+      Utilities.checkArgument(ttlMillis > 0, "The seen query time to live must be positive [" + ttlMillis + "]");
+      this.marks = new StripedExpiringMap<>(capacity, ttlMillis);
+   }
+
+   public static SeenQueries fromProperties() {
+      return new SeenQueries(Integer.getInteger(SIZE_PROPERTY, 4096), Long.getLong(TTL_PROPERTY, 120000L));
+   }
+
+   /**
+    * @param parent The neighbor the query came from, only kept for the first sighting
+    */
+   @Override public boolean markIfAbsent(UUID id, Identity parent) {
+      return this.marks.putIfAbsent(id, new Mark(parent, System.currentTimeMillis()));
+   }
+
+   @Override public boolean contains(UUID id) {
+      return this.marks.containsKey(id);
+   }
+
+   /**
+    * @return The neighbor that first sent the query, or null if it isn't remembered
+    */
+   public Identity getParent(UUID id) {
+      Mark mark = this.marks.get(id);
+      return mark == null ? null : mark.parent;
+   }
+
+   public int size() {
+      return this.marks.size();
+   }
+
+   /**
+    * Every remembered id is exact, so nothing new is ever reported as a duplicate
+    */
+   @Override public double estimatedFalsePositiveRate() {
+      return 0;
+   }
+
+   @Override public String describe() {
+      return "Seen Filter: exact\n" + "ids held: " + size() + " of " + this.marks.capacity() + "  window ms: " + this.marks.getTtlMillis();
+   }
+
+   private static class Mark implements StripedExpiringMap.Stamped {
+
+      private final Identity parent;
+      private final long seenAt;
+
+      Mark(Identity parent, long seenAt) {
+         this.parent = parent;
+         this.seenAt = seenAt;
+      }
+
+      @Override public long getStamp() {
+         return this.seenAt;
+      }
+   }
+}
@@ -0,0 +1,200 @@
+package cs555.chiba.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * A bounded map of query ids whose entries expire, shared by SeenQueries and QueryMetricStore.
+ *
+ * The entries are spread over independently locked stripes, so concurrent queries rarely wait on each other.  Each stripe
+ * keeps its entries in arrival order.  Entries older than the time to live are dropped from the front, and a full stripe
+ * drops its oldest entry.  The values carry their own time stamp, so an entry costs the key and the value alone.
+ */
+class StripedExpiringMap<V extends StripedExpiringMap.Stamped> {
+
+   interface Stamped {
+
+      /**
+       * @return When the entry was added, in epoch millis
+       */
+      long getStamp();
+   }
+
+   private static final int STRIPES = 16;
+
+   private final Stripe<V>[] stripes;
+   private final int stripeCapacity;
+   private final long ttlMillis;
+
+   @SuppressWarnings({ "unchecked", "rawtypes" }) StripedExpiringMap(int capacity, long ttlMillis) {
+      this.stripes = new Stripe[STRIPES];
+      this.stripeCapacity = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+      this.ttlMillis = ttlMillis;
+
+      for (int i = 0; i < STRIPES; i++) {
+         this.stripes[i] = new Stripe<>();
+      }
+   }
+
+   /**
+    * Add the entry unless the key is already held.  Whatever expires or is evicted along the way is discarded.
+    *
+    * @return true if the entry was added
+    */
+   boolean putIfAbsent(UUID key, V value) {
+      Stripe<V> stripe = stripeFor(key);
+
+      synchronized (stripe) {
+         stripe.expire(value.getStamp() - this.ttlMillis);
+
+         if (stripe.entries.containsKey(key)) {
+            return false;
+         }
+
+         stripe.entries.put(key, value);
+
+         if (stripe.entries.size() > this.stripeCapacity) {
+            Iterator<V> eldest = stripe.entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+         }
+
+         return true;
+      }
+   }
+
+   /**
+    * Add the entry, replacing and moving to the back anything already held for the key
+    *
+    * @return The entries that expired or were evicted to make room, oldest first
+    */
+   List<Map.Entry<UUID, V>> put(UUID key, V value) {
+      Stripe<V> stripe = stripeFor(key);
+
+      synchronized (stripe) {
+         List<Map.Entry<UUID, V>> dropped = stripe.expire(value.getStamp() - this.ttlMillis);
+         stripe.entries.remove(key);
+         stripe.entries.put(key, value);
+
+         if (stripe.entries.size() > this.stripeCapacity) {
+            Iterator<Map.Entry<UUID, V>> eldest = stripe.entries.entrySet().iterator();
+            dropped = dropped.isEmpty() ? new ArrayList<>() : dropped;
+            dropped.add(eldest.next());
+            eldest.remove();
+         }
+
+         return dropped;
+      }
+   }
+
+   /**
+    * Drops the stripe's expired entries first, so an expired key is never reported as held
+    */
+   boolean containsKey(UUID key) {
+      Stripe<V> stripe = stripeFor(key);
+
+      synchronized (stripe) {
+         stripe.expire(System.currentTimeMillis() - this.ttlMillis);
+         return stripe.entries.containsKey(key);
+      }
+   }
+
+   /**
+    * @return The value held for the key, or null
+    */
+   V get(UUID key) {
+      Stripe<V> stripe = stripeFor(key);
+
+      synchronized (stripe) {
+         return stripe.entries.get(key);
+      }
+   }
+
+   /**
+    * Visit every held entry.  Each stripe is copied first so the action runs without holding a lock.
+    */
+   void forEach(BiConsumer<UUID, V> action) {
+      for (Stripe<V> stripe : this.stripes) {
+         List<Map.Entry<UUID, V>> copy;
+
+         synchronized (stripe) {
+            copy = new ArrayList<>(stripe.entries.entrySet());
+         }
+
+         copy.forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
+      }
+   }
+
+   /**
+    * Remove every entry, handing each stripe's entries to the action once its lock is released
+    */
+   void drain(BiConsumer<UUID, V> action) {
+      for (Stripe<V> stripe : this.stripes) {
+         List<Map.Entry<UUID, V>> removed;
+
+         synchronized (stripe) {
+            removed = new ArrayList<>(stripe.entries.entrySet());
+            stripe.entries.clear();
+         }
+
+         removed.forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
+      }
+   }
+
+   int size() {
+      int size = 0;
+
+      for (Stripe<V> stripe : this.stripes) {
+         synchronized (stripe) {
+            size += stripe.entries.size();
+         }
+      }
+
+      return size;
+   }
+
+   int capacity() {
+      return this.stripeCapacity * STRIPES;
+   }
+
+   long getTtlMillis() {
+      return this.ttlMillis;
+   }
+
+   private Stripe<V> stripeFor(UUID key) {
+      int hash = key.hashCode();
+      return this.stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+   }
+
+   private static class Stripe<V extends Stamped> {
+
+      private final LinkedHashMap<UUID, V> entries = new LinkedHashMap<>(); // insertion ordered, so the oldest is first
+
+      List<Map.Entry<UUID, V>> expire(long cutoff) {
+         List<Map.Entry<UUID, V>> expired = Collections.emptyList();
+         Iterator<Map.Entry<UUID, V>> it = this.entries.entrySet().iterator();
+
+         while (it.hasNext()) {
+            Map.Entry<UUID, V> entry = it.next();
+
+            if (entry.getValue().getStamp() > cutoff) {
+               break;
+            }
+
+            if (expired.isEmpty()) {
+               expired = new ArrayList<>();
+            }
+            expired.add(entry);
+            it.remove();
+         }
+
+         return expired;
+      }
+   }
+}
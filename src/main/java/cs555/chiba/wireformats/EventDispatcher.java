@@ -0,0 +1,206 @@
+package cs555.chiba.wireformats;
+
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sits between decoding a message and handing it to the node, so a slow handler doesn't hold up the socket it came in on.
+ *
+ * Each worker owns a lane, and every message from a connection goes to the same lane, so messages from one sender are
+ * still handled in the order they arrived.  Each message type has a bounded number of slots.  When a type's slots are all
+ * taken, a TCP receiver blocks until one frees up, which stops it reading from its socket until the workers catch up.
+ * A selector loop serves many sockets and can't block, so it uses tryDispatch instead: the message is handed back, the
+ * loop stops reading that one connection, and it's told when a slot frees up.
+ *
+ * -Dcsu.dispatch.workers sets the number of workers.  The default, 0, runs handlers on the receiving thread like before,
+ * except under the NIO transport, where handlers would stall the selector loop, so one worker per core is started.
+ * -Dcsu.dispatch.queue sets the slots per message type.
+ */
+public class EventDispatcher implements AutoCloseable {
+
+   private static final Logger logger = Logger.getLogger(EventDispatcher.class.getName());
+
+   static final String WORKERS_PROPERTY = "csu.dispatch.workers";
+   static final String QUEUE_PROPERTY = "csu.dispatch.queue";
+
+   private final Lane[] lanes;
+   private final Semaphore[] slots;
+   private final Queue<Runnable>[] waiting; // receivers to tell when a slot frees up
+   private final AtomicInteger[] depth;
+   private final AtomicInteger[] maxDepth;
+   private final LongAdder[] handled;
+   private final LongAdder[] handlerNanos;
+   private final AtomicLong[] maxHandlerNanos;
+
+   @SuppressWarnings({ "unchecked", "rawtypes" }) EventDispatcher(int workers, int queueSize) {
+      int types = Protocol.values().length;
+      this.slots = new Semaphore[types];
+      this.waiting = new Queue[types];
+      this.depth = new AtomicInteger[types];
+      this.maxDepth = new AtomicInteger[types];
+      this.handled = new LongAdder[types];
+      this.handlerNanos = new LongAdder[types];
+      this.maxHandlerNanos = new AtomicLong[types];
+
+      for (int i = 0; i < types; i++) {
+         this.slots[i] = new Semaphore(Math.max(1, queueSize));
+         this.waiting[i] = new ConcurrentLinkedQueue<>();
+         this.depth[i] = new AtomicInteger();
+         this.maxDepth[i] = new AtomicInteger();
+         this.handled[i] = new LongAdder();
+         this.handlerNanos[i] = new LongAdder();
+         this.maxHandlerNanos[i] = new AtomicLong();
+      }
+
+      this.lanes = new Lane[Math.max(0, workers)];
+      for (int i = 0; i < this.lanes.length; i++) {
+         this.lanes[i] = new Lane("EventDispatcher-" + i);
+         this.lanes[i].start();
+      }
+   }
+
+   /**
+    * @param selectorReceivers true when messages are read on selector loops, which should never run handlers themselves
+    */
+   static EventDispatcher fromProperties(boolean selectorReceivers) {
+      int workers = selectorReceivers ? Runtime.getRuntime().availableProcessors() : 0;
+      return new EventDispatcher(Integer.getInteger(WORKERS_PROPERTY, workers), Integer.getInteger(QUEUE_PROPERTY, 1024));
+   }
+
+   /**
+    * Hand the event to its handler, on this thread when there are no workers
+    * @param socket The connection the event came from, it picks the lane
+    */
+   void dispatch(Event event, Socket socket, Consumer<Event> handler) throws InterruptedException {
+      int type = event.getType();
+
+      if (this.lanes.length == 0) {
+         handle(type, event, handler);
+         return;
+      }
+
+      this.slots[type].acquire(); // blocks the receiver while this type is backed up
+      enqueue(type, event, socket, handler);
+   }
+
+   /**
+    * Hand the event to its handler without ever blocking
+    * @param onFree Run once, on a worker, when a slot for the type frees up if the event wasn't taken
+    * @return false if the type is backed up and the event wasn't taken
+    */
+   boolean tryDispatch(Event event, Socket socket, Consumer<Event> handler, Runnable onFree) {
+      int type = event.getType();
+
+      if (this.lanes.length == 0) {
+         handle(type, event, handler);
+         return true;
+      }
+
+      if (!this.slots[type].tryAcquire()) {
+         this.waiting[type].add(onFree);
+
+         // a slot freed between the try and the add wouldn't have seen the waiter
+         if (this.slots[type].availablePermits() > 0) {
+            wakeWaiter(type);
+         }
+         return false;
+      }
+
+      enqueue(type, event, socket, handler);
+      return true;
+   }
+
+   private void enqueue(int type, Event event, Socket socket, Consumer<Event> handler) {
+      this.maxDepth[type].accumulateAndGet(this.depth[type].incrementAndGet(), Math::max);
+      int lane = socket == null ? 0 : Math.floorMod(System.identityHashCode(socket), this.lanes.length);
+      this.lanes[lane].queue.add(() -> {
+         try {
+            handle(type, event, handler);
+         }
+         finally {
+            this.depth[type].decrementAndGet();
+            this.slots[type].release();
+            wakeWaiter(type);
+         }
+      });
+   }
+
+   private void wakeWaiter(int type) {
+      Runnable waiter = this.waiting[type].poll();
+      if (waiter != null) {
+         waiter.run();
+      }
+   }
+
+   private void handle(int type, Event event, Consumer<Event> handler) {
+      long start = System.nanoTime();
+
+      try {
+         handler.accept(event);
+      }
+      finally {
+         long elapsed = System.nanoTime() - start;
+         this.handled[type].increment();
+         this.handlerNanos[type].add(elapsed);
+         this.maxHandlerNanos[type].accumulateAndGet(elapsed, Math::max);
+      }
+   }
+
+   public String getMetrics() {
+      StringBuilder out = new StringBuilder("Event Dispatch: ").append(this.lanes.length == 0 ? "inline" : this.lanes.length + " workers").append("\n");
+
+      for (Protocol protocol : Protocol.values()) {
+         int type = protocol.ordinal();
+         long count = this.handled[type].sum();
+
+         if (count == 0 && this.depth[type].get() == 0) {
+            continue;
+         }
+
+         double avg = count == 0 ? 0 : this.handlerNanos[type].sum() / (double) count / 1000000.0;
+         out.append(String.format("%-20s handled: %d  depth: %d  max depth: %d  avg ms: %.3f  max ms: %.3f%n", protocol, count, this.depth[type].get(), this.maxDepth[type].get(), avg, this.maxHandlerNanos[type].get() / 1000000.0));
+      }
+
+      return out.toString();
+   }
+
+   @Override public void close() {
+      for (Lane lane : this.lanes) {
+         lane.interrupt();
+      }
+   }
+
+   private static class Lane extends Thread {
+
+      private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+
+      Lane(String name) {
+         super(name);
+         setDaemon(true);
+      }
+
+      @Override public void run() {
+         while (!isInterrupted()) {
+            try {
+               this.queue.take().run();
+            }
+            catch (InterruptedException e) {
+               break;
+            }
+            catch (Exception e) {
+               logger.log(Level.SEVERE, "Event handler failed on " + getName(), e);
+            }
+         }
+      }
+   }
+}
@@ -18,6 +18,7 @@ public class EventFactory {
 
    private static EventFactory instance;
    private ServiceNode n;
+   private EventDispatcher dispatcher;
 
    //private constructor to avoid client applications to use constructor
    private EventFactory() {
@@ -29,60 +30,92 @@ public class EventFactory {
     * @return EventFactory The instance
     */
    public static EventFactory getInstance(ServiceNode n) {
+      return getInstance(n, false);
+   }
+
+   /**
+    * @param selectorReceivers true when messages are read on NIO selector loops, so handlers are moved onto workers
+    */
+   public static EventFactory getInstance(ServiceNode n, boolean selectorReceivers) {
       if (instance == null) {
          synchronized (EventFactory.class) {
             if (instance == null) {
                instance = new EventFactory();
                instance.n = n;
+               instance.dispatcher = EventDispatcher.fromProperties(selectorReceivers);
             }
          }
       }
       return instance;
    }
 
+   public EventDispatcher getDispatcher() {
+      return this.dispatcher;
+   }
+
    /**
     * Deserializes a message and routes it to the associated Node's onEvent method
     * @param message The serialized message to be routed
     * @param socket The socket that the message was received over
     */
    public void processMessage(byte[] message, Socket socket) throws IOException {
+      Event event = decode(message, socket);
+
+      if (event == null) {
+         return;
+      }
+
+      try {
+         this.dispatcher.dispatch(event, socket, this.n::onEvent);
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while waiting to dispatch [" + event.getClass().getSimpleName() + "]", e);
+      }
+   }
+
+   /**
+    * Like processMessage, but for receivers that must never block
+    * @param onFree Run when the message can be offered again, if it wasn't taken
+    * @return false if the message's type is backed up and it should be offered again later
+    */
+   public boolean tryProcessMessage(byte[] message, Socket socket, Runnable onFree) throws IOException {
+      Event event = decode(message, socket);
+      return event == null || this.dispatcher.tryDispatch(event, socket, this.n::onEvent, onFree);
+   }
+
+   private Event decode(byte[] message, Socket socket) throws IOException {
       Protocol type = Protocol.values()[message[0]];
       switch (type) {
          case INTRODUCTION:
-            this.n.onEvent(new IntroductionMessage(message, socket));
-            break;
+            return new IntroductionMessage(message, socket);
          case REGISTER:
-            this.n.onEvent(new RegisterMessage(message));
-            break;
+            return new RegisterMessage(message);
          case RANDOM_WALK:
-            this.n.onEvent(new RandomWalk(message, socket));
-            break;
+            return new RandomWalk(message, socket);
          case FLOOD:
-            this.n.onEvent(new Flood(message, socket));
-            break;
+            return new Flood(message, socket);
          case GOSSIP_QUERY:
-            this.n.onEvent(new GossipQuery(message, socket));
-            break;
+            return new GossipQuery(message, socket);
          case GOSSIP_DATA:
-             this.n.onEvent(new GossipData(message, socket));
-             break;
+             return new GossipData(message, socket);
          case GOSSIP_ENTRIES:
-             this.n.onEvent(new GossipEntries(message, socket));
-             break;
+             return new GossipEntries(message, socket);
          case INITIATE_CONNECTIONS:
-            this.n.onEvent(new InitiateConnectionsMessage(message));
-            break;
+            return new InitiateConnectionsMessage(message);
          case SHUTDOWN:
-            this.n.onEvent(new ShutdownMessage(message));
-            break;
+            return new ShutdownMessage(message);
          case LIST_PEERS_REQUEST:
-            this.n.onEvent(new ListPeersRequestMessage(message));
-            break;
+            return new ListPeersRequestMessage(message);
          case LIST_PEERS_RESPONSE:
-            this.n.onEvent(new ListPeersResponseMessage(message));
-            break;
+            return new ListPeersResponseMessage(message);
+         case GOSSIP_PULL:
+            return new GossipPull(message);
+         case GOSSIP_DIGEST:
+            return new GossipDigest(message);
          default:
             System.out.println("Event Factory cannot recognize message type [" + type + "]");
+            return null;
       }
    }
 }
\ No newline at end of file
@@ -12,14 +12,22 @@ package cs555.chiba.wireformats;
 import cs555.chiba.service.Identity;
 
 import java.net.Socket;
-import java.nio.ByteBuffer;
 import java.util.UUID;
 
 
 public class Flood implements Event{
 
+    /**
+     * How results travel back.  Direct floods report to the originator from every peer.  Convergecast floods wait for
+     * the replies of the peers they forwarded to and send one combined reply to the peer they heard the query from.
+     */
+    public static final byte MODE_DIRECT = 0;
+    public static final byte MODE_CONVERGECAST = 1;
+    public static final byte MODE_REPLY = 2;
+
+    private static final long RING_MIX = 0x9E3779B97F4A7C15L;
+
     private final int type = Protocol.FLOOD.ordinal();
-    private final int SIZE_OF_INT = 4;
     private UUID ID;
     private Identity senderID;
     private Identity originatorId;
@@ -29,6 +37,8 @@ public class Flood implements Event{
     private Socket socket;
     private int totalDevicesWithMetric = 0;
     private int totalDevicesChecked = 0;
+    private byte mode = MODE_DIRECT;
+    private int ring = 0; // expanding ring searches re-issue the same query with a larger hop limit
 
     /**
      * This constructor should be used when creating a message
@@ -51,34 +61,23 @@ public class Flood implements Event{
      * @param message The serialized message
      * @param socket  The socket this message was received from
      */
-    public Flood(byte[] message, Socket socket){ 
-    	ByteBuffer b = ByteBuffer.allocate(message.length).put(message);
-    	b.rewind();
-        b.get();
-        int IDlen = b.getInt();
-        byte[] IDbytes = new byte[IDlen]; 
-        b.get(IDbytes);
-        ID = UUID.fromString(new String(IDbytes));
-
-        int senderIDlen = b.getInt();
-        byte[] senderIDbytes = new byte[senderIDlen]; 
-        b.get(senderIDbytes);
-        senderID = Identity.builder().withIdentityKey(new String(senderIDbytes)).build();
-
-        int originatorIdLength = b.getInt();
-        byte[] originatorBytes = new byte[originatorIdLength];
-        b.get(originatorBytes);
-        this.originatorId = Identity.builder().withIdentityKey(new String(originatorBytes)).build();
-
-        int targetLen = b.getInt();
-        byte[] targetBytes = new byte[targetLen]; 
-        b.get(targetBytes);
-        target = new String(targetBytes);
-
-        currentHop = b.getInt();
-        hopLimit = b.getInt();
-        totalDevicesWithMetric = b.getInt();
-        totalDevicesChecked = b.getInt();
+    public Flood(byte[] message, Socket socket){
+        WireReader input = WireReader.versioned(message);
+        ID = input.readUUID();
+        senderID = input.readIdentity();
+        this.originatorId = input.readIdentity();
+        target = input.readString();
+        currentHop = input.readInt();
+        hopLimit = input.readInt();
+        totalDevicesWithMetric = input.readInt();
+        totalDevicesChecked = input.readInt();
+        // older peers don't send a mode, their floods are direct
+        if (input.hasRemaining()) {
+            mode = input.readByte();
+        }
+        if (input.hasRemaining()) {
+            ring = input.readInt();
+        }
         this.socket = socket;
     }
 
@@ -87,25 +86,18 @@ public class Flood implements Event{
      * @return byte[] The serialized message
      */
     public byte[] getBytes(){
-    	byte[] IDbytes = ID.toString().getBytes();
-    	byte[] senderIDbytes = senderID.getIdentityKey().getBytes();
-        byte[] originatorIDbytes = originatorId.getIdentityKey().getBytes();
-    	byte[] targetBytes = target.getBytes();
-    	ByteBuffer b = ByteBuffer.allocate(IDbytes.length+senderIDbytes.length+originatorIDbytes.length+targetBytes.length+8*SIZE_OF_INT+1);
-    	b.put((byte)type);
-    	b.putInt(IDbytes.length);
-    	b.put(IDbytes);
-    	b.putInt(senderIDbytes.length);
-    	b.put(senderIDbytes);
-        b.putInt(originatorIDbytes.length);
-        b.put(originatorIDbytes);
-    	b.putInt(targetBytes.length);
-    	b.put(targetBytes);
-    	b.putInt(currentHop);
-    	b.putInt(hopLimit);
-    	b.putInt(totalDevicesWithMetric);
-    	b.putInt(totalDevicesChecked);
-        return b.array();
+        return WireWriter.encodeVersioned(type, output -> {
+            output.writeUUID(ID);
+            output.writeIdentity(senderID);
+            output.writeIdentity(originatorId);
+            output.writeCachedString(target);
+            output.writeInt(currentHop);
+            output.writeInt(hopLimit);
+            output.writeInt(totalDevicesWithMetric);
+            output.writeInt(totalDevicesChecked);
+            output.writeByte(mode);
+            output.writeInt(ring);
+        });
     }
 
     public int getType(){
@@ -152,6 +144,30 @@ public class Flood implements Event{
         this.totalDevicesChecked = totalDevicesChecked;
     }
 
+    public byte getMode() {
+        return mode;
+    }
+
+    public void setMode(byte mode) {
+        this.mode = mode;
+    }
+
+    public int getRing() {
+        return ring;
+    }
+
+    public void setRing(int ring) {
+        this.ring = ring;
+    }
+
+    /**
+     * Identifies one issue of the query.  The first issue is the query id, each re-issue gets its own id derived from it,
+     * so a peer can tell a new ring apart from a duplicate while the query id still says whether it has been counted.
+     */
+    public UUID getRingID() {
+        return ring == 0 ? ID : new UUID(ID.getMostSignificantBits(), ID.getLeastSignificantBits() ^ (RING_MIX * ring));
+    }
+
     public Identity getOriginatorId() {
         return originatorId;
     }
@@ -0,0 +1,84 @@
+package cs555.chiba.wireformats;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.AttenuatedBloomFilter;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * The metric names reachable through the sender, as an attenuated Bloom filter in place of the full location entries
+ */
+public class GossipDigest extends Message {
+
+   private Identity senderID;
+   private AttenuatedBloomFilter filter;
+
+   public GossipDigest(Identity senderID, AttenuatedBloomFilter filter) {
+      super(Protocol.GOSSIP_DIGEST);
+      this.senderID = senderID;
+      this.filter = filter;
+   }
+
+   public GossipDigest(byte[] message) throws IOException {
+      super(Protocol.GOSSIP_DIGEST, message);
+   }
+
+   @Override void parse(WireReader input) {
+      this.senderID = input.readIdentity();
+      int depth = input.readByte();
+      int hashes = input.readByte();
+      int bits = input.readInt();
+      long[] words = new long[input.readInt()];
+
+      for (int i = 0; i < words.length; i++) {
+         words[i] = input.readLong();
+      }
+
+      this.filter = new AttenuatedBloomFilter(depth, bits, hashes, words);
+   }
+
+   @Override void spool(WireWriter output) {
+      output.writeIdentity(this.senderID);
+      output.writeByte(this.filter.getDepth());
+      output.writeByte(this.filter.getHashes());
+      output.writeInt(this.filter.getBits());
+      output.writeInt(this.filter.getWords().length);
+
+      for (long word : this.filter.getWords()) {
+         output.writeLong(word);
+      }
+   }
+
+   /**
+    * Encoding can't fail, so unlike other messages this doesn't declare IOException and digests can be built inside a broadcast
+    */
+   @Override public byte[] getBytes() {
+      return WireWriter.encode(getType(), this::spool);
+   }
+
+   public Identity getSenderID() {
+      return this.senderID;
+   }
+
+   public AttenuatedBloomFilter getFilter() {
+      return this.filter;
+   }
+
+   @Override public boolean equals(Object o) {
+      if (this == o)
+         return true;
+      if (o == null || getClass() != o.getClass())
+         return false;
+      GossipDigest that = (GossipDigest) o;
+      return senderID.equals(that.senderID) && filter.equals(that.filter);
+   }
+
+   @Override public int hashCode() {
+      return Objects.hash(senderID, filter);
+   }
+
+   @Override public String toString() {
+      return "GossipDigest{" + "senderID=" + senderID + ", filter=" + filter + "} " + super.toString();
+   }
+}
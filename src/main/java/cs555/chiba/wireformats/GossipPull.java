@@ -0,0 +1,52 @@
+package cs555.chiba.wireformats;
+
+import cs555.chiba.service.Identity;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Asks a neighbor for the gossip it hasn't sent us yet
+ */
+public class GossipPull extends Message {
+
+   private Identity senderID;
+
+   public GossipPull(Identity senderID) {
+      super(Protocol.GOSSIP_PULL);
+      this.senderID = senderID;
+   }
+
+   public GossipPull(byte[] message) throws IOException {
+      super(Protocol.GOSSIP_PULL, message);
+   }
+
+   @Override void parse(WireReader input) {
+      this.senderID = input.readIdentity();
+   }
+
+   @Override void spool(WireWriter output) {
+      output.writeIdentity(this.senderID);
+   }
+
+   public Identity getSenderID() {
+      return this.senderID;
+   }
+
+   @Override public boolean equals(Object o) {
+      if (this == o)
+         return true;
+      if (o == null || getClass() != o.getClass())
+         return false;
+      GossipPull that = (GossipPull) o;
+      return senderID.equals(that.senderID);
+   }
+
+   @Override public int hashCode() {
+      return Objects.hash(senderID);
+   }
+
+   @Override public String toString() {
+      return "GossipPull{" + "senderID=" + senderID + "} " + super.toString();
+   }
+}
@@ -12,14 +12,12 @@ package cs555.chiba.wireformats;
 import cs555.chiba.service.Identity;
 
 import java.net.Socket;
-import java.nio.ByteBuffer;
 import java.util.UUID;
 
 
 public class GossipQuery implements Event{
 
     private final int type = Protocol.GOSSIP_QUERY.ordinal();
-    private final int SIZE_OF_INT = 4;
     private int gossipType;
     private UUID ID;
     private Identity senderID;
@@ -53,35 +51,17 @@ public class GossipQuery implements Event{
      * @param message The serialized message
      * @param socket  The socket this message was received from
      */
-    public GossipQuery(byte[] message, Socket socket){ 
-    	ByteBuffer b = ByteBuffer.allocate(message.length).put(message);
-    	b.rewind();
-        b.get();
-        int IDlen = b.getInt();
-        byte[] IDbytes = new byte[IDlen]; 
-        b.get(IDbytes);
-        ID = UUID.fromString(new String(IDbytes));
-
-        int senderIdLength = b.getInt();
-        byte[] senderBytes = new byte[senderIdLength];
-        b.get(senderBytes);
-        senderID = Identity.builder().withIdentityKey(new String(senderBytes)).build();
-
-        int originatorIdLength = b.getInt();
-        byte[] originatorBytes = new byte[originatorIdLength];
-        b.get(originatorBytes);
-        this.originatorId = Identity.builder().withIdentityKey(new String(originatorBytes)).build();
-
-        int targetLen = b.getInt();
-        byte[] targetBytes = new byte[targetLen]; 
-        b.get(targetBytes);
-        target = new String(targetBytes);
-
-        currentHop = b.getInt();
-        hopLimit = b.getInt();
-        totalDevicesWithMetric = b.getInt();
-        totalDevicesChecked = b.getInt();
-        gossipType = b.getInt();
+    public GossipQuery(byte[] message, Socket socket){
+        WireReader input = WireReader.versioned(message);
+        ID = input.readUUID();
+        senderID = input.readIdentity();
+        this.originatorId = input.readIdentity();
+        target = input.readString();
+        currentHop = input.readInt();
+        hopLimit = input.readInt();
+        totalDevicesWithMetric = input.readInt();
+        totalDevicesChecked = input.readInt();
+        gossipType = input.readInt();
         this.socket = socket;
     }
 
@@ -90,26 +70,17 @@ public class GossipQuery implements Event{
      * @return byte[] The serialized message
      */
     public byte[] getBytes(){
-    	byte[] IDbytes = ID.toString().getBytes();
-    	byte[] senderIDbytes = senderID.getIdentityKey().getBytes();
-        byte[] originatorIDbytes = originatorId.getIdentityKey().getBytes();
-    	byte[] targetBytes = target.getBytes();
-    	ByteBuffer b = ByteBuffer.allocate(IDbytes.length+senderIDbytes.length+originatorIDbytes.length+targetBytes.length+9*SIZE_OF_INT+1);
-    	b.put((byte)type);
-    	b.putInt(IDbytes.length);
-    	b.put(IDbytes);
-    	b.putInt(senderIDbytes.length);
-    	b.put(senderIDbytes);
-    	b.putInt(originatorIDbytes.length);
-    	b.put(originatorIDbytes);
-    	b.putInt(targetBytes.length);
-    	b.put(targetBytes);
-    	b.putInt(currentHop);
-    	b.putInt(hopLimit);
-    	b.putInt(totalDevicesWithMetric);
-    	b.putInt(totalDevicesChecked);
-    	b.putInt(gossipType);
-        return b.array();
+        return WireWriter.encodeVersioned(type, output -> {
+            output.writeUUID(ID);
+            output.writeIdentity(senderID);
+            output.writeIdentity(originatorId);
+            output.writeCachedString(target);
+            output.writeInt(currentHop);
+            output.writeInt(hopLimit);
+            output.writeInt(totalDevicesWithMetric);
+            output.writeInt(totalDevicesChecked);
+            output.writeInt(gossipType);
+        });
     }
 
     public int getType(){
@@ -2,8 +2,6 @@ package cs555.chiba.wireformats;
 
 import cs555.chiba.service.Identity;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
@@ -24,14 +22,14 @@ public class InitiateConnectionsMessage extends Message {
       super(Protocol.INITIATE_CONNECTIONS, message);
    }
 
-   @Override void parse(DataInputStream input) throws IOException {
-      this.deviceString = readString(input);
-      this.neighbors = readListOfIdentities(input);
+   @Override void parse(WireReader input) {
+      this.deviceString = input.readString();
+      this.neighbors = input.readIdentities();
    }
 
-   @Override void spool(DataOutputStream output) throws IOException {
-      sendString(this.deviceString, output);
-      sendListOfIdentities(this.neighbors, output);
+   @Override void spool(WireWriter output) {
+      output.writeString(this.deviceString);
+      output.writeIdentities(this.neighbors);
    }
 
    public List<Identity> getNeighbors() {
@@ -2,8 +2,6 @@ package cs555.chiba.wireformats;
 
 import cs555.chiba.service.Identity;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.Objects;
@@ -23,13 +21,12 @@ public class IntroductionMessage extends Message {
       this.socket = socket;
    }
 
-   @Override void parse(DataInputStream input) throws IOException {
-      String key = readString(input);
-      this.identity = Identity.builder().withIdentityKey(key).build();
+   @Override void parse(WireReader input) {
+      this.identity = input.readIdentity();
    }
 
-   @Override void spool(DataOutputStream output) throws IOException {
-      sendString(this.identity.getIdentityKey(), output);
+   @Override void spool(WireWriter output) {
+      output.writeIdentity(this.identity);
    }
 
    public Identity getIdentity() {
@@ -1,7 +1,5 @@
 package cs555.chiba.wireformats;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 
 public class ListPeersRequestMessage extends Message {
@@ -14,11 +12,11 @@ public class ListPeersRequestMessage extends Message {
       super(Protocol.LIST_PEERS_REQUEST, message);
    }
 
-   @Override void parse(DataInputStream input) throws IOException {
+   @Override void parse(WireReader input) {
 
    }
 
-   @Override void spool(DataOutputStream output) throws IOException {
+   @Override void spool(WireWriter output) {
 
    }
 
@@ -2,8 +2,6 @@ package cs555.chiba.wireformats;
 
 import cs555.chiba.service.Identity;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
@@ -23,14 +21,14 @@ public class ListPeersResponseMessage extends Message {
       super(Protocol.LIST_PEERS_RESPONSE, message);
    }
 
-   @Override void parse(DataInputStream input) throws IOException {
-      this.peer = Identity.builder().withIdentityKey(readString(input)).build();
-      this.neighbors = readListOfIdentities(input);
+   @Override void parse(WireReader input) {
+      this.peer = input.readIdentity();
+      this.neighbors = input.readIdentities();
    }
 
-   @Override void spool(DataOutputStream output) throws IOException {
-      sendString(this.peer.getIdentityKey(), output);
-      sendListOfIdentities(this.neighbors, output);
+   @Override void spool(WireWriter output) {
+      output.writeIdentity(this.peer);
+      output.writeIdentities(this.neighbors);
    }
 
    public List<Identity> getNeighbors() {
@@ -1,18 +1,13 @@
 package cs555.chiba.wireformats;
 
-import cs555.chiba.service.Identity;
-
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.BufferUnderflowException;
 import java.util.Objects;
 
+/**
+ * Messages read and write their fields through the shared WireReader/WireWriter codec.  Subclasses only list their fields
+ * in parse and spool.
+ */
 public abstract class Message implements Event {
 
    private final int type;
@@ -23,63 +18,27 @@ public abstract class Message implements Event {
 
    Message(Protocol type, byte[] message) throws IOException {
       this.type = type.ordinal();
-      ByteArrayInputStream baInputStream = new ByteArrayInputStream(message);
-      DataInputStream input = new DataInputStream(new BufferedInputStream(baInputStream));
-      input.readByte();
-      parse(input);
+
+      try {
+         parse(new WireReader(message));
+      }
+      catch (BufferUnderflowException e) {
+         throw new IOException("The message is shorter than its fields say it is", e);
+      }
    }
 
    @Override public byte[] getBytes() throws IOException {
-      ByteArrayOutputStream baOutputStream = new ByteArrayOutputStream();
-      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(baOutputStream));
-      output.writeByte(this.type);
-      spool(output);
-      output.flush();
-      return baOutputStream.toByteArray();
+      return WireWriter.encode(this.type, this::spool);
    }
 
-   abstract void parse(DataInputStream input) throws IOException;
+   abstract void parse(WireReader input);
 
-   abstract void spool(DataOutputStream output) throws IOException;
+   abstract void spool(WireWriter output);
 
    @Override public int getType() {
       return this.type;
    }
 
-   void sendString(String field, DataOutputStream output) throws IOException {
-      byte[] fieldBytes = field.getBytes();
-      int fieldLength = fieldBytes.length;
-      output.writeInt(fieldLength);
-      output.write(fieldBytes);
-   }
-
-   String readString(DataInputStream input) throws IOException {
-      int fieldLength = input.readInt();
-      byte[] fieldBytes = new byte[fieldLength];
-      input.readFully(fieldBytes);
-      return new String(fieldBytes);
-   }
-
-   void sendListOfIdentities(List<Identity> identities, DataOutputStream output) throws IOException {
-      output.writeInt(identities.size());
-      for (Identity identity : identities) {
-         sendString(identity.getIdentityKey(), output);
-      }
-   }
-
-   List<Identity> readListOfIdentities(DataInputStream input) throws IOException {
-      List<Identity> identities = new ArrayList<>();
-      int total = input.readInt();
-
-      if (total > 0) {
-         for (int i = 0; i < total; i++) {
-            identities.add(Identity.builder().withIdentityKey(readString(input)).build());
-         }
-      }
-
-      return identities;
-   }
-
    @Override public boolean equals(Object o) {
       if (this == o)
          return true;
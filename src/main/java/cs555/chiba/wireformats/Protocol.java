@@ -10,5 +10,5 @@
 package cs555.chiba.wireformats;
 
 enum Protocol {
-   FLOOD, RANDOM_WALK, GOSSIP_DATA, GOSSIP_ENTRIES, GOSSIP_QUERY, INTRODUCTION, REGISTER, INITIATE_CONNECTIONS, SHUTDOWN, LIST_PEERS_REQUEST, LIST_PEERS_RESPONSE
+   FLOOD, RANDOM_WALK, GOSSIP_DATA, GOSSIP_ENTRIES, GOSSIP_QUERY, INTRODUCTION, REGISTER, INITIATE_CONNECTIONS, SHUTDOWN, LIST_PEERS_REQUEST, LIST_PEERS_RESPONSE, GOSSIP_PULL, GOSSIP_DIGEST
 }
@@ -12,14 +12,22 @@ package cs555.chiba.wireformats;
 import cs555.chiba.service.Identity;
 
 import java.net.Socket;
-import java.nio.ByteBuffer;
 import java.util.UUID;
 
 
 public class RandomWalk implements Event{
 
+    /**
+     * A walk carries the totals gathered since it last reported.  With k walkers each walk has its own walker number,
+     * and walks looking for a number of devices check in with the originator every few hops.  The check in reports the
+     * walk's totals so far, and the originator answers with continue or stop.
+     */
+    public static final byte MODE_WALK = 0;
+    public static final byte MODE_CHECK_IN = 1;
+    public static final byte MODE_CONTINUE = 2;
+    public static final byte MODE_STOP = 3;
+
     private final int type = Protocol.RANDOM_WALK.ordinal();
-    private final int SIZE_OF_INT = 4;
     private UUID ID;
     private Identity senderID;
     private Identity originatorId;
@@ -29,6 +37,10 @@ public class RandomWalk implements Event{
     private Socket socket;
     private int totalDevicesWithMetric = 0;
     private int totalDevicesChecked = 0;
+    private byte mode = MODE_WALK;
+    private int walker = 0;
+    private int wantedDevices = 0; // 0 walks to the hop limit
+    private int checkInHops = 0; // 0 never checks in
 
     /**
      * This constructor should be used when creating a message
@@ -51,34 +63,23 @@ public class RandomWalk implements Event{
      * @param message The serialized message
      * @param socket  The socket this message was received from
      */
-    public RandomWalk(byte[] message, Socket socket){ 
-    	ByteBuffer b = ByteBuffer.allocate(message.length).put(message);
-    	b.rewind();
-        b.get();
-        int IDlen = b.getInt();
-        byte[] IDbytes = new byte[IDlen]; 
-        b.get(IDbytes);
-        ID = UUID.fromString(new String(IDbytes));
-
-        int senderIDlen = b.getInt();
-        byte[] senderIDbytes = new byte[senderIDlen];
-        b.get(senderIDbytes);
-        senderID = Identity.builder().withIdentityKey(new String(senderIDbytes)).build();
-
-        int originatorIdLength = b.getInt();
-        byte[] originatorBytes = new byte[originatorIdLength];
-        b.get(originatorBytes);
-        this.originatorId = Identity.builder().withIdentityKey(new String(originatorBytes)).build();
-
-        int targetLen = b.getInt();
-        byte[] targetBytes = new byte[targetLen]; 
-        b.get(targetBytes);
-        target = new String(targetBytes);
-
-        currentHop = b.getInt();
-        hopLimit = b.getInt();
-        totalDevicesWithMetric = b.getInt();
-        totalDevicesChecked = b.getInt();
+    public RandomWalk(byte[] message, Socket socket){
+        WireReader input = WireReader.versioned(message);
+        ID = input.readUUID();
+        senderID = input.readIdentity();
+        this.originatorId = input.readIdentity();
+        target = input.readString();
+        currentHop = input.readInt();
+        hopLimit = input.readInt();
+        totalDevicesWithMetric = input.readInt();
+        totalDevicesChecked = input.readInt();
+        // older peers only send single walkers that never check in
+        if (input.hasRemaining()) {
+            mode = input.readByte();
+            walker = input.readInt();
+            wantedDevices = input.readInt();
+            checkInHops = input.readInt();
+        }
         this.socket = socket;
     }
 
@@ -87,25 +88,20 @@ public class RandomWalk implements Event{
      * @return byte[] The serialized message
      */
     public byte[] getBytes(){
-    	byte[] IDbytes = ID.toString().getBytes();
-    	byte[] senderIDbytes = senderID.getIdentityKey().getBytes();
-        byte[] originatorIDbytes = originatorId.getIdentityKey().getBytes();
-    	byte[] targetBytes = target.getBytes();
-    	ByteBuffer b = ByteBuffer.allocate(IDbytes.length+senderIDbytes.length+originatorIDbytes.length+targetBytes.length+8*SIZE_OF_INT+1);
-    	b.put((byte)type);
-    	b.putInt(IDbytes.length);
-    	b.put(IDbytes);
-    	b.putInt(senderIDbytes.length);
-    	b.put(senderIDbytes);
-        b.putInt(originatorIDbytes.length);
-        b.put(originatorIDbytes);
-    	b.putInt(targetBytes.length);
-    	b.put(targetBytes);
-    	b.putInt(currentHop);
-    	b.putInt(hopLimit);
-    	b.putInt(totalDevicesWithMetric);
-    	b.putInt(totalDevicesChecked);
-        return b.array();
+        return WireWriter.encodeVersioned(type, output -> {
+            output.writeUUID(ID);
+            output.writeIdentity(senderID);
+            output.writeIdentity(originatorId);
+            output.writeCachedString(target);
+            output.writeInt(currentHop);
+            output.writeInt(hopLimit);
+            output.writeInt(totalDevicesWithMetric);
+            output.writeInt(totalDevicesChecked);
+            output.writeByte(mode);
+            output.writeInt(walker);
+            output.writeInt(wantedDevices);
+            output.writeInt(checkInHops);
+        });
     }
 
     public int getType(){
@@ -152,6 +148,50 @@ public class RandomWalk implements Event{
         this.totalDevicesChecked = totalDevicesChecked;
     }
 
+    public byte getMode() {
+        return mode;
+    }
+
+    public void setMode(byte mode) {
+        this.mode = mode;
+    }
+
+    public int getWalker() {
+        return walker;
+    }
+
+    public void setWalker(int walker) {
+        this.walker = walker;
+    }
+
+    public int getWantedDevices() {
+        return wantedDevices;
+    }
+
+    public void setWantedDevices(int wantedDevices) {
+        this.wantedDevices = wantedDevices;
+    }
+
+    public int getCheckInHops() {
+        return checkInHops;
+    }
+
+    public void setCheckInHops(int checkInHops) {
+        this.checkInHops = checkInHops;
+    }
+
+    /**
+     * The same walk, from this peer, with the given mode and totals
+     */
+    public RandomWalk copy(Identity sender, int currentHop, byte mode) {
+        RandomWalk copy = new RandomWalk(ID, sender, originatorId, target, currentHop, hopLimit);
+        copy.mode = mode;
+        copy.walker = walker;
+        copy.wantedDevices = wantedDevices;
+        copy.checkInHops = checkInHops;
+        return copy;
+    }
+
     public Identity getOriginatorId() {
         return originatorId;
     }
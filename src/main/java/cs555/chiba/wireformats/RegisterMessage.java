@@ -2,12 +2,6 @@ package cs555.chiba.wireformats;
 
 import cs555.chiba.service.Identity;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Objects;
 import java.util.UUID;
@@ -27,15 +21,14 @@ public class RegisterMessage extends Message {
       super(Protocol.REGISTER, message);
    }
 
-   @Override void parse(DataInputStream input) throws IOException {
-      String key = readString(input);
-      this.identity = Identity.builder().withIdentityKey(key).build();
-      this.deviceList = readString(input);
+   @Override void parse(WireReader input) {
+      this.identity = input.readIdentity();
+      this.deviceList = input.readString();
    }
 
-   @Override void spool(DataOutputStream output) throws IOException {
-      sendString(this.identity.getIdentityName(), output);
-      sendString(this.deviceList, output);
+   @Override void spool(WireWriter output) {
+      output.writeString(this.identity.getIdentityName());
+      output.writeString(this.deviceList);
    }
 
    public Identity getIdentity() {
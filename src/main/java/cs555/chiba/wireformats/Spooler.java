@@ -0,0 +1,11 @@
+package cs555.chiba.wireformats;
+
+/**
+ * Writes the fields of a message.  It is called twice per encode, once to size the message and once to write it, so it
+ * must write the same fields both times.
+ */
+@FunctionalInterface
+interface Spooler {
+
+   void spool(WireWriter output);
+}
@@ -0,0 +1,31 @@
+package cs555.chiba.wireformats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The same identity keys and metric names are encoded on every hop.  This keeps their UTF-8 bytes around so they are only
+ * encoded once.  The cache stops growing once it is full; anything new after that is encoded on every use.
+ */
+final class Utf8Cache {
+
+   private static final int MAX_ENTRIES = 8192;
+   private static final ConcurrentHashMap<String, byte[]> cache = new ConcurrentHashMap<>();
+
+   private Utf8Cache() {
+   }
+
+   static byte[] encode(String value) {
+      byte[] bytes = cache.get(value);
+
+      if (bytes == null) {
+         bytes = value.getBytes(StandardCharsets.UTF_8);
+
+         if (cache.size() < MAX_ENTRIES) {
+            cache.putIfAbsent(value, bytes);
+         }
+      }
+
+      return bytes;
+   }
+}
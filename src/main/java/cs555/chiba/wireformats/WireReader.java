@@ -0,0 +1,138 @@
+package cs555.chiba.wireformats;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.Utilities;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The field reader shared by every message.  It reads straight out of the received array.  Strings are decoded from the
+ * array in place rather than being copied out first.
+ *
+ * Versioned readers check the byte after the type to tell compact frames from legacy ones, see WireWriter.
+ */
+final class WireReader {
+
+   private final ByteBuffer buffer;
+   private final boolean compact;
+
+   /**
+    * Start reading after the type byte
+    */
+   WireReader(byte[] message) {
+      this.buffer = ByteBuffer.wrap(message);
+      this.buffer.get();
+      this.compact = false;
+   }
+
+   private WireReader(ByteBuffer buffer, boolean compact) {
+      this.buffer = buffer;
+      this.compact = compact;
+   }
+
+   /**
+    * Start reading after the type and version bytes.  Legacy frames don't have a version byte, so it is only skipped for
+    * compact frames.
+    */
+   static WireReader versioned(byte[] message) {
+      ByteBuffer buffer = ByteBuffer.wrap(message);
+      buffer.get();
+      int version = buffer.get(buffer.position());
+      Utilities.checkArgument(version == WireWriter.LEGACY || version == WireWriter.COMPACT, "Unsupported wire version [" + version + "]");
+
+      if (version == WireWriter.COMPACT) {
+         buffer.get();
+      }
+
+      return new WireReader(buffer, version == WireWriter.COMPACT);
+   }
+
+   boolean isCompact() {
+      return this.compact;
+   }
+
+   byte readByte() {
+      return this.buffer.get();
+   }
+
+   int readInt() {
+      return this.buffer.getInt();
+   }
+
+   int readUnsignedShort() {
+      return this.buffer.getShort() & 0xffff;
+   }
+
+   long readLong() {
+      return this.buffer.getLong();
+   }
+
+   byte[] readBytes() {
+      byte[] value = new byte[readLength()];
+      this.buffer.get(value);
+      return value;
+   }
+
+   String readString() {
+      int length = readLength();
+      int position = this.buffer.position();
+      String value = new String(this.buffer.array(), this.buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+      this.buffer.position(position + length);
+      return value;
+   }
+
+   Identity readIdentity() {
+      if (!this.compact) {
+         return Identity.builder().withIdentityKey(readString()).build();
+      }
+
+      int kind = readByte();
+      switch (kind) {
+         case WireWriter.KIND_IPV4:
+            int address = readInt();
+            return Identity.fromIPv4(address, readUnsignedShort());
+         case WireWriter.KIND_HOSTNAME:
+            return Identity.builder().withIdentityKey(readString()).build();
+         default:
+            throw new IllegalArgumentException("Unknown identity kind [" + kind + "]");
+      }
+   }
+
+   List<Identity> readIdentities() {
+      int total = readInt();
+      List<Identity> identities = new ArrayList<>(Math.max(0, total));
+
+      for (int i = 0; i < total; i++) {
+         identities.add(readIdentity());
+      }
+
+      return identities;
+   }
+
+   UUID readUUID() {
+      if (this.compact) {
+         return new UUID(readLong(), readLong());
+      }
+
+      return UUID.fromString(readString());
+   }
+
+   boolean hasRemaining() {
+      return this.buffer.hasRemaining();
+   }
+
+   private int readLength() {
+      int length = readInt();
+
+      if (length < 0 || length > this.buffer.remaining()) {
+         throw new BufferUnderflowException();
+      }
+
+      return length;
+   }
+}
@@ -0,0 +1,260 @@
+package cs555.chiba.wireformats;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.Utilities;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The field writer shared by every message.  Encoding makes two passes over the message.  The first only adds up the size,
+ * the second writes straight into a byte array of exactly that size, so there are no intermediate streams or copies.
+ *
+ * Strings are length prefixed UTF-8.  Identity keys and metric names repeat constantly, so their bytes come from the
+ * Utf8Cache.
+ *
+ * Messages that travel between peers carry a version byte after the type.  The compact version sends query ids as 16
+ * bytes and IPv4 identities as 4 address bytes and a 2 byte port.  Identities that wouldn't come back exactly the same,
+ * like host names, are still sent as strings.  Legacy frames have no version byte; their next field is an int length,
+ * so the byte there is always 0.  Start a node with -Dcsu.wire.version=0 to talk to peers that predate the compact form.
+ */
+final class WireWriter {
+
+   private static final int SIZE_OF_INT = 4;
+   private static final int SIZE_OF_SHORT = 2;
+
+   static final String VERSION_PROPERTY = "csu.wire.version";
+   static final int LEGACY = 0;
+   static final int COMPACT = 1;
+   static final int VERSION = Integer.getInteger(VERSION_PROPERTY, COMPACT);
+
+   static final int KIND_HOSTNAME = 0;
+   static final int KIND_IPV4 = 4;
+
+   private final ByteBuffer buffer; // null while sizing
+   private final boolean compact;
+   private int size = 0;
+
+   private WireWriter(ByteBuffer buffer, boolean compact) {
+      this.buffer = buffer;
+      this.compact = compact;
+   }
+
+   /**
+    * Encode a message led by its type byte
+    */
+   static byte[] encode(int type, Spooler spooler) {
+      return encode(type, LEGACY, spooler);
+   }
+
+   /**
+    * Encode a message led by its type byte and the version this node was started with
+    */
+   static byte[] encodeVersioned(int type, Spooler spooler) {
+      return encodeVersioned(type, VERSION, spooler);
+   }
+
+   static byte[] encodeVersioned(int type, int version, Spooler spooler) {
+      Utilities.checkArgument(version == LEGACY || version == COMPACT, "Unsupported wire version [" + version + "]");
+      return encode(type, version, spooler);
+   }
+
+   private static byte[] encode(int type, int version, Spooler spooler) {
+      boolean compact = version == COMPACT;
+      WireWriter sizer = new WireWriter(null, compact);
+      sizer.writeHeader(type);
+      spooler.spool(sizer);
+
+      byte[] message = new byte[sizer.size];
+      WireWriter writer = new WireWriter(ByteBuffer.wrap(message), compact);
+      writer.writeHeader(type);
+      spooler.spool(writer);
+      return message;
+   }
+
+   private void writeHeader(int type) {
+      writeByte(type);
+      if (this.compact) {
+         writeByte(COMPACT);
+      }
+   }
+
+   boolean isSizing() {
+      return this.buffer == null;
+   }
+
+   void writeByte(int value) {
+      this.size += 1;
+      if (this.buffer != null) {
+         this.buffer.put((byte) value);
+      }
+   }
+
+   void writeInt(int value) {
+      this.size += SIZE_OF_INT;
+      if (this.buffer != null) {
+         this.buffer.putInt(value);
+      }
+   }
+
+   void writeShort(int value) {
+      this.size += SIZE_OF_SHORT;
+      if (this.buffer != null) {
+         this.buffer.putShort((short) value);
+      }
+   }
+
+   void writeLong(long value) {
+      this.size += 2 * SIZE_OF_INT;
+      if (this.buffer != null) {
+         this.buffer.putLong(value);
+      }
+   }
+
+   void writeBytes(byte[] value) {
+      writeInt(value.length);
+      writeRaw(value);
+   }
+
+   void writeRaw(byte[] value) {
+      this.size += value.length;
+      if (this.buffer != null) {
+         this.buffer.put(value);
+      }
+   }
+
+   /**
+    * Write a string that isn't worth caching.  It is only encoded on the writing pass, the sizing pass just counts.
+    */
+   void writeString(String value) {
+      if (this.buffer == null) {
+         this.size += SIZE_OF_INT + utf8Length(value);
+      }
+      else {
+         byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+         this.size += SIZE_OF_INT + bytes.length;
+         this.buffer.putInt(bytes.length);
+         this.buffer.put(bytes);
+      }
+   }
+
+   /**
+    * Write a string that shows up in many messages, like a metric name
+    */
+   void writeCachedString(String value) {
+      writeBytes(Utf8Cache.encode(value));
+   }
+
+   void writeIdentity(Identity identity) {
+      if (!this.compact) {
+         writeCachedString(identity.getIdentityKey());
+         return;
+      }
+
+      long address = packIPv4(identity.getHost());
+
+      if (address < 0) {
+         writeByte(KIND_HOSTNAME);
+         writeCachedString(identity.getIdentityKey());
+      }
+      else {
+         writeByte(KIND_IPV4);
+         writeInt((int) address);
+         writeShort(identity.getPort());
+      }
+   }
+
+   void writeIdentities(List<Identity> identities) {
+      writeInt(identities.size());
+      for (Identity identity : identities) {
+         writeIdentity(identity);
+      }
+   }
+
+   void writeUUID(UUID id) {
+      if (this.compact) {
+         writeLong(id.getMostSignificantBits());
+         writeLong(id.getLeastSignificantBits());
+      }
+      else {
+         writeString(id.toString());
+      }
+   }
+
+   /**
+    * The address of a dotted quad IPv4 host, or -1 if the host isn't one.  Only the canonical form is accepted (no leading
+    * zeros), since that is what the reader rebuilds the host string as.
+    */
+   static long packIPv4(String host) {
+      long address = 0;
+      int octets = 0;
+      int i = 0;
+
+      while (i < host.length()) {
+         int start = i;
+         int octet = 0;
+
+         while (i < host.length() && host.charAt(i) >= '0' && host.charAt(i) <= '9') {
+            octet = octet * 10 + (host.charAt(i) - '0');
+            i++;
+
+            if (octet > 255) {
+               return -1;
+            }
+         }
+
+         int digits = i - start;
+         if (digits == 0 || (digits > 1 && host.charAt(start) == '0')) {
+            return -1;
+         }
+
+         address = (address << 8) | octet;
+         octets++;
+
+         if (i < host.length()) {
+            if (host.charAt(i) != '.' || octets == 4) {
+               return -1;
+            }
+            i++;
+
+            if (i == host.length()) {
+               return -1; // trailing dot
+            }
+         }
+      }
+
+      return octets == 4 ? address : -1;
+   }
+
+   /**
+    * The number of bytes String.getBytes(UTF_8) would produce, without producing them
+    */
+   static int utf8Length(String value) {
+      int length = 0;
+
+      for (int i = 0; i < value.length(); i++) {
+         char c = value.charAt(i);
+
+         if (c < 0x80) {
+            length += 1;
+         }
+         else if (c < 0x800) {
+            length += 2;
+         }
+         else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+            length += 4;
+            i++;
+         }
+         else if (Character.isSurrogate(c)) {
+            length += 1; // unpaired surrogates are replaced with '?'
+         }
+         else {
+            length += 3;
+         }
+      }
+
+      return length;
+   }
+}
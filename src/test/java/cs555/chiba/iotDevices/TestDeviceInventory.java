@@ -0,0 +1,50 @@
+package cs555.chiba.iotDevices;
+
+import cs555.chiba.util.Utilities.METRIC_TYPES;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestDeviceInventory {
+
+   @Test public void testMatchesDeviceObjects() {
+      List<IotDevice> devices = IotFactory.generateRandomDevices(300, 3000);
+      DeviceInventory inventory = DeviceInventory.fromDevices(devices);
+
+      for (METRIC_TYPES metric : METRIC_TYPES.values()) {
+         int expected = devices.stream().mapToInt(device -> device.getMetric(metric.name())).sum();
+         assertEquals(metric.name(), expected, inventory.countWithMetric(metric));
+         assertEquals(metric.name(), expected, inventory.countWithMetric(metric.name()));
+         assertEquals(metric.name(), expected, inventory.countWithMetric(metric.name().toLowerCase()));
+      }
+
+      assertEquals(0, inventory.countWithMetric("NOT_A_METRIC"));
+
+      Set<String> names = new TreeSet<>();
+      devices.forEach(device -> names.addAll(Arrays.asList(device.getMetricNames())));
+      assertEquals(names, new TreeSet<>(inventory.getMetricNames()));
+      assertEquals(devices.size(), inventory.getTotalDevices());
+   }
+
+   @Test public void testDeviceStringRoundTrip() {
+      DeviceInventory inventory = IotFactory.generateRandomInventory(3, 300);
+      DeviceInventory copy = DeviceInventory.fromDeviceString(inventory.getDeviceString());
+
+      assertEquals(inventory.getDeviceString(), copy.getDeviceString());
+      assertEquals(inventory.getMetricMask(), copy.getMetricMask());
+      assertEquals(inventory.getTotalDevices(), copy.toDevices().size());
+   }
+
+   @Test public void testEmpty() {
+      DeviceInventory inventory = DeviceInventory.fromDeviceString("");
+
+      assertEquals(0, inventory.getTotalDevices());
+      assertEquals(0, inventory.getMetricMask());
+      assertEquals(0, inventory.countWithMetric(METRIC_TYPES.POWER_STATE));
+   }
+}
@@ -0,0 +1,87 @@
+package cs555.chiba.node;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.AttenuatedBloomFilter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBloomDigests {
+
+   private final Identity a = Identity.builder().withIdentityKey("a.com:8989").build();
+   private final Identity b = Identity.builder().withIdentityKey("b.com:8989").build();
+   private final Identity c = Identity.builder().withIdentityKey("c.com:8989").build();
+
+   private AttenuatedBloomFilter filterOf(int level, String name) {
+      AttenuatedBloomFilter filter = new AttenuatedBloomFilter(3, 512, 3);
+      filter.add(level, name);
+      return filter;
+   }
+
+   @Test public void testFilterLeavesOutTheNeighbor() {
+      BloomDigests digests = new BloomDigests(3, 512, 3);
+      digests.setLocal(Collections.singletonList("pressure"));
+      digests.receive(this.a, filterOf(0, "temperature"));
+
+      assertEquals(1, digests.filterFor(this.b).firstLevel("temperature"));
+      assertEquals(-1, digests.filterFor(this.a).firstLevel("temperature"));
+      assertEquals(0, digests.filterFor(this.a).firstLevel("pressure"));
+   }
+
+   @Test public void testRouteNearestFirst() {
+      BloomDigests digests = new BloomDigests(3, 512, 3);
+      digests.receive(this.a, filterOf(2, "temperature"));
+      digests.receive(this.b, filterOf(0, "temperature"));
+      digests.receive(this.c, filterOf(1, "temperature"));
+
+      assertEquals(Arrays.asList(this.b, this.c, this.a), digests.route("temperature", 3, null));
+      assertEquals(Arrays.asList(this.b), digests.route("temperature", 1, null));
+      assertEquals(Arrays.asList(this.c), digests.route("temperature", 2, this.b));
+      assertTrue(digests.route("humidity", 3, null).isEmpty());
+   }
+
+   @Test public void testOnlySendsChangedFilters() {
+      BloomDigests digests = new BloomDigests(3, 512, 3);
+      digests.setLocal(Collections.singletonList("pressure"));
+      List<Identity> sentTo = new ArrayList<>();
+
+      digests.broadcast(Arrays.asList(this.a, this.b), (to, filter) -> new byte[]{1}, (to, message) -> sentTo.add(to), Integer.MAX_VALUE);
+      assertEquals(Arrays.asList(this.a, this.b), sentTo);
+
+      sentTo.clear();
+      digests.receive(this.a, filterOf(0, "temperature"));
+      digests.broadcast(Arrays.asList(this.a, this.b), (to, filter) -> new byte[]{1}, (to, message) -> sentTo.add(to), Integer.MAX_VALUE);
+      assertEquals(Arrays.asList(this.b), sentTo); // a's own names don't go back to a
+
+      sentTo.clear();
+      digests.forget(this.a);
+      digests.broadcast(Arrays.asList(this.a, this.b), (to, filter) -> new byte[]{1}, (to, message) -> sentTo.add(to), Integer.MAX_VALUE);
+      assertEquals(Arrays.asList(this.a), sentTo);
+   }
+
+   @Test public void testMismatchedDigestIsDropped() {
+      BloomDigests digests = new BloomDigests(3, 512, 3);
+      AttenuatedBloomFilter other = new AttenuatedBloomFilter(2, 256, 3);
+      other.add(0, "temperature");
+
+      assertFalse(digests.receive(this.a, other));
+      assertTrue(digests.route("temperature", 3, null).isEmpty());
+      assertTrue(digests.getMetrics().contains("digests dropped: 1"));
+   }
+
+   @Test public void testRemovedNeighborIsNotRouted() {
+      BloomDigests digests = new BloomDigests(3, 512, 3);
+      digests.receive(this.a, filterOf(0, "temperature"));
+      digests.receive(this.b, filterOf(1, "temperature"));
+
+      digests.remove(this.a);
+      assertEquals(Arrays.asList(this.b), digests.route("temperature", 3, null));
+   }
+}
@@ -0,0 +1,108 @@
+package cs555.chiba.node;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.wireformats.Flood;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestFloodAggregator {
+
+   private final Identity self = Identity.builder().withIdentityKey("self.com:8989").build();
+   private final Identity parent = Identity.builder().withIdentityKey("parent.com:8989").build();
+   private final Identity originator = Identity.builder().withIdentityKey("origin.com:8989").build();
+
+   private Flood query(UUID id, int hop, int hopLimit) {
+      Flood query = new Flood(id, this.parent, this.originator, "TEMPERATURE", hop, hopLimit);
+      query.setMode(Flood.MODE_CONVERGECAST);
+      return query;
+   }
+
+   private Flood reply(UUID id, int hop, int checked, int withMetric) {
+      Flood reply = new Flood(id, this.parent, this.originator, "TEMPERATURE", hop, 5);
+      reply.setMode(Flood.MODE_REPLY);
+      reply.setTotalDevicesChecked(checked);
+      reply.setTotalDevicesWithMetric(withMetric);
+      return reply;
+   }
+
+   @Test public void testCombinesChildren() {
+      List<Flood> sent = new ArrayList<>();
+      FloodAggregator aggregator = new FloodAggregator(10000, () -> this.self, (to, reply) -> {
+         assertEquals(this.parent, to);
+         sent.add(reply);
+      });
+
+      UUID id = UUID.randomUUID();
+      aggregator.begin(query(id, 1, 5), this.parent, 10, 2, 2);
+      assertTrue(aggregator.merge(reply(id, 3, 20, 4)));
+      assertTrue(sent.isEmpty());
+      assertTrue(aggregator.merge(reply(id, 2, 5, 1)));
+
+      assertEquals(1, sent.size());
+      Flood combined = sent.get(0);
+      assertEquals(Flood.MODE_REPLY, combined.getMode());
+      assertEquals(35, combined.getTotalDevicesChecked());
+      assertEquals(7, combined.getTotalDevicesWithMetric());
+      assertEquals(3, combined.getCurrentHop());
+      assertEquals(this.self, combined.getSenderID());
+      assertEquals(0, aggregator.size());
+
+      assertFalse(aggregator.merge(reply(id, 2, 1, 1))); // nothing is waiting any more
+      aggregator.close();
+   }
+
+   @Test public void testLeafRepliesImmediately() {
+      List<Flood> sent = new ArrayList<>();
+      FloodAggregator aggregator = new FloodAggregator(10000, () -> this.self, (to, reply) -> sent.add(reply));
+
+      aggregator.begin(query(UUID.randomUUID(), 4, 5), this.parent, 8, 3, 0);
+
+      assertEquals(1, sent.size());
+      assertEquals(8, sent.get(0).getTotalDevicesChecked());
+      assertEquals(3, sent.get(0).getTotalDevicesWithMetric());
+      aggregator.close();
+   }
+
+   @Test public void testTimesOut() throws InterruptedException {
+      List<Flood> sent = new ArrayList<>();
+      FloodAggregator aggregator = new FloodAggregator(20, () -> this.self, (to, reply) -> {
+         synchronized (sent) {
+            sent.add(reply);
+         }
+      });
+
+      UUID id = UUID.randomUUID();
+      aggregator.begin(query(id, 3, 5), this.parent, 10, 2, 3);
+      aggregator.merge(reply(id, 4, 6, 6));
+      Thread.sleep(500);
+
+      synchronized (sent) {
+         assertEquals(1, sent.size());
+         assertEquals(16, sent.get(0).getTotalDevicesChecked());
+         assertEquals(8, sent.get(0).getTotalDevicesWithMetric());
+      }
+      assertEquals(0, aggregator.size());
+      aggregator.close();
+   }
+
+   @Test public void testWaitsAreNested() {
+      for (int hopLimit : new int[] { 5, -1 }) {
+         int depth = hopLimit == -1 ? 10 : hopLimit - 1;
+
+         for (int hop = 1; hop < depth; hop++) {
+            String message = "hop limit " + hopLimit + " hop " + hop;
+            assertTrue(message, FloodAggregator.hopsToWait(query(UUID.randomUUID(), hop, hopLimit)) > FloodAggregator.hopsToWait(query(UUID.randomUUID(), hop + 1, hopLimit)));
+         }
+      }
+
+      assertEquals(1, FloodAggregator.hopsToWait(query(UUID.randomUUID(), 5, 5)));
+      assertEquals(1, FloodAggregator.hopsToWait(query(UUID.randomUUID(), 100, -1)));
+   }
+}
@@ -0,0 +1,65 @@
+package cs555.chiba.node;
+
+import cs555.chiba.service.Identity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestGossipScheduler {
+
+   private final List<Identity> neighbors = Arrays.asList(Identity.builder().withIdentityKey("a.com:8989").build(), Identity.builder().withIdentityKey("b.com:8989").build(),
+         Identity.builder().withIdentityKey("c.com:8989").build());
+
+   @Test public void testPushPullRound() {
+      List<Integer> budgets = new ArrayList<>();
+      List<List<Identity>> pulls = new ArrayList<>();
+
+      GossipScheduler scheduler = new GossipScheduler(GossipScheduler.Mode.PUSHPULL, 1000, 2, 0, 512, new Random(7), () -> this.neighbors, (chosen, budget) -> {
+         assertEquals(2, chosen.size());
+         budgets.add(budget);
+         return 100;
+      }, pulls::add);
+
+      scheduler.runRound();
+
+      assertEquals(Arrays.asList(512), budgets);
+      assertEquals(1, pulls.size());
+      assertTrue(this.neighbors.containsAll(pulls.get(0)));
+      assertEquals(1, scheduler.getRound());
+   }
+
+   @Test public void testPushOnly() {
+      GossipScheduler scheduler = new GossipScheduler(GossipScheduler.Mode.PUSH, 1000, 5, 0, 512, new Random(7), () -> this.neighbors, (chosen, budget) -> chosen.size(), chosen -> {
+         throw new AssertionError("push doesn't pull");
+      });
+
+      scheduler.runRound();
+      assertEquals(3, scheduler.choose(this.neighbors).size()); // fewer neighbors than the fan out
+   }
+
+   @Test public void testConvergence() {
+      GossipScheduler scheduler = new GossipScheduler(GossipScheduler.Mode.PULL, 1000, 1, 0, 512, new Random(7), () -> this.neighbors, (chosen, budget) -> 0, chosen -> {});
+
+      assertEquals(-1, scheduler.getFirstRound(2));
+      scheduler.runRound();
+      scheduler.runRound();
+      scheduler.learned("temperature", 2);
+      scheduler.runRound();
+      scheduler.learned("temperature", 2);
+      scheduler.learned("humidity", 2);
+
+      assertEquals(2, scheduler.getFirstRound(2));
+      assertEquals(2, scheduler.getNamesKnown(2));
+      assertEquals(0, scheduler.getNamesKnown(1));
+   }
+
+   @Test(expected = IllegalArgumentException.class) public void testJitterBelowPeriod() {
+      new GossipScheduler(GossipScheduler.Mode.PUSH, 100, 1, 100, 512, new Random(), () -> this.neighbors, (chosen, budget) -> 0, chosen -> {});
+   }
+}
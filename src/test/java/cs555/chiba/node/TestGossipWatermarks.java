@@ -0,0 +1,84 @@
+package cs555.chiba.node;
+
+import cs555.chiba.service.Identity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestGossipWatermarks {
+
+   private final Identity a = Identity.builder().withIdentityKey("a.com:8989").build();
+   private final Identity b = Identity.builder().withIdentityKey("b.com:8989").build();
+
+   @Test public void testOnlySendsNewVersions() {
+      GossipWatermarks marks = new GossipWatermarks("test");
+      List<Long> built = new ArrayList<>();
+      List<Identity> sentTo = new ArrayList<>();
+
+      marks.broadcast(Arrays.asList(this.a, this.b), 5, since -> {
+         built.add(since);
+         return new byte[]{1};
+      }, (to, message) -> sentTo.add(to));
+
+      assertEquals(Arrays.asList(0L), built); // both neighbors share one message
+      assertEquals(Arrays.asList(this.a, this.b), sentTo);
+
+      built.clear();
+      sentTo.clear();
+      marks.broadcast(Arrays.asList(this.a), 5, since -> new byte[]{1}, (to, message) -> sentTo.add(to));
+      assertEquals(0, sentTo.size());
+
+      marks.broadcast(Arrays.asList(this.a), 8, since -> {
+         built.add(since);
+         return new byte[]{1};
+      }, (to, message) -> sentTo.add(to));
+      assertEquals(Arrays.asList(5L), built);
+      assertEquals(Arrays.asList(this.a), sentTo);
+   }
+
+   @Test public void testForgetSendsEverything() {
+      GossipWatermarks marks = new GossipWatermarks("test");
+      List<Long> built = new ArrayList<>();
+
+      marks.broadcast(Arrays.asList(this.a), 3, since -> null, (to, message) -> {
+         throw new AssertionError("nothing changed");
+      });
+      marks.forget(this.a);
+      marks.broadcast(Arrays.asList(this.a), 3, since -> {
+         built.add(since);
+         return new byte[]{1};
+      }, (to, message) -> {});
+
+      assertEquals(Arrays.asList(0L), built);
+   }
+
+   @Test public void testBudgetHoldsBackTheRest() {
+      GossipWatermarks marks = new GossipWatermarks("test");
+      List<Identity> sentTo = new ArrayList<>();
+
+      int used = marks.broadcast(Arrays.asList(this.a, this.b), 4, since -> new byte[10], (to, message) -> sentTo.add(to), 15);
+      assertEquals(10, used);
+      assertEquals(Arrays.asList(this.a), sentTo);
+
+      sentTo.clear();
+      marks.broadcast(Arrays.asList(this.a, this.b), 4, since -> new byte[10], (to, message) -> sentTo.add(to), 15);
+      assertEquals(Arrays.asList(this.b), sentTo); // b kept its old version and is caught up now
+   }
+
+   @Test public void testBudgetIsNeverExceeded() {
+      GossipWatermarks marks = new GossipWatermarks("test");
+      List<Identity> sentTo = new ArrayList<>();
+
+      assertEquals(0, marks.broadcast(Arrays.asList(this.a, this.b), 4, since -> new byte[10], (to, message) -> sentTo.add(to), 5));
+      assertTrue(sentTo.isEmpty());
+
+      // nothing was marked as sent, so a pull with no budget still catches both up
+      marks.broadcast(Arrays.asList(this.a, this.b), 4, since -> new byte[10], (to, message) -> sentTo.add(to));
+      assertEquals(Arrays.asList(this.a, this.b), sentTo);
+   }
+}
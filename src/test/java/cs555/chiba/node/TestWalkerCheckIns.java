@@ -0,0 +1,45 @@
+package cs555.chiba.node;
+
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestWalkerCheckIns {
+
+   @Test public void testContinueAndStop() {
+      WalkerCheckIns checkIns = new WalkerCheckIns(10000);
+      AtomicInteger walked = new AtomicInteger();
+      UUID id = UUID.randomUUID();
+
+      checkIns.park(id, 0, walked::incrementAndGet);
+      checkIns.park(id, 1, walked::incrementAndGet);
+      assertEquals(2, checkIns.size());
+
+      assertTrue(checkIns.answer(id, 0, true));
+      assertTrue(checkIns.answer(id, 1, false));
+      assertEquals(1, walked.get());
+      assertEquals(0, checkIns.size());
+
+      assertFalse(checkIns.answer(id, 0, true)); // answered already
+      assertEquals(1, walked.get());
+      checkIns.close();
+   }
+
+   @Test public void testTimeoutCarriesOn() throws InterruptedException {
+      WalkerCheckIns checkIns = new WalkerCheckIns(20);
+      AtomicInteger walked = new AtomicInteger();
+      UUID id = UUID.randomUUID();
+
+      checkIns.park(id, 0, walked::incrementAndGet);
+      Thread.sleep(500);
+
+      assertEquals(1, walked.get());
+      assertFalse(checkIns.answer(id, 0, false)); // too late to stop it
+      checkIns.close();
+   }
+}
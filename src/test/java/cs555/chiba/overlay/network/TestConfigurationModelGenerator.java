@@ -0,0 +1,110 @@
+package cs555.chiba.overlay.network;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestConfigurationModelGenerator {
+
+   private static final Logger logger = Logger.getLogger(TestConfigurationModelGenerator.class.getName());
+
+   private void checkGraph(OverlayGraph graph, int min, int max) {
+      Set<Long> edges = new HashSet<>();
+
+      for (int v = 0; v < graph.size(); v++) {
+         assertTrue("degree of " + v + " is " + graph.degree(v), graph.degree(v) >= min && graph.degree(v) <= max);
+
+         for (int i = 0; i < graph.degree(v); i++) {
+            int other = graph.neighbor(v, i);
+            assertNotEquals(v, other);
+            assertTrue(graph.isConnected(other, v));
+            if (other > v) {
+               assertTrue("repeated edge " + v + "-" + other, edges.add(OverlayGraph.edge(v, other)));
+            }
+         }
+      }
+
+      assertEquals(graph.getEdgeCount(), edges.size());
+      assertEquals(graph.size(), reachable(graph));
+   }
+
+   private int reachable(OverlayGraph graph) {
+      boolean[] seen = new boolean[graph.size()];
+      ArrayDeque<Integer> queue = new ArrayDeque<>();
+      queue.add(0);
+      seen[0] = true;
+      int count = 1;
+
+      while (!queue.isEmpty()) {
+         int v = queue.poll();
+         for (int i = 0; i < graph.degree(v); i++) {
+            int other = graph.neighbor(v, i);
+            if (!seen[other]) {
+               seen[other] = true;
+               count++;
+               queue.add(other);
+            }
+         }
+      }
+
+      return count;
+   }
+
+   @Test public void testSmallGraphs() {
+      Random random = new Random(42);
+      checkGraph(new ConfigurationModelGenerator(1, 1).generate(2, random), 1, 1);
+      checkGraph(new ConfigurationModelGenerator(8, 8).generate(9, random), 8, 8); // complete
+      checkGraph(new ConfigurationModelGenerator(4, 5).generate(9, random), 4, 5);
+      checkGraph(new ConfigurationModelGenerator(3, 4).generate(5, random), 3, 4); // odd number of stubs
+   }
+
+   @Test public void testManySeeds() {
+      for (int seed = 0; seed < 200; seed++) {
+         checkGraph(new ConfigurationModelGenerator(6, 6).generate(10 + seed % 20, new Random(seed)), 6, 6);
+      }
+   }
+
+   @Test public void testLargeGraph() {
+      long started = System.nanoTime();
+      OverlayGraph graph = new ConfigurationModelGenerator(20, 25).generate(100000, new Random(7));
+      long millis = (System.nanoTime() - started) / 1000000;
+
+      checkGraph(graph, 20, 25);
+      logger.info("100000 vertices with 20-25 connections: " + millis + " ms, " + graph.memoryBytes() + " bytes");
+   }
+
+   @Test public void testDegreesSpreadBetweenMinAndMax() {
+      int min = 4;
+      int max = 12;
+      OverlayGraph graph = new ConfigurationModelGenerator(min, max).generate(10000, new Random(3));
+      checkGraph(graph, min, max);
+
+      int[] histogram = new int[max + 1];
+      long total = 0;
+      for (int v = 0; v < graph.size(); v++) {
+         histogram[graph.degree(v)]++;
+         total += graph.degree(v);
+      }
+
+      // every degree in the range turns up, none dominates, and the mean sits near the middle rather than at the min
+      for (int degree = min; degree <= max; degree++) {
+         assertTrue("degree " + degree + " seen " + histogram[degree] + " times", histogram[degree] > graph.size() / (4 * (max - min + 1)));
+         assertTrue("degree " + degree + " seen " + histogram[degree] + " times", histogram[degree] < graph.size() / 4);
+      }
+
+      double mean = (double) total / graph.size();
+      assertTrue("mean degree " + mean, Math.abs(mean - (min + max) / 2.0) < 1);
+   }
+
+   @Test(expected = IllegalStateException.class) public void testImpossibleGraph() {
+      new ConfigurationModelGenerator(3, 3).generate(5, new Random(1)); // 5 vertices can't all have 3 connections
+   }
+}
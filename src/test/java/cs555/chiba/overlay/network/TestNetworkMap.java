@@ -13,8 +13,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class TestNetworkMap {
@@ -53,12 +55,43 @@ public class TestNetworkMap {
       NetworkMap net = new NetworkMap(new ArrayList<Identity>(idents), 1, 1);
    }
 
+   @Test public void testSameSeedSameDevices() {
+      System.setProperty(PartitionedOverlayGenerator.SEED_PROPERTY, "17");
+      try {
+         NetworkMap first = new NetworkMap(createRegisteredNodes(), 4, 6);
+         NetworkMap second = new NetworkMap(createRegisteredNodes(), 4, 6);
+
+         for (int i = 0; i < first.getVertices().size(); i++) {
+            assertEquals(first.getVertices().get(i).getDeviceString(), second.getVertices().get(i).getDeviceString());
+         }
+      }
+      finally {
+         System.clearProperty(PartitionedOverlayGenerator.SEED_PROPERTY);
+      }
+   }
+
    @Test public void testLargeMapCreation() {
       NetworkMap net = new NetworkMap(10000, 5, 10);
       //net.getFullEdgeList().stream().map(Edge::printEdge).forEach(logger::info);
       assertEquals(10000, net.getVertices().size());
    }
 
+   @Test public void testLargeImport() {
+      NetworkMap net = new NetworkMap(10000, 25, 25);
+      List<Edge> edges = net.getFullEdgeList().stream().map(edge -> Edge.fromCsv(edge.toCsv().split(","))).collect(Collectors.toList()); // as read from a file
+
+      long started = System.nanoTime();
+      NetworkMap imported = new NetworkMap(25, 25, edges);
+      for (Vertex vertex : net.getVertices()) {
+         assertEquals(25, imported.findVertex(vertex.getName()).getUnfilteredConnectionList().size());
+      }
+      logger.info("Imported and checked " + edges.size() + " edges in " + (System.nanoTime() - started) / 1000000 + " ms");
+
+      assertEquals(10000, imported.size());
+      assertEquals(net.getVertices().get(17).getName(), imported.findVertex(17).getName());
+      assertNull(imported.findVertex(createIdentity("nowhere")));
+   }
+
    @Ignore @Test public void testExport() throws IOException {
       NetworkMap net = new NetworkMap(createRegisteredNodes(), 4, 4);
       NetworkMapTransformer trans = new NetworkMapTransformer(net);
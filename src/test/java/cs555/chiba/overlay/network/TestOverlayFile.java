@@ -0,0 +1,104 @@
+package cs555.chiba.overlay.network;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestOverlayFile {
+
+   private static final Logger logger = Logger.getLogger(TestOverlayFile.class.getName());
+
+   @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+   private void checkSame(NetworkMap expected, NetworkMap actual) {
+      assertEquals(expected.getMinConnections(), actual.getMinConnections());
+      assertEquals(expected.getMaxConnections(), actual.getMaxConnections());
+      assertEquals(expected.size(), actual.size());
+
+      for (Vertex vertex : expected.getVertices()) {
+         Vertex other = actual.findVertex(vertex.getId());
+         assertEquals(vertex.getName().getIdentityKey(), other.getName().getIdentityKey());
+         assertEquals(vertex.getDeviceString(), other.getDeviceString());
+         assertEquals(vertex.getEdges().size(), other.getEdges().size());
+
+         for (Vertex neighbor : vertex.getEdges().keySet()) {
+            Vertex otherNeighbor = actual.findVertex(neighbor.getId());
+            assertEquals(vertex.getCost(neighbor), other.getCost(otherNeighbor));
+         }
+      }
+   }
+
+   @Test public void testRoundTrip() throws IOException {
+      NetworkMap net = new NetworkMap(200, 4, 7);
+      String path = new File(folder.getRoot(), "overlay" + OverlayFile.EXTENSION).getPath();
+
+      File file = new NetworkMapTransformer(net).exportTo(path);
+      assertTrue(OverlayFile.isOverlayFile(file));
+
+      checkSame(net, new NetworkMapTransformer(file).getNetworkMap());
+   }
+
+   @Test public void testCsvStillWorks() throws IOException {
+      NetworkMap net = new NetworkMap(50, 3, 4);
+      File file = new NetworkMapTransformer(net).exportTo(new File(folder.getRoot(), "overlay.csv").getPath());
+
+      assertFalse(OverlayFile.isOverlayFile(file));
+      checkSame(net, new NetworkMapTransformer(file).getNetworkMap());
+   }
+
+   @Test public void testApplyImportedNodes() throws IOException {
+      NetworkMap net = new NetworkMap(20, 3, 4);
+      File file = new File(folder.getRoot(), "applied" + OverlayFile.EXTENSION);
+      OverlayFile.write(net, file);
+
+      List<Vertex> vertices = net.getVertices();
+      NetworkMap applied = new NetworkMapTransformer(file).applyRegisteredNodes(new NetworkMap(20, 1, 2).getVertices().stream().map(Vertex::getName).collect(Collectors.toList()));
+      assertEquals(net.size(), applied.size());
+      assertEquals(net.getFullEdgeList().size(), applied.getFullEdgeList().size());
+      assertEquals(vertices.get(3).getEdges().size(), applied.getVertices().get(3).getEdges().size());
+   }
+
+   @Test(expected = IOException.class) public void testTruncated() throws IOException {
+      NetworkMap net = new NetworkMap(100, 4, 6);
+      File file = new File(folder.getRoot(), "truncated" + OverlayFile.EXTENSION);
+      OverlayFile.write(net, file);
+
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+         raf.setLength(raf.length() / 2);
+      }
+
+      OverlayFile.read(file);
+   }
+
+   @Test public void testLargeOverlay() throws IOException {
+      NetworkMap net = new NetworkMap(10000, 25, 25);
+      File binary = new File(folder.getRoot(), "large" + OverlayFile.EXTENSION);
+      File csv = new File(folder.getRoot(), "large.csv");
+
+      long started = System.nanoTime();
+      new NetworkMapTransformer(net).exportTo(binary.getPath());
+      NetworkMap fromBinary = new NetworkMapTransformer(binary).getNetworkMap();
+      long binaryMillis = (System.nanoTime() - started) / 1000000;
+
+      started = System.nanoTime();
+      new NetworkMapTransformer(net).exportTo(csv.getPath());
+      NetworkMap fromCsv = new NetworkMapTransformer(csv).getNetworkMap();
+      long csvMillis = (System.nanoTime() - started) / 1000000;
+
+      logger.info("Binary [" + binary.length() + "] bytes in " + binaryMillis + " ms, csv [" + csv.length() + "] bytes in " + csvMillis + " ms");
+      assertTrue(binary.length() < csv.length() / 5);
+      assertEquals(fromCsv.size(), fromBinary.size());
+      checkSame(net, fromBinary);
+   }
+}
@@ -0,0 +1,121 @@
+package cs555.chiba.overlay.network;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestOverlayTopologies {
+
+   private void checkGraph(OverlayGraph graph, int min, int max) {
+      Set<Long> edges = new HashSet<>();
+
+      for (int v = 0; v < graph.size(); v++) {
+         assertTrue("degree of " + v + " is " + graph.degree(v), graph.degree(v) >= min && graph.degree(v) <= max);
+         assertTrue("ring broken at " + v, graph.isConnected(v, (v + 1) % graph.size()));
+
+         for (int i = 0; i < graph.degree(v); i++) {
+            int other = graph.neighbor(v, i);
+            assertTrue(v != other);
+            if (other > v) {
+               assertTrue("repeated edge " + v + "-" + other, edges.add(OverlayGraph.edge(v, other)));
+            }
+         }
+      }
+
+      assertEquals(graph.getEdgeCount(), edges.size());
+   }
+
+   private double averageCost(OverlayGraph graph) {
+      long total = 0;
+      for (int v = 0; v < graph.size(); v++) {
+         for (int i = 0; i < graph.degree(v); i++) {
+            total += graph.cost(v, i);
+         }
+      }
+      return (double) total / (2 * graph.getEdgeCount());
+   }
+
+   @Test public void testEveryTopologyKeepsTheLimits() {
+      for (Topology topology : Topology.values()) {
+         for (int seed = 0; seed < 50; seed++) {
+            int vertices = 10 + seed * 7;
+            checkGraph(topology.generator(4, 6).generate(vertices, seed), 4, 6);
+            checkGraph(topology.generator(5, 5).generate(vertices + vertices % 2, seed), 5, 5);
+         }
+      }
+   }
+
+   @Test public void testSameSeedSameOverlay() {
+      for (Topology topology : Topology.values()) {
+         OverlayGraph first = topology.generator(4, 8).generate(500, 17);
+         OverlayGraph second = topology.generator(4, 8).generate(500, 17);
+
+         for (int v = 0; v < first.size(); v++) {
+            assertEquals(first.degree(v), second.degree(v));
+            for (int i = 0; i < first.degree(v); i++) {
+               assertTrue(second.isConnected(v, first.neighbor(v, i)));
+            }
+         }
+      }
+   }
+
+   @Test public void testSmallWorldLattice() {
+      OverlayGraph lattice = new SmallWorldGenerator(6, 6, 0).generate(100, 1);
+
+      for (int v = 0; v < lattice.size(); v++) {
+         for (int step = 1; step <= 3; step++) {
+            assertTrue(lattice.isConnected(v, (v + step) % 100));
+         }
+      }
+
+      OverlayGraph rewired = new SmallWorldGenerator(6, 6, 0.2).generate(100, 1);
+      int shortcuts = 0;
+      for (int v = 0; v < rewired.size(); v++) {
+         if (!rewired.isConnected(v, (v + 3) % 100)) {
+            shortcuts++;
+         }
+      }
+      assertTrue(shortcuts > 0 && shortcuts < 60);
+   }
+
+   @Test public void testScaleFreeHubs() {
+      OverlayGraph scaleFree = new ScaleFreeGenerator(4, 60).generate(5000, 3);
+      OverlayGraph random = new ConfigurationModelGenerator(4, 60).generate(5000, 3);
+
+      checkGraph(scaleFree, 4, 60);
+      // both reach the max, but only the scale free hubs stand far above the typical vertex
+      assertTrue("hub of " + scaleFree.maxDegree() + " over a mean of " + meanDegree(scaleFree), hubRatio(scaleFree) > 2 * hubRatio(random));
+   }
+
+   private double meanDegree(OverlayGraph graph) {
+      return 2.0 * graph.getEdgeCount() / graph.size();
+   }
+
+   private double hubRatio(OverlayGraph graph) {
+      return graph.maxDegree() / meanDegree(graph);
+   }
+
+   @Test public void testGridCostsFollowDistance() {
+      OverlayGraph grid = new GridGenerator(4, 8).generate(2500, 5);
+
+      checkGraph(grid, 4, 8);
+      assertTrue("average cost " + averageCost(grid), averageCost(grid) < 2);
+      assertEquals(1, GridGenerator.cost(0, 1, 50));
+      assertEquals(1, GridGenerator.cost(49, 50, 50)); // the end of a row is next to the start of the one below
+      assertEquals(10, GridGenerator.cost(0, 2499, 50));
+   }
+
+   @Test public void testParse() {
+      assertEquals(Topology.SMALLWORLD, Topology.parse("small-world"));
+      assertEquals(Topology.SCALEFREE, Topology.parse(" ScaleFree "));
+      assertEquals(Topology.GRID, Topology.parse("grid"));
+   }
+
+   @Test(expected = IllegalArgumentException.class) public void testUnknownTopology() {
+      Topology.parse("hypercube");
+   }
+}
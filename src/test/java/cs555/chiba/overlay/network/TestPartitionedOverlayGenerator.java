@@ -0,0 +1,87 @@
+package cs555.chiba.overlay.network;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestPartitionedOverlayGenerator {
+
+   private static final Logger logger = Logger.getLogger(TestPartitionedOverlayGenerator.class.getName());
+
+   private static int[] neighbors(OverlayGraph graph, int vertex) {
+      int[] neighbors = new int[graph.degree(vertex)];
+      for (int i = 0; i < neighbors.length; i++) {
+         neighbors[i] = graph.neighbor(vertex, i);
+      }
+      Arrays.sort(neighbors);
+      return neighbors;
+   }
+
+   @Test public void testDegreesAndRing() {
+      OverlayGraph graph = new PartitionedOverlayGenerator(5, 10, 250, 0.5).generate(1000, 11);
+
+      assertEquals(1000, graph.size());
+      assertTrue(graph.minDegree() >= 5 && graph.maxDegree() <= 10);
+
+      for (int v = 0; v < graph.size(); v++) {
+         assertTrue("ring broken at " + v, graph.isConnected(v, (v + 1) % graph.size()));
+         int[] neighbors = neighbors(graph, v);
+         for (int i = 1; i < neighbors.length; i++) {
+            assertTrue("repeated edge at " + v, neighbors[i] != neighbors[i - 1]);
+         }
+      }
+   }
+
+   @Test public void testSameSeedSameOverlay() {
+      PartitionedOverlayGenerator generator = new PartitionedOverlayGenerator(20, 25, 1250, 0.5);
+      OverlayGraph first = generator.generate(10000, 99);
+      OverlayGraph second = generator.generate(10000, 99);
+
+      assertEquals(first.getEdgeCount(), second.getEdgeCount());
+      for (int v = 0; v < first.size(); v += 97) {
+         assertArrayEquals(neighbors(first, v), neighbors(second, v));
+      }
+   }
+
+   @Test public void testDegreesSpreadBetweenMinAndMax() {
+      OverlayGraph graph = new PartitionedOverlayGenerator(20, 25, 1250, 0.5).generate(10000, 21);
+      int[] histogram = new int[26];
+
+      for (int v = 0; v < graph.size(); v++) {
+         histogram[graph.degree(v)]++;
+      }
+
+      // about a sixth of the vertices at each degree, not all of them at the min
+      for (int degree = 20; degree <= 25; degree++) {
+         assertTrue("degree " + degree + " seen " + histogram[degree] + " times", histogram[degree] > graph.size() / 12 && histogram[degree] < graph.size() / 4);
+      }
+   }
+
+   @Test public void testCrossesPartitions() {
+      OverlayGraph graph = new PartitionedOverlayGenerator(6, 6, 200, 0.5).generate(800, 3);
+      int crossing = 0;
+
+      for (int v = 0; v < 200; v++) {
+         for (int i = 0; i < graph.degree(v); i++) {
+            if (graph.neighbor(v, i) >= 200 && graph.neighbor(v, i) != 799) {
+               crossing++;
+            }
+         }
+      }
+
+      assertTrue(crossing > 100);
+   }
+
+   @Test public void testLargeOverlay() {
+      long started = System.nanoTime();
+      OverlayGraph graph = new PartitionedOverlayGenerator(20, 25, 4096, 0.5).generate(200000, 5);
+      logger.info("200000 vertices with 20-25 connections: " + (System.nanoTime() - started) / 1000000 + " ms, " + graph.memoryBytes() + " bytes");
+
+      assertTrue(graph.minDegree() >= 20 && graph.maxDegree() <= 25);
+   }
+}
@@ -0,0 +1,34 @@
+package cs555.chiba.registry;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestResultMetrics {
+
+   @Test public void testOnlyTheCenterAnswersARing() throws InterruptedException {
+      ResultMetrics result = new ResultMetrics(UUID.randomUUID(), 0, 0, 0, 0, 0, "expanding_ring");
+      result.setRingCenter("center.com:8989");
+
+      // a late reply from deeper in ring 0 and the center's answer to ring 0, neither answers ring 1
+      result.addRingReply(0, "deeper.com:8989");
+      result.addRingReply(0, "center.com:8989");
+      assertTrue(result.awaitRing(0, 10));
+      assertFalse(result.awaitRing(1, 10));
+
+      result.addRingReply(1, "deeper.com:8989");
+      assertFalse(result.awaitRing(1, 10));
+
+      result.addRingReply(1, "center.com:8989");
+      assertTrue(result.awaitRing(1, 10));
+   }
+
+   @Test public void testPlainFloodsAnswerNoRing() throws InterruptedException {
+      ResultMetrics result = new ResultMetrics(UUID.randomUUID(), 0, 0, 0, 0, 0, "flood");
+      result.addRingReply(0, "center.com:8989");
+      assertFalse(result.awaitRing(0, 10));
+   }
+}
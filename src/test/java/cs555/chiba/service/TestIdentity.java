@@ -0,0 +1,38 @@
+package cs555.chiba.service;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestIdentity {
+
+   @Test public void testKeyAndHostPortShareOneInstance() {
+      Identity fromKey = Identity.builder().withIdentityKey("10.1.2.3:4567").build();
+      Identity fromHostPort = Identity.builder().withHost("10.1.2.3").withPort(4567).build();
+      Identity fromAddress = Identity.fromIPv4(0x0a010203, 4567);
+
+      assertSame(fromKey, fromHostPort);
+      assertSame(fromKey, fromAddress);
+      assertSame(fromAddress, Identity.fromIPv4(0x0a010203, 4567));
+   }
+
+   @Test public void testSocketIdentitiesAreNotInterned() {
+      InetSocketAddress address = new InetSocketAddress("127.0.0.1", 6543);
+      Identity first = Identity.builder().withSocketAddress(address).build();
+      Identity second = Identity.builder().withSocketAddress(address).build();
+
+      assertNotSame(first, second);
+      assertEquals(first, second);
+      assertEquals(first.hashCode(), second.hashCode());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testMismatchedHostStillFails() {
+      Identity.builder().withIdentityKey("10.9.9.9:1111").build();
+      Identity.builder().withIdentityKey("10.9.9.9:1111").withHost("10.9.9.8").withPort(1111).build();
+   }
+}
@@ -0,0 +1,127 @@
+package cs555.chiba.transport;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.Utilities;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * A server on the loopback address that reads length prefixed frames off every connection it accepts, for the transport
+ * tests.  Each frame is kept along with the number of the connection it came in on.
+ */
+class LoopbackServer implements AutoCloseable {
+
+   static class Frame {
+
+      final int connection;
+      final byte[] bytes;
+
+      Frame(int connection, byte[] bytes) {
+         this.connection = connection;
+         this.bytes = bytes;
+      }
+   }
+
+   private final ServerSocket server;
+   private final BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+   private final List<Socket> accepted = new ArrayList<>(); // guarded by itself
+   private volatile boolean closeAfterFirstFrame = false;
+
+   LoopbackServer() throws IOException {
+      this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      Thread acceptor = new Thread(this::accept, "LoopbackServer-" + this.server.getLocalPort());
+      acceptor.setDaemon(true);
+      acceptor.start();
+   }
+
+   /**
+    * Close each connection from the server side once its first frame has been read
+    */
+   void closeAfterFirstFrame() {
+      this.closeAfterFirstFrame = true;
+   }
+
+   Identity getIdentity() {
+      return Identity.builder().withHost(InetAddress.getLoopbackAddress().getHostAddress()).withPort(this.server.getLocalPort()).build();
+   }
+
+   int getPort() {
+      return this.server.getLocalPort();
+   }
+
+   int getAccepted() {
+      synchronized (this.accepted) {
+         return this.accepted.size();
+      }
+   }
+
+   Frame take() throws InterruptedException {
+      Frame frame = this.frames.poll(5, TimeUnit.SECONDS);
+      assertNotNull("no frame arrived", frame);
+      return frame;
+   }
+
+   Frame poll(long millis) throws InterruptedException {
+      return this.frames.poll(millis, TimeUnit.MILLISECONDS);
+   }
+
+   private void accept() {
+      try {
+         while (!this.server.isClosed()) {
+            Socket socket = this.server.accept();
+            int connection;
+
+            synchronized (this.accepted) {
+               connection = this.accepted.size();
+               this.accepted.add(socket);
+            }
+
+            Thread reader = new Thread(() -> read(socket, connection), "LoopbackReader-" + connection);
+            reader.setDaemon(true);
+            reader.start();
+         }
+      }
+      catch (IOException e) {
+         // closed
+      }
+   }
+
+   private void read(Socket socket, int connection) {
+      try (DataInputStream in = new DataInputStream(socket.getInputStream())) {
+         while (true) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            this.frames.add(new Frame(connection, bytes));
+
+            if (this.closeAfterFirstFrame) {
+               break;
+            }
+         }
+      }
+      catch (IOException e) {
+         // the other side went away
+      }
+      finally {
+         Utilities.closeQuietly(socket);
+      }
+   }
+
+   @Override public void close() {
+      Utilities.closeQuietly(this.server);
+
+      synchronized (this.accepted) {
+         this.accepted.forEach(Utilities::closeQuietly);
+      }
+   }
+}
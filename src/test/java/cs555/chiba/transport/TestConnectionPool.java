@@ -0,0 +1,112 @@
+package cs555.chiba.transport;
+
+import cs555.chiba.service.Identity;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConnectionPool {
+
+   private static byte[] bytes(String text) {
+      return text.getBytes(StandardCharsets.UTF_8);
+   }
+
+   private static String text(LoopbackServer.Frame frame) {
+      return new String(frame.bytes, StandardCharsets.UTF_8);
+   }
+
+   @Test public void testReusesConnection() throws Exception {
+      try (LoopbackServer server = new LoopbackServer(); ConnectionPool pool = new ConnectionPool(4, 30000)) {
+         for (int i = 0; i < 3; i++) {
+            pool.send(server.getIdentity(), bytes("message " + i));
+         }
+
+         for (int i = 0; i < 3; i++) {
+            LoopbackServer.Frame frame = server.take();
+            assertEquals("message " + i, text(frame));
+            assertEquals(0, frame.connection);
+         }
+
+         assertEquals(1, pool.getConnects());
+         assertEquals(2, pool.getHits());
+         assertEquals(1, server.getAccepted());
+      }
+   }
+
+   @Test public void testEvictsLeastRecentlyUsed() throws Exception {
+      try (LoopbackServer a = new LoopbackServer(); LoopbackServer b = new LoopbackServer(); LoopbackServer c = new LoopbackServer(); ConnectionPool pool = new ConnectionPool(2, 30000)) {
+         pool.send(a.getIdentity(), bytes("a"));
+         pool.send(b.getIdentity(), bytes("b"));
+         pool.send(a.getIdentity(), bytes("a again")); // a is now the most recently used
+         pool.send(c.getIdentity(), bytes("c"));
+
+         assertEquals(2, pool.size());
+         assertEquals(1, pool.getEvictions());
+         assertNull(pool.peekIdle(b.getIdentity()));
+
+         pool.send(a.getIdentity(), bytes("a still pooled"));
+         assertEquals(3, pool.getConnects());
+         assertEquals(2, pool.getHits());
+      }
+   }
+
+   @Test public void testSweepsIdleConnections() throws Exception {
+      try (LoopbackServer server = new LoopbackServer(); ConnectionPool pool = new ConnectionPool(4, 100)) {
+         pool.send(server.getIdentity(), bytes("hello"));
+         assertEquals(1, pool.size());
+
+         long deadline = System.currentTimeMillis() + 5000;
+         while (pool.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+         }
+
+         assertEquals(0, pool.size());
+         assertEquals(1, pool.getEvictions());
+      }
+   }
+
+   @Test public void testReplacesConnectionClosedByPeer() throws Exception {
+      try (LoopbackServer server = new LoopbackServer(); ConnectionPool pool = new ConnectionPool(4, 30000)) {
+         server.closeAfterFirstFrame();
+         Identity identity = server.getIdentity();
+
+         pool.send(identity, bytes("first"));
+         assertEquals(0, server.take().connection);
+         Thread.sleep(200); // let the close reach this side
+
+         pool.send(identity, bytes("second"));
+         LoopbackServer.Frame frame = server.take();
+         assertEquals("second", text(frame));
+         assertEquals(1, frame.connection);
+
+         assertEquals(1, pool.getStale());
+         assertEquals(0, pool.getHits());
+         assertEquals(2, pool.getConnects());
+      }
+   }
+
+   @Test public void testRetriesOnceAfterFailedWrite() throws Exception {
+      try (LoopbackServer server = new LoopbackServer(); ConnectionPool pool = new ConnectionPool(4, 30000)) {
+         Identity identity = server.getIdentity();
+         pool.send(identity, bytes("first"));
+         server.take();
+
+         // the health check only reads, so a connection that can't be written to still passes it
+         pool.peekIdle(identity).shutdownOutput();
+
+         pool.send(identity, bytes("second"));
+         LoopbackServer.Frame frame = server.take();
+         assertEquals("second", text(frame));
+         assertEquals(1, frame.connection);
+
+         assertEquals(1, pool.getHits());
+         assertEquals(1, pool.getStale());
+         assertEquals(2, pool.getConnects());
+         assertTrue(pool.peekIdle(identity).isOpen());
+      }
+   }
+}
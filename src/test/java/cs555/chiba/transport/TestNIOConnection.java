@@ -0,0 +1,222 @@
+package cs555.chiba.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestNIOConnection {
+
+   /**
+    * Keeps the messages it takes, and refuses as many offers as it's told to
+    */
+   private static class RecordingHandler implements NIOConnection.Handler {
+
+      private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+      private final AtomicInteger refusals = new AtomicInteger();
+      private final AtomicInteger offers = new AtomicInteger();
+      private volatile Runnable onFree;
+
+      @Override public boolean tryProcessMessage(byte[] message, Socket socket, Runnable onFree) {
+         this.offers.incrementAndGet();
+
+         if (this.refusals.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            this.onFree = onFree;
+            return false;
+         }
+
+         this.messages.add(new String(message, StandardCharsets.UTF_8));
+         return true;
+      }
+
+      String take() throws InterruptedException {
+         String message = this.messages.poll(5, TimeUnit.SECONDS);
+         assertNotNull("no message arrived", message);
+         return message;
+      }
+   }
+
+   private ServerSocketChannel server;
+   private NIOSelectorPool pool;
+
+   @Before public void setUp() throws IOException {
+      this.server = ServerSocketChannel.open();
+      this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      this.pool = new NIOSelectorPool(1);
+   }
+
+   @After public void tearDown() throws IOException {
+      this.pool.close();
+      this.server.close();
+   }
+
+   private Socket connect() throws IOException {
+      Socket client = new Socket(InetAddress.getLoopbackAddress(), this.server.socket().getLocalPort());
+      client.setTcpNoDelay(true);
+      client.setSoTimeout(5000);
+      return client;
+   }
+
+   /**
+    * Accept the client's connection onto the single loop
+    */
+   private NIOConnection accept(NIOConnection.Handler handler) throws IOException {
+      NIOConnection connection = new NIOConnection(this.server.accept(), this.pool.next(), handler);
+      connection.start();
+      return connection;
+   }
+
+   private static byte[] frame(String text) {
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      return ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).array();
+   }
+
+   private static byte[] frames(String... texts) {
+      ByteBuffer all = ByteBuffer.allocate(1 << 16);
+      for (String text : texts) {
+         all.put(frame(text));
+      }
+      byte[] bytes = new byte[all.position()];
+      all.flip();
+      all.get(bytes);
+      return bytes;
+   }
+
+   private static void write(OutputStream out, byte[] bytes, int from, int to) throws Exception {
+      out.write(bytes, from, to - from);
+      out.flush();
+      Thread.sleep(50); // give the loop a chance to read what's there so far
+   }
+
+   private static void assertClosedByServer(Socket client) throws IOException {
+      try {
+         assertEquals(-1, client.getInputStream().read());
+      }
+      catch (SocketTimeoutException e) {
+         throw new AssertionError("the connection was left open", e);
+      }
+      catch (IOException e) {
+         // reset is as good as closed
+      }
+   }
+
+   @Test public void testReadsFrameSplitAcrossReads() throws Exception {
+      RecordingHandler handler = new RecordingHandler();
+
+      try (Socket client = connect()) {
+         accept(handler);
+         byte[] bytes = frame("split across four reads");
+         OutputStream out = client.getOutputStream();
+
+         write(out, bytes, 0, 2); // half the size
+         write(out, bytes, 2, 6); // the rest of the size and the start of the body
+         write(out, bytes, 6, 12);
+         assertNull(handler.messages.poll());
+         write(out, bytes, 12, bytes.length);
+
+         assertEquals("split across four reads", handler.take());
+         assertNull(handler.messages.poll(100, TimeUnit.MILLISECONDS));
+      }
+   }
+
+   @Test public void testReadsSeveralFramesFromOneRead() throws Exception {
+      RecordingHandler handler = new RecordingHandler();
+
+      try (Socket client = connect()) {
+         accept(handler);
+         client.getOutputStream().write(frames("one", "two", "", "three"));
+
+         assertEquals("one", handler.take());
+         assertEquals("two", handler.take());
+         assertEquals("", handler.take());
+         assertEquals("three", handler.take());
+      }
+   }
+
+   @Test public void testPausesUntilSlotFreed() throws Exception {
+      RecordingHandler handler = new RecordingHandler();
+      handler.refusals.set(1);
+
+      try (Socket client = connect()) {
+         NIOConnection connection = accept(handler);
+         client.getOutputStream().write(frames("first", "second"));
+
+         // the first message is refused, so the second one stays on the socket
+         Thread.sleep(200);
+         assertEquals(1, handler.offers.get());
+         assertNull(handler.messages.poll());
+         assertNotNull(handler.onFree);
+         connection.closeWhenIdle(1);
+         assertFalse(connection.isIdle(Long.MAX_VALUE)); // a paused connection isn't idle
+         connection.closeWhenIdle(0);
+
+         handler.onFree.run();
+         assertEquals("first", handler.take());
+         assertEquals("second", handler.take());
+         assertEquals(3, handler.offers.get());
+      }
+   }
+
+   @Test public void testClosesIdleInboundConnection() throws Exception {
+      RecordingHandler handler = new RecordingHandler();
+
+      try (Socket idle = connect()) {
+         NIOConnection stranger = accept(handler);
+         stranger.closeWhenIdle(100);
+
+         try (Socket introduced = connect()) {
+            NIOConnection neighbor = accept(handler);
+            neighbor.closeWhenIdle(100);
+            neighbor.setIdentity(neighbor.getIdentity()); // introducing itself keeps it open
+
+            assertClosedByServer(idle); // the sweep runs about once a second
+            assertTrue(stranger.isClosed());
+            assertFalse(neighbor.isClosed());
+
+            introduced.getOutputStream().write(frame("still here"));
+            assertEquals("still here", handler.take());
+         }
+      }
+   }
+
+   @Test public void testBadSizeFailsOnlyThatConnection() throws Exception {
+      RecordingHandler handler = new RecordingHandler();
+
+      try (Socket good = connect()) {
+         NIOConnection goodConnection = accept(handler);
+
+         for (int size : new int[] { -1, Integer.MIN_VALUE, Integer.MAX_VALUE, NIOConnection.MAX_MESSAGE_SIZE + 1 }) {
+            try (Socket bad = connect()) {
+               NIOConnection badConnection = accept(handler);
+               bad.getOutputStream().write(ByteBuffer.allocate(4).putInt(size).array());
+
+               assertClosedByServer(bad);
+               assertTrue(badConnection.isClosed());
+            }
+         }
+
+         good.getOutputStream().write(frame("unaffected"));
+         assertEquals("unaffected", handler.take());
+         assertFalse(goodConnection.isClosed());
+      }
+   }
+}
@@ -0,0 +1,104 @@
+package cs555.chiba.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestTCPSender {
+
+   private String batch;
+   private String linger;
+
+   @Before public void setUp() {
+      this.batch = System.setProperty(TCPSender.BATCH_PROPERTY, "4");
+      this.linger = System.setProperty(TCPSender.LINGER_PROPERTY, "20");
+   }
+
+   @After public void tearDown() {
+      restore(TCPSender.BATCH_PROPERTY, this.batch);
+      restore(TCPSender.LINGER_PROPERTY, this.linger);
+   }
+
+   private static void restore(String property, String value) {
+      if (value == null) {
+         System.clearProperty(property);
+      }
+      else {
+         System.setProperty(property, value);
+      }
+   }
+
+   private static byte[] message(Random random, int size) {
+      byte[] message = new byte[size];
+      random.nextBytes(message);
+      return message;
+   }
+
+   private static void assertArrived(LoopbackServer server, List<byte[]> sent) throws InterruptedException {
+      for (int i = 0; i < sent.size(); i++) {
+         LoopbackServer.Frame frame = server.take();
+         assertEquals("connection of message " + i, 0, frame.connection);
+         assertArrayEquals("message " + i, sent.get(i), frame.bytes);
+      }
+   }
+
+   @Test public void testBatchesArriveIntactAndInOrder() throws Exception {
+      Random random = new Random(42);
+
+      try (LoopbackServer server = new LoopbackServer()) {
+         TCPSender sender = new TCPSender(new Socket(InetAddress.getLoopbackAddress(), server.getPort()));
+         List<byte[]> sent = new ArrayList<>();
+
+         // queued before the sender starts, so the first batches fill up to the cap
+         for (int size : new int[] { 0, 10, 5000, 3 << 20, 1, 100000, 700000, 700000, 20, 1 << 20, 64 }) {
+            sent.add(message(random, size));
+            sender.addMessage(sent.get(sent.size() - 1));
+         }
+         sender.start();
+         assertArrived(server, sent);
+
+         // then trickled in, so batches are cut short by the linger
+         sent.clear();
+         for (int i = 0; i < 20; i++) {
+            sent.add(message(random, random.nextInt(3000)));
+            sender.addMessage(sent.get(i));
+
+            if (i % 3 == 0) {
+               Thread.sleep(30);
+            }
+         }
+         assertArrived(server, sent);
+
+         sender.close();
+         assertNull(server.poll(100));
+         assertEquals(1, server.getAccepted());
+      }
+   }
+
+   @Test public void testSendMessageWritesOneFrame() throws Exception {
+      Random random = new Random(7);
+
+      try (LoopbackServer server = new LoopbackServer()) {
+         TCPSender sender = new TCPSender(new Socket(InetAddress.getLoopbackAddress(), server.getPort()));
+         List<byte[]> sent = new ArrayList<>();
+
+         for (int size : new int[] { 100, 2 << 20, 100 }) { // the big one goes out through a throwaway buffer
+            sent.add(message(random, size));
+            sender.sendMessage(sent.get(sent.size() - 1));
+         }
+
+         assertArrived(server, sent);
+         sender.close();
+      }
+   }
+}
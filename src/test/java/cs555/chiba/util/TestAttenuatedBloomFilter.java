@@ -0,0 +1,47 @@
+package cs555.chiba.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAttenuatedBloomFilter {
+
+   @Test public void testLevels() {
+      AttenuatedBloomFilter filter = new AttenuatedBloomFilter(3, 512, 3);
+      filter.add(1, "temperature");
+
+      assertTrue(filter.contains(1, "temperature"));
+      assertFalse(filter.contains(0, "temperature"));
+      assertEquals(1, filter.firstLevel("temperature"));
+      assertEquals(-1, filter.firstLevel("humidity"));
+   }
+
+   @Test public void testMergeShifted() {
+      AttenuatedBloomFilter neighbor = new AttenuatedBloomFilter(3, 512, 3);
+      neighbor.add(0, "temperature");
+      neighbor.add(2, "humidity"); // falls off the end
+
+      AttenuatedBloomFilter mine = new AttenuatedBloomFilter(3, 512, 3);
+      mine.add(0, "pressure");
+      mine.mergeShifted(neighbor);
+
+      assertEquals(0, mine.firstLevel("pressure"));
+      assertEquals(1, mine.firstLevel("temperature"));
+      assertEquals(-1, mine.firstLevel("humidity"));
+   }
+
+   @Test public void testCopyIsIndependent() {
+      AttenuatedBloomFilter filter = new AttenuatedBloomFilter(2, 128, 2);
+      AttenuatedBloomFilter copy = filter.copy();
+      copy.add(0, "temperature");
+
+      assertEquals(-1, filter.firstLevel("temperature"));
+      assertFalse(filter.equals(copy));
+   }
+
+   @Test(expected = IllegalArgumentException.class) public void testBitsMustFillWords() {
+      new AttenuatedBloomFilter(2, 100, 2);
+   }
+}
@@ -0,0 +1,71 @@
+package cs555.chiba.util;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBloomSeenFilter {
+
+   @Test public void testNoFalseNegativesWithinWindow() {
+      BloomSeenFilter seen = new BloomSeenFilter(10000, 0.001, 60000, 4);
+      UUID[] ids = new UUID[10000];
+
+      for (int i = 0; i < ids.length; i++) {
+         ids[i] = UUID.randomUUID();
+         seen.markIfAbsent(ids[i], null);
+      }
+
+      for (UUID id : ids) {
+         assertFalse(seen.markIfAbsent(id, null));
+      }
+   }
+
+   @Test public void testFalsePositiveRateNearTarget() {
+      BloomSeenFilter seen = new BloomSeenFilter(10000, 0.01, 60000, 4);
+
+      for (int i = 0; i < 10000; i++) {
+         seen.markIfAbsent(UUID.randomUUID(), null);
+      }
+
+      int falsePositives = 0;
+      for (int i = 0; i < 100000; i++) {
+         if (seen.contains(UUID.randomUUID())) {
+            falsePositives++;
+         }
+      }
+
+      assertTrue("measured " + falsePositives / 100000.0, falsePositives / 100000.0 < 0.02);
+      assertTrue("estimated " + seen.estimatedFalsePositiveRate(), seen.estimatedFalsePositiveRate() < 0.02);
+   }
+
+   @Test public void testIdsExpireAfterWindow() throws InterruptedException {
+      BloomSeenFilter seen = new BloomSeenFilter(100, 0.001, 30, 2);
+      UUID id = UUID.randomUUID();
+
+      assertTrue(seen.markIfAbsent(id, null));
+      Thread.sleep(40);
+      seen.contains(UUID.randomUUID()); // rotate
+      Thread.sleep(40);
+      assertTrue(seen.markIfAbsent(id, null));
+   }
+
+   @Test public void testEarlyRotationsAreCounted() {
+      BloomSeenFilter seen = new BloomSeenFilter(100, 0.001, 60000, 4);
+
+      for (int i = 0; i < 100; i++) {
+         seen.markIfAbsent(UUID.randomUUID(), null);
+      }
+      assertEquals(0, seen.getEarlyRotations());
+
+      // well over the capacity for the window, the ring has to turn before its time
+      for (int i = 0; i < 1000; i++) {
+         seen.markIfAbsent(UUID.randomUUID(), null);
+      }
+      assertTrue(seen.getEarlyRotations() > 0);
+      assertTrue(seen.describe().contains("early rotations: " + seen.getEarlyRotations()));
+   }
+}
@@ -0,0 +1,119 @@
+package cs555.chiba.util;
+
+import cs555.chiba.service.Identity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLRUCache {
+
+   private final Identity a = Identity.builder().withIdentityKey("a.com:8989").build();
+   private final Identity b = Identity.builder().withIdentityKey("b.com:8989").build();
+
+   private static UUID key(String name) {
+      return UUID.nameUUIDFromBytes(name.getBytes());
+   }
+
+   @Test public void testChangesSinceVersion() {
+      LRUCache cache = new LRUCache(10);
+      cache.putEntryAppend(key("TEMPERATURE"), "TEMPERATURE", 3, this.a);
+      cache.putEntryAppend(key("HEART_RATE"), "HEART_RATE", 2, this.a);
+      long version = cache.getVersion();
+
+      assertEquals(2, cache.getValueListsSince(0).size());
+      assertTrue(cache.getValueListsSince(version).isEmpty());
+
+      cache.putEntryAppend(key("TEMPERATURE"), "TEMPERATURE", 5, this.a); // no closer, nothing changes
+      assertEquals(version, cache.getVersion());
+
+      cache.putEntryAppend(key("TEMPERATURE"), "TEMPERATURE", 1, this.b);
+      assertEquals(1, cache.getValueListsSince(version).size());
+      assertEquals(Integer.valueOf(1), cache.getValueListsSince(version).get("TEMPERATURE"));
+   }
+
+   @Test public void testLocationsSinceVersion() {
+      LRUCache cache = new LRUCache(10);
+      cache.putEntryWithProbability(key("a"), this.a, "TEMPERATURE", 1);
+      long version = cache.getVersion();
+
+      cache.putEntryWithProbability(key("a"), this.a, "TEMPERATURE", 1);
+      assertEquals(0, cache.getLocationsSince(version).length);
+
+      cache.putEntryWithProbability(key("b"), this.b, "HEART_RATE", 1);
+      assertEquals(1, cache.getLocationsSince(version).length);
+      assertEquals("HEART_RATE", cache.getLocationsSince(version)[0].keyName);
+   }
+
+   @Test public void testEvictsUnreferencedFirst() {
+      LRUCache cache = new LRUCache(3);
+      cache.putEntry(key("1"), this.a);
+      cache.putEntry(key("2"), this.a);
+      cache.putEntry(key("3"), this.a);
+
+      cache.putEntry(key("4"), this.a); // everything was just added, so the sweep clears them all and takes the oldest
+      assertFalse(cache.containsEntry(key("1")));
+
+      cache.getEntry(key("2"));
+      cache.putEntry(key("5"), this.a);
+      assertTrue(cache.containsEntry(key("2")));
+      assertFalse(cache.containsEntry(key("3")));
+      assertEquals(3, cache.size());
+   }
+
+   @Test public void testMissingEntryIsEmpty() {
+      LRUCache cache = new LRUCache(3);
+      assertTrue(cache.getEntry(key("nothing")).valueList.isEmpty());
+   }
+
+   @Test public void testConcurrentWritersAndReaders() throws Exception {
+      LRUCache cache = new LRUCache(256);
+      ExecutorService pool = Executors.newFixedThreadPool(4);
+      List<Future<?>> work = new ArrayList<>();
+
+      for (int t = 0; t < 4; t++) {
+         int offset = t;
+         work.add(pool.submit(() -> {
+            for (int i = 0; i < 2000; i++) {
+               String name = "metric" + ((i * 4 + offset) % 1000);
+               cache.putEntryAppend(key(name), name, i % 7, i % 2 == 0 ? this.a : this.b);
+               cache.getEntry(key(name)).valueList.forEach((identity, distance) -> {});
+               cache.entries().forEach(entry -> entry.keyName.length());
+            }
+         }));
+      }
+
+      for (Future<?> future : work) {
+         future.get();
+      }
+      pool.shutdown();
+      pool.awaitTermination(5, TimeUnit.SECONDS);
+
+      assertTrue(cache.size() <= 256);
+      assertEquals(cache.size(), cache.getValueListsSince(0).size());
+   }
+
+   @Test public void testIndexedByName() {
+      LRUCache cache = new LRUCache(2);
+      cache.putEntryWithProbability(key("a"), this.a, "TEMPERATURE", 1);
+      cache.putEntryWithProbability(key("b"), this.b, "TEMPERATURE", 1);
+      assertEquals(2, cache.getEntriesNamed("TEMPERATURE").size());
+
+      cache.putEntryWithProbability(key("b"), this.b, "HEART_RATE", 1); // renamed
+      assertEquals(1, cache.getEntriesNamed("TEMPERATURE").size());
+      assertEquals(this.b, cache.getEntriesNamed("HEART_RATE").iterator().next().value);
+
+      cache.putEntryWithProbability(key("c"), this.a, "HUMIDITY", 1); // full, one of the others goes
+      assertEquals(1, cache.getEntriesNamed("TEMPERATURE").size() + cache.getEntriesNamed("HEART_RATE").size());
+      assertTrue(cache.getEntriesNamed("PRESSURE").isEmpty());
+   }
+}
@@ -0,0 +1,84 @@
+package cs555.chiba.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestQueryMetricStore {
+
+   @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test public void testPacking() {
+      long packed = QueryMetricStore.pack(123456, -1);
+      assertEquals(123456, QueryMetricStore.results(packed));
+      assertEquals(-1, QueryMetricStore.hops(packed));
+
+      packed = QueryMetricStore.pack(-7, Integer.MAX_VALUE);
+      assertEquals(-7, QueryMetricStore.results(packed));
+      assertEquals(Integer.MAX_VALUE, QueryMetricStore.hops(packed));
+   }
+
+   @Test public void testPutReplaces() {
+      QueryMetricStore store = new QueryMetricStore(64, 60000);
+      UUID id = UUID.randomUUID();
+
+      store.put(id, 3, 1);
+      store.put(id, 5, 4);
+
+      assertEquals(1, store.size());
+      assertEquals(5, store.get(id).getNumResults());
+      assertEquals(4, store.get(id).getNumHops());
+      assertNull(store.get(UUID.randomUUID()));
+   }
+
+   @Test public void testBounded() {
+      QueryMetricStore store = new QueryMetricStore(64, 60000);
+
+      for (int i = 0; i < 10000; i++) {
+         store.put(UUID.randomUUID(), i, i);
+      }
+
+      assertTrue(store.size() <= 64);
+   }
+
+   @Test public void testExpires() throws InterruptedException {
+      QueryMetricStore store = new QueryMetricStore(64, 20);
+      UUID id = UUID.randomUUID();
+      store.put(id, 1, 1);
+
+      Thread.sleep(50);
+      store.put(id, 2, 2); // the same stripe, so the first entry expires before this one goes in
+
+      assertEquals(1, store.size());
+      assertEquals(2, store.get(id).getNumResults());
+   }
+
+   @Test public void testSpillsEvictedAndRemaining() throws Exception {
+      File spill = new File(this.folder.getRoot(), "metrics.csv");
+      QueryMetricStore store = new QueryMetricStore(16, 60000, spill.toPath());
+
+      for (int i = 0; i < 1000; i++) {
+         store.put(UUID.randomUUID(), i, 2);
+      }
+      int held = store.size();
+      store.close();
+
+      List<String> lines = Files.readAllLines(spill.toPath());
+      assertEquals(1000, lines.size());
+      assertTrue(held > 0);
+      for (String line : lines) {
+         String[] fields = line.split(",");
+         assertEquals(4, fields.length);
+         assertEquals("2", fields[2]);
+      }
+   }
+}
@@ -0,0 +1,74 @@
+package cs555.chiba.util;
+
+import cs555.chiba.service.Identity;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestSeenQueries {
+
+   private final Identity first = Identity.builder().withHost("first.com").withPort(5001).build();
+   private final Identity second = Identity.builder().withHost("second.com").withPort(5002).build();
+
+   @Test public void testFirstSenderIsKept() {
+      SeenQueries seen = new SeenQueries(100, 60000);
+      UUID id = UUID.randomUUID();
+
+      assertTrue(seen.markIfAbsent(id, first));
+      assertFalse(seen.markIfAbsent(id, second));
+      assertSame(first, seen.getParent(id));
+   }
+
+   @Test public void testMemoryIsBounded() {
+      SeenQueries seen = new SeenQueries(64, 60000);
+
+      for (int i = 0; i < 10000; i++) {
+         seen.markIfAbsent(UUID.randomUUID(), first);
+      }
+
+      assertTrue(seen.size() <= 64 + 16);
+   }
+
+   @Test public void testIdsExpire() throws InterruptedException {
+      SeenQueries seen = new SeenQueries(100, 20);
+      UUID id = UUID.randomUUID();
+
+      assertTrue(seen.markIfAbsent(id, first));
+      Thread.sleep(50);
+      assertFalse(seen.contains(id));
+      assertTrue(seen.markIfAbsent(id, second));
+   }
+
+   @Test public void testOnlyOneThreadWins() throws InterruptedException {
+      SeenQueries seen = new SeenQueries(4096, 60000);
+      UUID[] ids = new UUID[500];
+      for (int i = 0; i < ids.length; i++) {
+         ids[i] = UUID.randomUUID();
+      }
+
+      AtomicInteger winners = new AtomicInteger();
+      ExecutorService pool = Executors.newFixedThreadPool(8);
+      for (int t = 0; t < 8; t++) {
+         pool.execute(() -> {
+            for (UUID id : ids) {
+               if (seen.markIfAbsent(id, first)) {
+                  winners.incrementAndGet();
+               }
+            }
+         });
+      }
+      pool.shutdown();
+      pool.awaitTermination(10, TimeUnit.SECONDS);
+
+      assertEquals(ids.length, winners.get());
+   }
+}
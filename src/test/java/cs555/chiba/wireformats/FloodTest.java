@@ -8,6 +8,7 @@ import java.net.Socket;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class FloodTest {
     @Test
@@ -28,7 +29,43 @@ public class FloodTest {
         assertEquals(retranslatedMessage.getOriginatorId(), message.getOriginatorId());
         assertEquals(retranslatedMessage.getSenderID(), message.getSenderID());
         assertEquals(retranslatedMessage.getTarget(), message.getTarget());
+        assertEquals(Flood.MODE_DIRECT, retranslatedMessage.getMode());
 
     }
 
+    @Test
+    public void testModeMarshalling() throws IOException {
+        Flood message = new Flood(
+                UUID.randomUUID(),
+                Identity.builder().withIdentityKey("testSender.com:8989").build(),
+                Identity.builder().withIdentityKey("testOriginator.com:8989").build(),
+                "temp", 1, 10);
+        message.setMode(Flood.MODE_REPLY);
+        message.setTotalDevicesChecked(12);
+
+        Flood retranslatedMessage = new Flood(message.getBytes(), new Socket());
+
+        assertEquals(Flood.MODE_REPLY, retranslatedMessage.getMode());
+        assertEquals(12, retranslatedMessage.getTotalDevicesChecked());
+    }
+
+    @Test
+    public void testRingIds() throws IOException {
+        Flood message = new Flood(
+                UUID.randomUUID(),
+                Identity.builder().withIdentityKey("testSender.com:8989").build(),
+                Identity.builder().withIdentityKey("testOriginator.com:8989").build(),
+                "temp", 0, 2);
+        assertEquals(message.getID(), message.getRingID());
+
+        message.setRing(2);
+        Flood retranslatedMessage = new Flood(message.getBytes(), new Socket());
+
+        assertEquals(2, retranslatedMessage.getRing());
+        assertEquals(message.getRingID(), retranslatedMessage.getRingID());
+        assertNotEquals(message.getID(), retranslatedMessage.getRingID());
+        message.setRing(3);
+        assertNotEquals(message.getRingID(), retranslatedMessage.getRingID());
+    }
+
 }
@@ -31,4 +31,25 @@ public class RandomWalkTest {
 
     }
 
+    @Test
+    public void testWalkerMarshalling() throws IOException {
+        RandomWalk message = new RandomWalk(
+                UUID.randomUUID(),
+                Identity.builder().withIdentityKey("testSender.com:8989").build(),
+                Identity.builder().withIdentityKey("testOriginator.com:8989").build(),
+                "temp", 1, 10);
+        message.setWalker(3);
+        message.setWantedDevices(40);
+        message.setCheckInHops(4);
+
+        RandomWalk checkIn = new RandomWalk(message.copy(message.getSenderID(), 4, RandomWalk.MODE_CHECK_IN).getBytes(), new Socket());
+
+        assertEquals(RandomWalk.MODE_CHECK_IN, checkIn.getMode());
+        assertEquals(4, checkIn.getCurrentHop());
+        assertEquals(3, checkIn.getWalker());
+        assertEquals(40, checkIn.getWantedDevices());
+        assertEquals(4, checkIn.getCheckInHops());
+        assertEquals(message.getID(), checkIn.getID());
+    }
+
 }
@@ -0,0 +1,62 @@
+package cs555.chiba.wireformats;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestEventDispatcher {
+
+   private static Event event(Protocol type) {
+      return new Event() {
+         @Override public byte[] getBytes() {
+            return new byte[] { (byte) type.ordinal() };
+         }
+
+         @Override public int getType() {
+            return type.ordinal();
+         }
+      };
+   }
+
+   @Test public void testTryDispatchNeverBlocks() throws InterruptedException {
+      EventDispatcher dispatcher = new EventDispatcher(1, 1);
+      CountDownLatch release = new CountDownLatch(1);
+      CountDownLatch freed = new CountDownLatch(1);
+
+      try {
+         assertTrue(dispatcher.tryDispatch(event(Protocol.FLOOD), null, e -> awaitQuietly(release), () -> {}));
+
+         // the only flood slot is taken, the receiver is told instead of blocked
+         assertFalse(dispatcher.tryDispatch(event(Protocol.FLOOD), null, e -> {}, freed::countDown));
+         assertTrue(dispatcher.tryDispatch(event(Protocol.RANDOM_WALK), null, e -> {}, () -> {}));
+
+         release.countDown();
+         assertTrue(freed.await(5, TimeUnit.SECONDS));
+         assertTrue(dispatcher.tryDispatch(event(Protocol.FLOOD), null, e -> {}, () -> {}));
+      }
+      finally {
+         dispatcher.close();
+      }
+   }
+
+   @Test public void testInlineWithoutWorkers() {
+      EventDispatcher dispatcher = new EventDispatcher(0, 1);
+      boolean[] handled = new boolean[1];
+
+      assertTrue(dispatcher.tryDispatch(event(Protocol.FLOOD), null, e -> handled[0] = true, () -> {}));
+      assertTrue(handled[0]);
+   }
+
+   private static void awaitQuietly(CountDownLatch latch) {
+      try {
+         latch.await();
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
@@ -0,0 +1,24 @@
+package cs555.chiba.wireformats;
+
+import cs555.chiba.service.Identity;
+import cs555.chiba.util.AttenuatedBloomFilter;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestGossipDigestTransformer extends MessageTestCase {
+
+   @Test public void testMarshalling() throws IOException {
+      AttenuatedBloomFilter filter = new AttenuatedBloomFilter(3, 256, 3);
+      filter.add(0, "temperature");
+      filter.add(2, "humidity");
+
+      GossipDigest message = new GossipDigest(Identity.builder().withIdentityKey("testSender.com:8989").build(), filter);
+      GossipDigest transported = (GossipDigest) testMarshallingOfMessage(message);
+
+      assertEquals(2, transported.getFilter().firstLevel("humidity"));
+   }
+
+}
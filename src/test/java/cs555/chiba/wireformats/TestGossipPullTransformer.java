@@ -0,0 +1,15 @@
+package cs555.chiba.wireformats;
+
+import cs555.chiba.service.Identity;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestGossipPullTransformer extends MessageTestCase {
+
+   @Test public void testMarshalling() throws IOException {
+      GossipPull message = new GossipPull(Identity.builder().withIdentityKey("testSender.com:8989").build());
+      testMarshallingOfMessage(message);
+   }
+
+}
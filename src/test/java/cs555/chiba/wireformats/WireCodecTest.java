@@ -0,0 +1,85 @@
+package cs555.chiba.wireformats;
+
+import cs555.chiba.service.Identity;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WireCodecTest {
+
+   @Test public void testUtf8LengthMatchesEncoding() {
+      for (String value : Arrays.asList("", "temp", "température", "温度", "😀 sensor", "broken \uD800 surrogate")) {
+         assertEquals(value, value.getBytes(StandardCharsets.UTF_8).length, WireWriter.utf8Length(value));
+      }
+   }
+
+   @Test public void testRoundTrip() {
+      UUID id = UUID.randomUUID();
+      Identity ident = Identity.builder().withIdentityKey("testSender.com:8989").build();
+      List<Identity> neighbors = Arrays.asList(ident, Identity.builder().withHost("10.0.0.1").withPort(5555).build());
+
+      byte[] message = WireWriter.encode(Protocol.FLOOD.ordinal(), output -> {
+         output.writeUUID(id);
+         output.writeString("température");
+         output.writeCachedString("AIR_QUALITY");
+         output.writeIdentities(neighbors);
+         output.writeLong(Long.MIN_VALUE);
+         output.writeByte(7);
+      });
+
+      assertEquals(Protocol.FLOOD.ordinal(), message[0]);
+
+      WireReader input = new WireReader(message);
+      assertEquals(id, input.readUUID());
+      assertEquals("température", input.readString());
+      assertEquals("AIR_QUALITY", input.readString());
+      assertEquals(neighbors, input.readIdentities());
+      assertEquals(Long.MIN_VALUE, input.readLong());
+      assertEquals(7, input.readByte());
+      assertFalse(input.hasRemaining());
+   }
+
+   @Test public void testCompactAndLegacyFramesBothDecode() {
+      UUID id = UUID.randomUUID();
+      Identity peer = Identity.builder().withIdentityKey("192.168.1.20:40001").build();
+      Identity host = Identity.builder().withIdentityKey("testOriginator.com:8989").build();
+      Spooler spooler = output -> {
+         output.writeUUID(id);
+         output.writeIdentity(peer);
+         output.writeIdentity(host);
+      };
+
+      byte[] legacy = WireWriter.encodeVersioned(Protocol.FLOOD.ordinal(), WireWriter.LEGACY, spooler);
+      byte[] compact = WireWriter.encodeVersioned(Protocol.FLOOD.ordinal(), WireWriter.COMPACT, spooler);
+
+      assertEquals(WireWriter.LEGACY, legacy[1]);
+      assertEquals(WireWriter.COMPACT, compact[1]);
+      assertTrue(compact.length < legacy.length);
+
+      for (byte[] message : Arrays.asList(legacy, compact)) {
+         WireReader input = WireReader.versioned(message);
+         assertEquals(id, input.readUUID());
+         assertEquals(peer, input.readIdentity());
+         assertEquals(host, input.readIdentity());
+         assertFalse(input.hasRemaining());
+      }
+   }
+
+   @Test public void testPackIPv4() {
+      assertEquals(0xc0a80114L, WireWriter.packIPv4("192.168.1.20"));
+      assertEquals(0L, WireWriter.packIPv4("0.0.0.0"));
+      assertEquals(0xffffffffL, WireWriter.packIPv4("255.255.255.255"));
+      assertEquals("192.168.1.20", Identity.fromIPv4((int) WireWriter.packIPv4("192.168.1.20"), 8080).getHost());
+
+      for (String host : Arrays.asList("localhost", "256.1.1.1", "1.2.3", "1.2.3.4.5", "01.2.3.4", "1.2.3.", "1..2.3", "")) {
+         assertEquals(host, -1L, WireWriter.packIPv4(host));
+      }
+   }
+}